@@ -0,0 +1,88 @@
+package org.acme.pricing.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.acme.pricing.config.JacksonObjectMapperCustomizer;
+import org.acme.pricing.config.RatedPriceJsonConverter;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a {@link RatedPriceDTO} with the application ObjectMapper and with
+ * {@link RatedPriceJsonConverter}. The stream benchmarks write into a reused buffer, like a response body, so
+ * {@code gc.alloc.rate.norm} of {@code -prof gc} is the bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private RatedPriceDTO price;
+
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonObjectMapperCustomizer().customize(builder);
+        objectMapper = builder.build();
+        price = ratedPrice();
+        buffer = new ByteArrayOutputStream(512);
+    }
+
+    @Benchmark
+    public byte[] writeRatedPrice() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(price);
+    }
+
+    @Benchmark
+    public int jacksonToStream() throws IOException {
+        buffer.reset();
+        objectMapper.writeValue(buffer, price);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int converterToStream() throws IOException {
+        buffer.reset();
+        RatedPriceJsonConverter.write(price, buffer);
+        return buffer.size();
+    }
+
+    static RatedPriceDTO ratedPrice() {
+        RatedPriceDTO price = new RatedPriceDTO();
+        price.setId(UUID.fromString("0d9ab78f-fd55-42c1-bbaf-542abcde5678"));
+        price.setProductId(35455);
+        price.setBrandId(1);
+        price.setRateListId(2);
+        price.setAppliedStartAt(OffsetDateTime.parse("2020-06-14T15:00:00+02:00"));
+        price.setAppliedEndAt(OffsetDateTime.parse("2020-06-14T18:30:00+02:00"));
+        price.setPrice(new BigDecimal("25.45"));
+        price.setCurrency(CurrencyEnum.EUR);
+        return price;
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.acme.pricing.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.acme.pricing.config.JacksonObjectMapperCustomizer;
+import org.acme.pricing.config.RatedPriceBinaryConverter;
+import org.acme.pricing.config.RatedPriceJsonConverter;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON and binary representations of a {@link RatedPriceDTO}: encoding into a reused buffer, like a response body,
+ * and decoding, like a calling service does. The payload sizes are printed at setup, {@code -prof gc} gives the bytes
+ * allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceEncodingBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private RatedPriceDTO price;
+
+    private ByteArrayOutputStream buffer;
+
+    private byte[] json;
+
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonObjectMapperCustomizer().customize(builder);
+        objectMapper = builder.build();
+        price = JsonSerializationBenchmark.ratedPrice();
+        buffer = new ByteArrayOutputStream(512);
+
+        RatedPriceJsonConverter.write(price, buffer);
+        json = buffer.toByteArray();
+        buffer.reset();
+        RatedPriceBinaryConverter.write(price, buffer);
+        binary = buffer.toByteArray();
+        System.out.printf("%nPayload bytes: json=%d binary=%d%n", json.length, binary.length);
+    }
+
+    @Benchmark
+    public int encodeJson() throws IOException {
+        buffer.reset();
+        RatedPriceJsonConverter.write(price, buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int encodeBinary() throws IOException {
+        buffer.reset();
+        RatedPriceBinaryConverter.write(price, buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public RatedPriceDTO decodeJson() throws IOException {
+        return objectMapper.readValue(json, RatedPriceDTO.class);
+    }
+
+    @Benchmark
+    public RatedPriceDTO decodeBinary() {
+        return RatedPriceBinaryConverter.read(binary, binary.length);
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.acme.pricing.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.config.JacksonObjectMapperCustomizer;
+import org.acme.pricing.data.BenchmarkDatabase;
+import org.acme.pricing.data.DatabaseCallLimiter;
+import org.acme.pricing.data.LookupMode;
+import org.acme.pricing.data.PriceDAO;
+import org.acme.pricing.data.PriceIndex;
+import org.acme.pricing.data.PriceLookupCache;
+import org.acme.pricing.data.PriceShards;
+import org.acme.pricing.data.PriceStore;
+import org.acme.pricing.data.PriceWindowReader;
+import org.acme.pricing.exception.PlatformExceptionHandler;
+import org.acme.pricing.exception.ProblemResponses;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * The whole MVC request path of GET /api/prices/search-rates: argument binding, lookup, JSON writing and the
+ * exception handler, without the servlet container.
+ * <p>
+ * notFoundPercent of the lookups ask for a product without prices (404), {@link #searchRatesMalformed()} is the 400
+ * of an appliedAt that cannot be parsed, answered by the exception handler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchRatesRequestBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"SQL", "INDEX"})
+    public LookupMode mode;
+
+    @Param({"0", "90"})
+    public int notFoundPercent;
+
+    private HikariDataSource dataSource;
+
+    private MockMvc mockMvc;
+
+    private String[] appliedAts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDatabase.create(PRODUCTS);
+        DatabaseCallLimiter limiter = new DatabaseCallLimiter(dataSource.getMaximumPoolSize(), 1000);
+        PriceWindowReader reader = new PriceWindowReader(PriceShards.of(dataSource), limiter);
+        PriceDAO dao = new PriceDAO(PriceShards.of(dataSource), new PriceIndex(reader), new PriceLookupCache(reader, PRODUCTS),
+                new PriceStore(reader, "", 10_000), limiter, mode, new SimpleMeterRegistry());
+        dao.loadIndex();
+
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonObjectMapperCustomizer().customize(builder);
+        ObjectMapper objectMapper = builder.build();
+        ProblemResponses problems = new ProblemResponses(objectMapper);
+        mockMvc = MockMvcBuilders.standaloneSetup(new PricesController(dao, 1000, 300, problems))
+                .setControllerAdvice(new PlatformExceptionHandler(problems))
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+
+        OffsetDateTime[] instants = BenchmarkDatabase.appliedAts(1024, 42);
+        appliedAts = new String[instants.length];
+        for (int i = 0; i < instants.length; i++) {
+            appliedAts[i] = instants[i].toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse searchRates() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int productId = random.nextInt(100) < notFoundPercent
+                ? BenchmarkDatabase.FIRST_PRODUCT_ID - 1 - random.nextInt(PRODUCTS)
+                : BenchmarkDatabase.FIRST_PRODUCT_ID + random.nextInt(PRODUCTS);
+        return mockMvc.perform(get("/api/prices/search-rates")
+                        .param("appliedAt", appliedAts[random.nextInt(appliedAts.length)])
+                        .param("productId", String.valueOf(productId))
+                        .param("brandId", String.valueOf(BenchmarkDatabase.BRAND_ID)))
+                .andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse searchRatesMalformed() throws Exception {
+        return mockMvc.perform(get("/api/prices/search-rates")
+                        .param("appliedAt", "2020-06-14 10:00")
+                        .param("productId", String.valueOf(BenchmarkDatabase.FIRST_PRODUCT_ID))
+                        .param("brandId", String.valueOf(BenchmarkDatabase.BRAND_ID)))
+                .andReturn().getResponse();
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.acme.pricing.data;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Pooled in-memory H2 database with the application schema and a generated PRICES dataset.
+ * <p>
+ * Every product of brand 1 gets the four overlapping windows of the seed data, shifted by a product specific
+ * number of days within 2020, plus random promotions of one hour to 30 days over them up to the windows per key asked
+ * for, at priorities 1 to 3.
+ */
+public final class BenchmarkDatabase {
+
+    public static final int BRAND_ID = 1;
+
+    public static final int FIRST_PRODUCT_ID = 1;
+
+    public static final int SEED_WINDOWS = 4;
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.parse("2020-01-01T00:00:00");
+
+    private static final String INSERT = "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 'EUR', 'GMT+2');";
+
+    private BenchmarkDatabase() {
+    }
+
+    public static HikariDataSource create(int products) {
+        return create(products, SEED_WINDOWS);
+    }
+
+    public static HikariDataSource create(int products, int windowsPerKey) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        try {
+            insertPrices(dataSource, products, windowsPerKey);
+        } catch (SQLException e) {
+            dataSource.close();
+            throw new IllegalStateException("Failed to generate the benchmark dataset", e);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Instants spread over the year of the dataset, precomputed so the benchmarks do not measure their creation.
+     */
+    public static OffsetDateTime[] appliedAts(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        OffsetDateTime[] appliedAts = new OffsetDateTime[count];
+        for (int i = 0; i < count; i++) {
+            appliedAts[i] = ORIGIN.plusSeconds(random.nextLong(366L * 24 * 3600)).atOffset(ZoneOffset.UTC);
+        }
+        return appliedAts;
+    }
+
+    private static void insertPrices(HikariDataSource dataSource, int products, int windowsPerKey) throws SQLException {
+        SplittableRandom random = new SplittableRandom(7);
+        // like an import: no change feed, the segments built once at the end instead of per row
+        PriceChangeTrigger.pause();
+        PriceSegmentTrigger.pause();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            connection.setAutoCommit(false);
+            for (int productId = FIRST_PRODUCT_ID; productId < FIRST_PRODUCT_ID + products; productId++) {
+                LocalDateTime day = ORIGIN.plusDays(productId % 180);
+                addRow(statement, productId, 1, 0, day, day.plusDays(200).minusSeconds(1), "35.50");
+                addRow(statement, productId, 2, 1, day.plusHours(15), day.plusHours(18).plusMinutes(30), "25.45");
+                addRow(statement, productId, 3, 1, day.plusDays(1), day.plusDays(1).plusHours(11), "30.50");
+                addRow(statement, productId, 4, 1, day.plusDays(1).plusHours(16), day.plusDays(200).minusSeconds(1), "38.95");
+                for (int priceList = SEED_WINDOWS + 1; priceList <= windowsPerKey; priceList++) {
+                    LocalDateTime start = day.plusHours(random.nextInt(200 * 24));
+                    addRow(statement, productId, priceList, 1 + random.nextInt(3), start,
+                            start.plusHours(1 + random.nextInt(30 * 24)), random.nextInt(1000, 5000) / 100 + ".99");
+                }
+                if (productId % 1000 == 0) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+            }
+            statement.executeBatch();
+            PriceSegments.rebuildAll(connection);
+            connection.commit();
+        } finally {
+            PriceChangeTrigger.resume();
+            PriceSegmentTrigger.resume();
+        }
+    }
+
+    private static void addRow(PreparedStatement statement, int productId, int priceList, int priority,
+                               LocalDateTime start, LocalDateTime end, String price) throws SQLException {
+        statement.setObject(1, UUID.randomUUID());
+        statement.setInt(2, BRAND_ID);
+        statement.setObject(3, start);
+        statement.setObject(4, end);
+        statement.setInt(5, priceList);
+        statement.setInt(6, productId);
+        statement.setInt(7, priority);
+        statement.setBigDecimal(8, new BigDecimal(price));
+        statement.addBatch();
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.acme.pricing.data;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PriceDAO#findPriceByDate} for every lookup mode at several dataset sizes, with the four windows per key of the
+ * seed data or with many overlapping promotions per key, where the SQL lookup sorts more rows than a segment seek reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceLookupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int products;
+
+    @Param({"4", "16"})
+    public int windowsPerKey;
+
+    @Param({"SQL", "SEGMENTS", "CACHE", "INDEX", "STORE"})
+    public LookupMode mode;
+
+    private HikariDataSource dataSource;
+
+    private PriceDAO dao;
+
+    private OffsetDateTime[] appliedAts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDatabase.create(products, windowsPerKey);
+        DatabaseCallLimiter limiter = new DatabaseCallLimiter(dataSource.getMaximumPoolSize(), 1000);
+        PriceWindowReader reader = new PriceWindowReader(PriceShards.of(dataSource), limiter);
+        dao = new PriceDAO(PriceShards.of(dataSource), new PriceIndex(reader), new PriceLookupCache(reader, products),
+                new PriceStore(reader, "", 10_000), limiter, mode, new SimpleMeterRegistry());
+        dao.loadIndex();
+        appliedAts = BenchmarkDatabase.appliedAts(1024, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public RatedPriceDTO findPriceByDate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int productId = BenchmarkDatabase.FIRST_PRODUCT_ID + random.nextInt(products);
+        return dao.findPriceByDate(appliedAts[random.nextInt(appliedAts.length)], productId, BenchmarkDatabase.BRAND_ID);
+    }
+
+}
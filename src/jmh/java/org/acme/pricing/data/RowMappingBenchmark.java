@@ -0,0 +1,74 @@
+package org.acme.pricing.data;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of a single PRICES row, the result set stays on the same row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    private HikariDataSource dataSource;
+
+    private Connection connection;
+
+    private PreparedStatement statement;
+
+    private ResultSet resultSet;
+
+    private PriceDAO dao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        dataSource = BenchmarkDatabase.create(1);
+        dao = new PriceDAO(PriceShards.of(dataSource), null, null, null, new DatabaseCallLimiter(10, 1000), LookupMode.SQL, new SimpleMeterRegistry());
+        connection = dataSource.getConnection();
+        statement = connection.prepareStatement("SELECT * FROM PRICES LIMIT 1;");
+        resultSet = statement.executeQuery();
+        resultSet.next();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        resultSet.close();
+        statement.close();
+        connection.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public RatedPriceDTO mapResultSetToRatedPrice() throws SQLException {
+        return dao.mapResultSetToRatedPrice(resultSet);
+    }
+
+    @Benchmark
+    public PriceWindow mapResultSetToPriceWindow() throws SQLException {
+        return PriceWindow.fromResultSet(resultSet);
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.acme.pricing.exception;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.config.JacksonObjectMapperCustomizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The error path without the MVC machinery: building and writing the 404 body of a lookup without a price, and
+ * raising a {@link PlatformHttpException} through the {@link PlatformExceptionHandler}. The fresh variants do it
+ * like before {@link ProblemResponses}: a new {@link ProblemInfo} written by Jackson, an exception with a stack trace.
+ * The bodies are written into a reused buffer, so {@code gc.alloc.rate.norm} of {@code -prof gc} is the bytes
+ * allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProblemResponseBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private ProblemResponses problems;
+
+    private PlatformExceptionHandler handler;
+
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonObjectMapperCustomizer().customize(builder);
+        objectMapper = builder.build();
+        problems = new ProblemResponses(objectMapper);
+        handler = new PlatformExceptionHandler(problems);
+        buffer = new ByteArrayOutputStream(512);
+    }
+
+    @Benchmark
+    public int freshNotFound() throws IOException {
+        buffer.reset();
+        ProblemInfo problem = ProblemInfo.builder().status(404).title(ProblemResponses.PRICE_NOT_FOUND).build();
+        objectMapper.writeValue(buffer, ResponseEntity.status(404).body(problem).getBody());
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int cachedNotFound() throws IOException {
+        buffer.reset();
+        buffer.write((byte[]) problems.priceNotFound().getBody());
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int freshException() throws IOException {
+        buffer.reset();
+        try {
+            throw new StackfulException("Failed to retrieve prices from the database");
+        } catch (StackfulException e) {
+            objectMapper.writeValue(buffer, ProblemInfo.forStatusAndTitle(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage()));
+        }
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int cachedException() throws IOException {
+        buffer.reset();
+        try {
+            throw new PlatformHttpException("Failed to retrieve prices from the database", Response.Status.INTERNAL_SERVER_ERROR);
+        } catch (PlatformHttpException e) {
+            buffer.write((byte[]) handler.handle(e).getBody());
+        }
+        return buffer.size();
+    }
+
+    /**
+     * An exception that captures its stack trace, like {@link PlatformHttpException} used to.
+     */
+    private static final class StackfulException extends RuntimeException {
+
+        StackfulException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.acme.pricing.load;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * The keys and the period of a generated dataset, shared by the generator that writes it and the load that queries
+ * it, so both sides agree without reading the file.
+ *
+ * @param firstProductId products are {@code firstProductId .. firstProductId + products - 1}
+ * @param brands         brands are {@code 1 .. brands}
+ * @param from           local start of the period covered by the base price lists
+ */
+record Dataset(int products, int firstProductId, int brands, LocalDateTime from, int days) {
+
+    static final Set<String> OPTIONS = Set.of("products", "first-product-id", "brands", "from", "days");
+
+    static Dataset of(Options options) {
+        Dataset dataset = new Dataset(options.integer("products", 10_000), options.integer("first-product-id", 1),
+                options.integer("brands", 4), options.dateTime("from", LocalDateTime.parse("2020-01-01T00:00:00")),
+                options.integer("days", 366));
+        if (dataset.products() < 1 || dataset.brands() < 1 || dataset.days() < 1) {
+            throw new IllegalArgumentException("products, brands and days must be positive");
+        }
+        return dataset;
+    }
+
+    long seconds() {
+        return days * 24L * 3600;
+    }
+
+}
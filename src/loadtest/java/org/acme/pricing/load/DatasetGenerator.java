@@ -0,0 +1,139 @@
+package org.acme.pricing.load;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a synthetic PRICES dataset as a CSV for {@code POST /api/prices/import}.
+ * <p>
+ * Every product/brand key gets a base price list with priority 0 over the whole period and on average
+ * {@code --promotions} promotions. Promotions start anywhere in the period, last from an hour to a month
+ * (log-uniform, so short ones are the most common), overlap each other freely and take their priority from
+ * {@code --priorities}, a {@code priority:weight} list. Brands are spread round-robin over {@code --zones}.
+ * The same seed writes the same file.
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dload.tool=DatasetGenerator -Dload.args="--products=100000 --out=prices.csv"
+ * </pre>
+ */
+public final class DatasetGenerator {
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String HEADER = "brandId,productId,priceList,priority,startDate,endDate,price,currency,timeZone\n";
+
+    private static final double SHORTEST_PROMOTION = Math.log(3600);
+
+    private static final double LONGEST_PROMOTION = Math.log(30 * 24 * 3600);
+
+    private final Dataset dataset;
+
+    private final int promotions;
+
+    private final int[] priorities;
+
+    private final int[] cumulativeWeights;
+
+    private final String[] zones;
+
+    private final long seed;
+
+    DatasetGenerator(Dataset dataset, int promotions, String priorities, String zones, long seed) {
+        this.dataset = dataset;
+        this.promotions = promotions;
+        String[] entries = priorities.split(",");
+        this.priorities = new int[entries.length];
+        this.cumulativeWeights = new int[entries.length];
+        int total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] entry = entries[i].trim().split(":");
+            this.priorities[i] = Integer.parseInt(entry[0]);
+            total += entry.length > 1 ? Integer.parseInt(entry[1]) : 1;
+            this.cumulativeWeights[i] = total;
+        }
+        this.zones = zones.split(",");
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Set<String> names = new HashSet<>(Dataset.OPTIONS);
+        names.addAll(Set.of("promotions", "priorities", "zones", "seed", "out"));
+        Options options = Options.parse(args, names);
+        DatasetGenerator generator = new DatasetGenerator(Dataset.of(options), options.integer("promotions", 3),
+                options.text("priorities", "1:70,2:25,3:5"), options.text("zones", "Europe/Madrid,GMT+2,UTC,America/New_York"),
+                options.number("seed", 42));
+        String out = options.text("out", "prices.csv");
+
+        long started = System.nanoTime();
+        long rows;
+        try (Writer writer = "-".equals(out)
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Path.of(out))) {
+            rows = generator.write(writer);
+        }
+        System.err.printf("Wrote %d rows to %s in %d ms%n", rows, out, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * @return the number of rows written, the header excluded
+     */
+    long write(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime end = dataset.from().plusDays(dataset.days()).minusSeconds(1);
+        long rows = 0;
+        out.write(HEADER);
+        for (int productId = dataset.firstProductId(); productId < dataset.firstProductId() + dataset.products(); productId++) {
+            for (int brandId = 1; brandId <= dataset.brands(); brandId++) {
+                String zone = zones[(brandId - 1) % zones.length].trim();
+                String currency = zone.startsWith("America/") ? "USD" : "EUR";
+                int baseCents = 500 + random.nextInt(49_500);
+                row(out, brandId, productId, 1, 0, dataset.from(), end, baseCents, currency, zone);
+                int count = random.nextInt(2 * promotions + 1);
+                for (int i = 0; i < count; i++) {
+                    LocalDateTime start = dataset.from().plusSeconds(random.nextLong(dataset.seconds()));
+                    long seconds = (long) Math.exp(SHORTEST_PROMOTION + random.nextDouble() * (LONGEST_PROMOTION - SHORTEST_PROMOTION));
+                    LocalDateTime promotionEnd = start.plusSeconds(seconds - 1);
+                    int cents = baseCents * (50 + random.nextInt(46)) / 100;
+                    row(out, brandId, productId, 2 + i, priority(random), start, promotionEnd.isAfter(end) ? end : promotionEnd,
+                            cents, currency, zone);
+                }
+                rows += 1 + count;
+            }
+        }
+        out.flush();
+        return rows;
+    }
+
+    private int priority(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= pick) {
+            i++;
+        }
+        return priorities[i];
+    }
+
+    private static void row(Writer out, int brandId, int productId, int priceList, int priority, LocalDateTime start,
+                            LocalDateTime end, int cents, String currency, String zone) throws IOException {
+        out.append(Integer.toString(brandId)).append(',')
+                .append(Integer.toString(productId)).append(',')
+                .append(Integer.toString(priceList)).append(',')
+                .append(Integer.toString(priority)).append(',')
+                .append(DATE_TIME.format(start)).append(',')
+                .append(DATE_TIME.format(end)).append(',')
+                .append(Integer.toString(cents / 100)).append('.')
+                .append(cents % 100 < 10 ? "0" : "").append(Integer.toString(cents % 100)).append(',')
+                .append(currency).append(',')
+                .append(zone).append('\n');
+    }
+
+}
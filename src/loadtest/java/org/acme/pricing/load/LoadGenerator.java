@@ -0,0 +1,344 @@
+package org.acme.pricing.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load on {@code GET /api/prices/search-rates}: requests are sent at a fixed rate whatever the response
+ * times, and every latency is measured from the instant the request was due rather than sent, so a stalled server
+ * shows up in the percentiles instead of slowing the load down (coordinated omission).
+ * <p>
+ * Queries hit the keys of a {@link Dataset} at random instants of its period, products picked uniformly or with a
+ * Zipf skew ({@code --zipf}); {@code --miss-ratio} of them ask for unknown products and expect a 404. More than
+ * {@code --max-in-flight} outstanding requests are not sent and count as errors, with the latency of a request that
+ * timed out ({@code --timeout-ms}), the least a caller waiting on them would have seen.
+ * Requests still outstanding once the drain after the run times out count as failed, with the latency they had then.
+ * Latencies go to HdrHistogram, one line per second and the percentiles of the measured period (after
+ * {@code --warmup}) at the end.
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dload.args="--rps=2000 --duration=60 --products=100000 --import=prices.csv"
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final DateTimeFormatter APPLIED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    private final HttpClient client;
+
+    private final String searchRates;
+
+    private final Dataset dataset;
+
+    private final double[] zipf;
+
+    private final double missRatio;
+
+    private final int maxInFlight;
+
+    private final Duration timeout;
+
+    private final Set<Pending> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Recorder intervalLatencies = new Recorder(HIGHEST_LATENCY_MICROS, 3);
+
+    private final Recorder measuredLatencies = new Recorder(HIGHEST_LATENCY_MICROS, 3);
+
+    private final AtomicReference<Outcomes> intervalOutcomes = new AtomicReference<>(new Outcomes());
+
+    private final Outcomes measuredOutcomes = new Outcomes();
+
+    LoadGenerator(String url, Dataset dataset, double zipf, double missRatio, int maxInFlight, Duration timeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.searchRates = url + "/api/prices/search-rates";
+        this.dataset = dataset;
+        this.zipf = zipf > 0 ? cumulativeZipf(dataset.products(), zipf) : null;
+        this.missRatio = missRatio;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Set<String> names = new HashSet<>(Dataset.OPTIONS);
+        names.addAll(Set.of("url", "rps", "duration", "warmup", "zipf", "miss-ratio", "max-in-flight", "timeout-ms",
+                "seed", "import", "hgrm", "max-error-ratio"));
+        Options options = Options.parse(args, names);
+        String url = options.text("url", "http://localhost:18080");
+        LoadGenerator load = new LoadGenerator(url, Dataset.of(options), options.decimal("zipf", 0),
+                options.decimal("miss-ratio", 0), options.integer("max-in-flight", 1000),
+                Duration.ofMillis(options.integer("timeout-ms", 2000)));
+
+        String dataset = options.text("import", "");
+        if (!dataset.isEmpty()) {
+            load.importDataset(url, Path.of(dataset));
+        }
+        Result result = load.run(options.integer("rps", 500), options.integer("warmup", 5),
+                options.integer("duration", 30), options.number("seed", 42));
+        result.print(System.out);
+
+        String hgrm = options.text("hgrm", "");
+        if (!hgrm.isEmpty()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(Path.of(hgrm)))) {
+                result.latencies().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        if (result.errorRatio() > options.decimal("max-error-ratio", 1)) {
+            System.exit(1);
+        }
+    }
+
+    void importDataset(String url, Path csv) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/prices/import"))
+                .header("Content-Type", "text/csv")
+                .POST(HttpRequest.BodyPublishers.ofFile(csv))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        System.out.printf("Imported %s: %d %s%n", csv, response.statusCode(), response.body());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Import of " + csv + " failed");
+        }
+    }
+
+    /**
+     * Send {@code rps} requests per second for {@code warmup + duration} seconds, measuring the last
+     * {@code duration}.
+     */
+    Result run(int rps, int warmup, int duration, long seed) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long period = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger second = new AtomicInteger();
+        reporter.scheduleAtFixedRate(() -> report(second.incrementAndGet(), warmup), 1, 1, TimeUnit.SECONDS);
+        for (long i = 0; ; i++) {
+            long due = start + i * period;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(request(random), due, due >= measureFrom);
+        }
+        long drainUntil = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (!inFlight.isEmpty() && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        for (Pending pending : inFlight) {
+            if (inFlight.remove(pending)) {
+                complete(pending, Outcome.FAILED);
+            }
+        }
+        reporter.shutdownNow();
+        reporter.awaitTermination(1, TimeUnit.SECONDS);
+        return new Result(rps, duration, measuredOutcomes, measuredLatencies.getIntervalHistogram());
+    }
+
+    private HttpRequest request(SplittableRandom random) {
+        int productId;
+        if (random.nextDouble() < missRatio) {
+            productId = dataset.firstProductId() + dataset.products() + random.nextInt(1_000_000);
+        } else {
+            productId = dataset.firstProductId() + (zipf != null ? zipfRank(random.nextDouble()) : random.nextInt(dataset.products()));
+        }
+        int brandId = 1 + random.nextInt(dataset.brands());
+        String appliedAt = APPLIED_AT.format(dataset.from().plusSeconds(random.nextLong(dataset.seconds())).atOffset(ZoneOffset.UTC));
+        return HttpRequest.newBuilder(URI.create(searchRates + "?appliedAt=" + appliedAt + "&productId=" + productId + "&brandId=" + brandId))
+                .timeout(timeout)
+                .GET()
+                .build();
+    }
+
+    private void send(HttpRequest request, long due, boolean measured) {
+        if (inFlight.size() >= maxInFlight) {
+            // skipped the instant it is due: its own latency would be about 0 and improve the percentiles
+            record(Outcome.SKIPPED, Math.min(TimeUnit.NANOSECONDS.toMicros(timeout.toNanos()), HIGHEST_LATENCY_MICROS),
+                    measured);
+            return;
+        }
+        Pending pending = new Pending(due, measured);
+        inFlight.add(pending);
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            // unless the drain gave up on it
+            if (inFlight.remove(pending)) {
+                complete(pending, error != null ? Outcome.FAILED : Outcome.of(response.statusCode()));
+            }
+        });
+    }
+
+    private void complete(Pending pending, Outcome outcome) {
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - pending.due()), HIGHEST_LATENCY_MICROS);
+        record(outcome, micros, pending.measured());
+    }
+
+    private void record(Outcome outcome, long micros, boolean measured) {
+        intervalLatencies.recordValue(micros);
+        intervalOutcomes.get().add(outcome);
+        if (measured) {
+            measuredLatencies.recordValue(micros);
+            measuredOutcomes.add(outcome);
+        }
+    }
+
+    private void report(int second, int warmup) {
+        Outcomes outcomes = intervalOutcomes.getAndSet(new Outcomes());
+        Histogram latencies = intervalLatencies.getIntervalHistogram();
+        System.out.printf("%4ds%s %6d req/s  ok %6d  404 %5d  errors %5d  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  in-flight %d%n",
+                second, second <= warmup ? " warmup" : "       ", outcomes.total(), outcomes.count(Outcome.OK),
+                outcomes.count(Outcome.NOT_FOUND), outcomes.errors(), millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(99)), millis(latencies.getMaxValue()), inFlight.size());
+    }
+
+    private int zipfRank(double u) {
+        int low = 0;
+        int high = zipf.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zipf[middle] < u) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static double[] cumulativeZipf(int products, double exponent) {
+        double[] cumulative = new double[products];
+        double sum = 0;
+        for (int rank = 0; rank < products; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < products; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * A request sent and not recorded yet, identity-keyed: two requests due at the same instant are distinct.
+     */
+    private static final class Pending {
+
+        private final long due;
+
+        private final boolean measured;
+
+        Pending(long due, boolean measured) {
+            this.due = due;
+            this.measured = measured;
+        }
+
+        long due() {
+            return due;
+        }
+
+        boolean measured() {
+            return measured;
+        }
+    }
+
+    enum Outcome {
+        OK, NOT_FOUND, CLIENT_ERROR, SERVER_ERROR, FAILED, SKIPPED;
+
+        static Outcome of(int status) {
+            if (status == 404) {
+                return NOT_FOUND;
+            }
+            return status < 400 ? OK : status < 500 ? CLIENT_ERROR : SERVER_ERROR;
+        }
+    }
+
+    static final class Outcomes {
+
+        private final LongAdder[] counts = new LongAdder[Outcome.values().length];
+
+        Outcomes() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void add(Outcome outcome) {
+            counts[outcome.ordinal()].increment();
+        }
+
+        long count(Outcome outcome) {
+            return counts[outcome.ordinal()].sum();
+        }
+
+        long total() {
+            long total = 0;
+            for (LongAdder count : counts) {
+                total += count.sum();
+            }
+            return total;
+        }
+
+        /**
+         * Everything but a 2xx/3xx or an expected 404.
+         */
+        long errors() {
+            return total() - count(Outcome.OK) - count(Outcome.NOT_FOUND);
+        }
+    }
+
+    record Result(int rps, int duration, Outcomes outcomes, Histogram latencies) {
+
+        double errorRatio() {
+            long total = outcomes.total();
+            return total == 0 ? 0 : (double) outcomes.errors() / total;
+        }
+
+        void print(PrintStream out) {
+            out.printf("%nrequests   %d in %ds, %.1f req/s (target %d)%n", outcomes.total(), duration,
+                    (double) outcomes.total() / duration, rps);
+            out.printf("outcomes   ok %d, not found %d, 4xx %d, 5xx %d, failed %d, not sent %d%n",
+                    outcomes.count(Outcome.OK), outcomes.count(Outcome.NOT_FOUND), outcomes.count(Outcome.CLIENT_ERROR),
+                    outcomes.count(Outcome.SERVER_ERROR), outcomes.count(Outcome.FAILED), outcomes.count(Outcome.SKIPPED));
+            out.printf("errors     %.3f%%%n", errorRatio() * 100);
+            out.printf("latency    p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(90)),
+                    millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMaxValue()));
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.acme.pricing.load;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code --name=value} command line options of the load tools. Unknown names fail fast, so a typo does not silently
+ * run with a default.
+ */
+final class Options {
+
+    private final Map<String, String> values;
+
+    private Options(Map<String, String> values) {
+        this.values = values;
+    }
+
+    static Options parse(String[] args, Set<String> names) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'");
+            }
+            String name = arg.substring(2, separator);
+            if (!names.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + ", expected one of " + names);
+            }
+            values.put(name, arg.substring(separator + 1));
+        }
+        return new Options(values);
+    }
+
+    String text(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int integer(String name, int defaultValue) {
+        String value = values.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    long number(String name, long defaultValue) {
+        String value = values.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    double decimal(String name, double defaultValue) {
+        String value = values.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    LocalDateTime dateTime(String name, LocalDateTime defaultValue) {
+        String value = values.get(name);
+        return value != null ? LocalDateTime.parse(value) : defaultValue;
+    }
+
+}
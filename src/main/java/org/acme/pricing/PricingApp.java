@@ -5,17 +5,21 @@ import org.acme.pricing.exception.PlatformExceptionHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 @Import(PlatformExceptionHandler.class)
-@SpringBootApplication
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 @Slf4j
 public class PricingApp implements ApplicationListener<ApplicationReadyEvent> {
 
@@ -23,8 +27,22 @@ public class PricingApp implements ApplicationListener<ApplicationReadyEvent> {
     @Autowired
     private ApplicationContext applicationContext;
 
+    /**
+     * Startup steps kept for the startup report, enough for every bean of the context.
+     */
+    private static final int STARTUP_STEPS = 4096;
+
     public static void main(String[] args) {
-        SpringApplication.run(PricingApp.class, args);
+        application().run(args);
+    }
+
+    /**
+     * The application, recording its startup steps for {@link org.acme.pricing.config.StartupReport}.
+     */
+    public static SpringApplication application() {
+        SpringApplication application = new SpringApplication(PricingApp.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        return application;
     }
 
     @Override
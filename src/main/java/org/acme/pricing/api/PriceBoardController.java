@@ -0,0 +1,73 @@
+package org.acme.pricing.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.config.RatedPriceJsonConverter;
+import org.acme.pricing.data.PriceBoard;
+import org.acme.pricing.data.PriceWindow;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.OffsetDateTime;
+
+@RestController
+@RequestMapping("/api/prices")
+public class PriceBoardController {
+
+    private final PriceBoard board;
+
+    @Autowired
+    public PriceBoardController(PriceBoard board) {
+        this.board = board;
+    }
+
+    @Operation(summary = "Price board of a brand",
+            description = "Streams as NDJSON the effective price of every product of the brand at appliedAt, in " +
+                    "product order. Without appliedAt the board of the current time bucket is returned, priced at the " +
+                    "start of the bucket.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = RatedPriceDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @GetMapping("/board")
+    public void board(
+            @Parameter(example = "1") Integer brandId,
+            @Parameter(example = "2020-06-14T16:00:00+02:00") OffsetDateTime appliedAt,
+            HttpServletResponse response) throws IOException {
+        if (brandId == null) {
+            throw new PlatformHttpException("brandId is required", Response.Status.BAD_REQUEST);
+        }
+        PriceBoard.Board prices = appliedAt != null
+                ? board.find(appliedAt.toInstant().toEpochMilli(), brandId)
+                : board.current(System.currentTimeMillis(), brandId);
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        for (PriceWindow price : prices.prices()) {
+            RatedPriceJsonConverter.write(price.toRatedPrice(), out);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+}
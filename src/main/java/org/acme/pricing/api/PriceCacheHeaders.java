@@ -0,0 +1,88 @@
+package org.acme.pricing.api;
+
+import org.acme.pricing.data.PriceAt;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.springframework.http.CacheControl;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP caching headers of a resolved price.
+ * <p>
+ * The ETag is a strong validator hashed from every field of the body, so a conditional GET gets a 304 without the body
+ * being written. A strong validator names one representation: the binary one has its own ETag, and responses vary by
+ * Accept. A price stays the answer for the same query until its timeline segment ends, so it is cacheable up
+ * to then, capped by the configured max age. A segment that already ended answers a lookup in the past, which does
+ * not change unless the table does, and gets the cap.
+ */
+final class PriceCacheHeaders {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Mixed in first for the binary representation, the JSON ETags are unchanged.
+     */
+    private static final long BINARY = 'B';
+
+    private PriceCacheHeaders() {
+    }
+
+    /**
+     * @param binary the ETag of the binary representation rather than the JSON one
+     */
+    static String etag(RatedPriceDTO price, boolean binary) {
+        long hash = binary ? mix(FNV_OFFSET_BASIS, BINARY) : FNV_OFFSET_BASIS;
+        if (price.getId() != null) {
+            hash = mix(hash, price.getId().getMostSignificantBits());
+            hash = mix(hash, price.getId().getLeastSignificantBits());
+        }
+        hash = mix(hash, Objects.hashCode(price.getProductId()));
+        hash = mix(hash, Objects.hashCode(price.getBrandId()));
+        hash = mix(hash, Objects.hashCode(price.getRateListId()));
+        hash = mix(hash, price.getAppliedStartAt());
+        hash = mix(hash, price.getAppliedEndAt());
+        BigDecimal amount = price.getPrice();
+        if (amount != null) {
+            hash = mix(hash, amount.unscaledValue().hashCode());
+            hash = mix(hash, amount.scale());
+        }
+        hash = mix(hash, price.getCurrency() != null ? price.getCurrency().ordinal() : -1);
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * @param now          epoch milliseconds
+     * @param maxAgeSeconds cap of the max age
+     */
+    static CacheControl cacheControl(PriceAt price, long now, long maxAgeSeconds) {
+        if (!price.hasValidity()) {
+            return CacheControl.noCache();
+        }
+        long remaining = price.validUntil() - now;
+        long seconds = remaining <= 0 ? maxAgeSeconds : Math.min(maxAgeSeconds, remaining / 1000);
+        return CacheControl.maxAge(seconds, TimeUnit.SECONDS).cachePublic();
+    }
+
+    private static long mix(long hash, OffsetDateTime dateTime) {
+        if (dateTime == null) {
+            return mix(hash, -1);
+        }
+        hash = mix(hash, dateTime.toEpochSecond());
+        hash = mix(hash, dateTime.getNano());
+        return mix(hash, dateTime.getOffset().getTotalSeconds());
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.acme.pricing.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.acme.pricing.data.PriceImporter;
+import org.acme.pricing.dto.PriceImportReportDTO;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/prices")
+public class PriceImportController {
+
+    static final String TEXT_CSV = "text/csv";
+
+    private final PriceImporter importer;
+
+    @Autowired
+    public PriceImportController(PriceImporter importer) {
+        this.importer = importer;
+    }
+
+    @Operation(summary = "Bulk import of prices",
+            description = "Streams the rows of the body into the PRICES table, as CSV with a header line or as NDJSON. " +
+                    "Invalid rows are rejected and reported, the valid ones are imported.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK, see the imported and rejected counts", content = @Content(
+                    mediaType = "application/json", schema = @Schema(implementation = PriceImportReportDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Malformed payload", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @PostMapping(path = "/import", consumes = TEXT_CSV)
+    public PriceImportReportDTO importCsv(InputStream body) {
+        return importer.importCsv(body);
+    }
+
+    @Operation(summary = "Bulk import of prices", description = "NDJSON variant of the CSV import.")
+    @PostMapping(path = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public PriceImportReportDTO importNdjson(InputStream body) {
+        return importer.importNdjson(body);
+    }
+
+}
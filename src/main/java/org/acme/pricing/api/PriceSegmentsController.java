@@ -0,0 +1,57 @@
+package org.acme.pricing.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.acme.pricing.data.PriceSegments;
+import org.acme.pricing.dto.PriceSegmentsReportDTO;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/prices/segments")
+public class PriceSegmentsController {
+
+    private final PriceSegments segments;
+
+    @Autowired
+    public PriceSegmentsController(PriceSegments segments) {
+        this.segments = segments;
+    }
+
+    @Operation(summary = "Check the price segments",
+            description = "Recomputes the effective price segments from PRICES and reports the product/brand keys whose " +
+                    "materialized segments differ.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(
+                    mediaType = "application/json", schema = @Schema(implementation = PriceSegmentsReportDTO.class))),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @GetMapping("/check")
+    public PriceSegmentsReportDTO check() {
+        return segments.check();
+    }
+
+    @Operation(summary = "Rebuild the price segments",
+            description = "Replaces the materialized effective price segments with the ones recomputed from PRICES.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(
+                    mediaType = "application/json", schema = @Schema(implementation = PriceSegmentsReportDTO.class))),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @PostMapping("/rebuild")
+    public PriceSegmentsReportDTO rebuild() {
+        return segments.rebuild();
+    }
+
+}
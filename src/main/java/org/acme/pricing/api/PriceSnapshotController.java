@@ -0,0 +1,44 @@
+package org.acme.pricing.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.acme.pricing.data.PriceSnapshot;
+import org.acme.pricing.dto.PriceSnapshotReportDTO;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/prices")
+public class PriceSnapshotController {
+
+    private final PriceSnapshot snapshot;
+
+    @Autowired
+    public PriceSnapshotController(PriceSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Operation(summary = "Write a price snapshot",
+            description = "Writes the PRICES rows to the configured binary snapshot file, restored at the next startup.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(
+                    mediaType = "application/json", schema = @Schema(implementation = PriceSnapshotReportDTO.class))),
+            @ApiResponse(responseCode = "409", description = "No snapshot file configured, or the prices are sharded", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @PostMapping(path = "/snapshot")
+    public PriceSnapshotReportDTO writeSnapshot() {
+        return snapshot.write();
+    }
+
+}
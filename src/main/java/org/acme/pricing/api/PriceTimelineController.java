@@ -0,0 +1,102 @@
+package org.acme.pricing.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.data.PriceDAO;
+import org.acme.pricing.data.PriceTimeline;
+import org.acme.pricing.data.TimeZones;
+import org.acme.pricing.dto.PriceSegmentDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/prices")
+@Slf4j
+public class PriceTimelineController {
+
+    private final PriceDAO dao;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public PriceTimelineController(PriceDAO dao, ObjectMapper objectMapper) {
+        this.dao = dao;
+        this.objectMapper = objectMapper;
+    }
+
+    @Operation(summary = "Price timeline of a product",
+            description = "Streams as NDJSON the segments of [from, to) with a single effective price, in time order. " +
+                    "Each segment runs from startAt (inclusive) until endAt (exclusive), stretches without a price are " +
+                    "left out.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = PriceSegmentDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @GetMapping("/timeline")
+    public void timeline(
+            @Parameter(example = "35455") Integer productId,
+            @Parameter(example = "1") Integer brandId,
+            @Parameter(example = "2020-06-14T00:00:00+02:00") OffsetDateTime from,
+            @Parameter(example = "2020-07-14T00:00:00+02:00") OffsetDateTime to,
+            HttpServletResponse response) {
+        if (productId == null || brandId == null || from == null || to == null) {
+            throw new PlatformHttpException("productId, brandId, from and to are required", Response.Status.BAD_REQUEST);
+        }
+        if (!from.isBefore(to)) {
+            throw new PlatformHttpException("from must be before to", Response.Status.BAD_REQUEST);
+        }
+
+        // read before the response is started, a database failure still gets a problem response
+        List<PriceTimeline.Segment> segments = dao.timeline(productId, brandId, from.toInstant().toEpochMilli(),
+                to.toInstant().toEpochMilli());
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try {
+            OutputStream out = response.getOutputStream();
+            for (PriceTimeline.Segment segment : segments) {
+                write(out, segment);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // the client went away, the response is already committed and there is no one left to tell
+            log.debug("Timeline of {}/{} not delivered: {}", productId, brandId, e.getMessage());
+        }
+    }
+
+    /**
+     * One line per segment.
+     */
+    private void write(OutputStream out, PriceTimeline.Segment segment) throws IOException {
+        ZoneId timeZone = segment.winner().timeZone();
+        PriceSegmentDTO line = new PriceSegmentDTO(TimeZones.present(segment.start(), timeZone),
+                TimeZones.present(segment.end(), timeZone), segment.winner().toRatedPrice());
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+
+}
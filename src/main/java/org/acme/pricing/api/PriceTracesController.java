@@ -0,0 +1,55 @@
+package org.acme.pricing.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.data.PriceTracer;
+import org.acme.pricing.dto.PriceTraceDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/prices")
+public class PriceTracesController {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final PriceTracer tracer;
+
+    @Autowired
+    public PriceTracesController(PriceTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Operation(summary = "Recent request traces",
+            description = "The most recent requests kept for being slower than pricing.trace.threshold or sampled, " +
+                    "newest first, with their stage timings and SQL statements.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = PriceTraceDTO.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @GetMapping("/traces")
+    public List<PriceTraceDTO> traces(
+            @Parameter(description = "Only the requests of at least this many milliseconds", example = "100") Double minMillis,
+            @Parameter(description = "Maximum number of traces", example = "20") Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new PlatformHttpException("limit must be positive", Response.Status.BAD_REQUEST);
+        }
+        return tracer.recent(minMillis != null ? minMillis : 0, limit != null ? limit : DEFAULT_LIMIT);
+    }
+
+}
@@ -2,36 +2,70 @@ package org.acme.pricing.api;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.config.RatedPriceBinaryConverter;
+import org.acme.pricing.data.PriceAt;
+import org.acme.pricing.dto.PriceLookupDTO;
+import org.acme.pricing.dto.PriceLookupResultDTO;
 import org.acme.pricing.dto.RatedPriceDTO;
 import org.acme.pricing.data.PriceDAO;
+import org.acme.pricing.exception.PlatformHttpException;
 import org.acme.pricing.exception.ProblemInfo;
+import org.acme.pricing.exception.ProblemResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/prices")
 public class PricesController {
 
+    private static final ProblemInfo INCOMPLETE_LOOKUP = ProblemInfo.constant(
+            ProblemInfo.forStatusAndTitle(Response.Status.BAD_REQUEST, "appliedAt, productId and brandId are required"));
+
     private final PriceDAO dao;
 
+    private final int batchMaxSize;
+
+    private final long maxAgeSeconds;
+
+    private final ProblemResponses problems;
+
     @Autowired
-    public PricesController(PriceDAO dao) {
+    public PricesController(PriceDAO dao, @Value("${pricing.batch.max-size}") int batchMaxSize,
+                            @Value("${pricing.http.max-age}") long maxAgeSeconds, ProblemResponses problems) {
         this.dao = dao;
+        this.batchMaxSize = batchMaxSize;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.problems = problems;
     }
 
-    @Operation(summary = "Find prices")
+    @Operation(summary = "Find prices",
+            description = "The response carries an ETag and is cacheable until the price stops being the answer, " +
+                    "a request with a matching If-None-Match gets a 304. Callers accepting " +
+                    RatedPriceBinaryConverter.MEDIA_TYPE_VALUE + " get the fixed-layout binary representation, " +
+                    "JSON otherwise.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "OK", content = @Content(
+            @ApiResponse(responseCode = "200", description = "OK", content = {@Content(
                     mediaType = "application/json",
                     schema = @Schema(implementation = RatedPriceDTO.class),
                     examples = @ExampleObject(value = """
@@ -44,7 +78,10 @@ public class PricesController {
                               "price": 29.99,
                               "currency": "USD"
                             }
-                            """))),
+                            """)),
+                    @Content(mediaType = RatedPriceBinaryConverter.MEDIA_TYPE_VALUE,
+                            schema = @Schema(type = "string", format = "binary"))}),
+            @ApiResponse(responseCode = "304", description = "Not modified, the If-None-Match ETag is current"),
             @ApiResponse(responseCode = "400", description = "Invalid parameters provided", content = {
                     @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
             }),
@@ -60,13 +97,64 @@ public class PricesController {
     public ResponseEntity<Object> searchRates(
             @Parameter(example = "2020-07-08T10:00:00Z") OffsetDateTime appliedAt,
             @Parameter(example = "35455") Integer productId,
-            @Parameter(example = "1") Integer brandId) {
-        RatedPriceDTO price = dao.findPriceByDate(appliedAt, productId, brandId);
+            @Parameter(example = "1") Integer brandId,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        PriceAt price = dao.findPriceAt(appliedAt, productId, brandId);
         if (price != null) {
-            return ResponseEntity.ok(price);
+            // the representation is picked here, its ETag has to be known before the body is written: a matching
+            // If-None-Match turns this into a 304
+            boolean binary = RatedPriceBinaryConverter.isPreferred(accept);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(PriceCacheHeaders.etag(price.price(), binary))
+                    .cacheControl(PriceCacheHeaders.cacheControl(price, System.currentTimeMillis(), maxAgeSeconds))
+                    .varyBy(HttpHeaders.ACCEPT);
+            if (binary) {
+                response.contentType(RatedPriceBinaryConverter.MEDIA_TYPE);
+            }
+            return response.body(price.price());
         }
-        ProblemInfo problem = ProblemInfo.builder().status(404).title("Price not found for the given parameters").build();
-        return ResponseEntity.status(404).body(problem);
+        return problems.priceNotFound();
+    }
+
+    @Operation(summary = "Find prices for many products at once",
+            description = "Every item is resolved like the single search. The results keep the order of the lookups " +
+                    "and carry their own status: 200 with the price, 400 or 404 with the problem.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK, see the status of every item", content = @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = PriceLookupResultDTO.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal Server Error", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @PostMapping("/search-rates/batch")
+    public ResponseEntity<List<PriceLookupResultDTO>> searchRatesBatch(@RequestBody List<PriceLookupDTO> lookups) {
+        if (lookups.size() > batchMaxSize) {
+            throw new PlatformHttpException("Too many lookups, the maximum is " + batchMaxSize, Response.Status.BAD_REQUEST);
+        }
+
+        List<PriceLookupDTO> complete = lookups.stream().filter(PricesController::isComplete).toList();
+        Iterator<RatedPriceDTO> prices = complete.isEmpty()
+                ? Collections.emptyIterator() : dao.findPricesByDate(complete).iterator();
+
+        List<PriceLookupResultDTO> results = new ArrayList<>(lookups.size());
+        for (PriceLookupDTO lookup : lookups) {
+            if (!isComplete(lookup)) {
+                results.add(PriceLookupResultDTO.problem(INCOMPLETE_LOOKUP));
+                continue;
+            }
+            RatedPriceDTO price = prices.next();
+            results.add(price != null ? PriceLookupResultDTO.found(price)
+                    : PriceLookupResultDTO.problem(ProblemResponses.PRICE_NOT_FOUND_PROBLEM));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    private static boolean isComplete(PriceLookupDTO lookup) {
+        return lookup != null && lookup.getAppliedAt() != null && lookup.getProductId() != null && lookup.getBrandId() != null;
     }
 
 }
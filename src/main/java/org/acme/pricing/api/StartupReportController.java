@@ -0,0 +1,50 @@
+package org.acme.pricing.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.config.StartupReport;
+import org.acme.pricing.dto.StartupReportDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/prices")
+public class StartupReportController {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final StartupReport report;
+
+    @Autowired
+    public StartupReportController(StartupReport report) {
+        this.report = report;
+    }
+
+    @Operation(summary = "Startup timeline",
+            description = "The time from the JVM start until the application was ready and until the first " +
+                    "search-rates answered with a price, with the slowest startup steps.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = StartupReportDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid parameters provided", content = {
+                    @Content(mediaType = "application/json", schema = @Schema(implementation = ProblemInfo.class))
+            })
+    })
+    @GetMapping("/startup")
+    public StartupReportDTO startup(@Parameter(description = "Maximum number of startup steps", example = "20") Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new PlatformHttpException("limit must be positive", Response.Status.BAD_REQUEST);
+        }
+        return report.report(limit != null ? limit : DEFAULT_LIMIT);
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.acme.pricing.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+/**
+ * Training run of the CDS archive (the faststart Maven profile): once ready, the application answers a few
+ * search-rates through its own web server, so the classes of the request path are loaded too, and exits. Started with
+ * -XX:ArchiveClassesAtExit, the JVM then writes every class loaded so far to the archive the production instances
+ * start with (-XX:SharedArchiveFile).
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.startup.training-run", havingValue = "true")
+@Slf4j
+public class CdsTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final String query;
+
+    @Autowired
+    public CdsTrainingRun(@Value("${pricing.startup.training-query}") String query) {
+        this.query = query;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        int status = 0;
+        try {
+            String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+            URI uri = URI.create("http://localhost:" + port + "/api/prices/search-rates?" + query);
+            HttpClient client = HttpClient.newHttpClient();
+            for (String accept : List.of("application/json", RatedPriceBinaryConverter.MEDIA_TYPE_VALUE)) {
+                HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).header("Accept", accept).build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                log.debug("Training run search-rates {} {}: {}", uri, accept, response.statusCode());
+                if (response.statusCode() != 200) {
+                    status = 1;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Training run search-rates failed", e);
+            status = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 1;
+        }
+        int exitCode = status;
+        System.exit(SpringApplication.exit(event.getApplicationContext(), () -> exitCode));
+    }
+
+}
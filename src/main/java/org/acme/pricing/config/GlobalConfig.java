@@ -9,6 +9,7 @@ import io.swagger.v3.oas.models.info.License;
 import io.swagger.v3.oas.models.security.SecurityScheme;
 import org.h2.tools.Server;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -26,16 +27,22 @@ public class GlobalConfig {
      * Start H2 as local server.
      * Once this application starts and connects to the database, it can be accessed with externally:
      * JDBC URL: `jdbc:h2:tcp://localhost:9090/mem:pricing_module`
+     * Not started with h2.server.enabled=false, as in production.
      *
      * @return the H2 server
      * @throws SQLException in case of server init errors
      */
     @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "h2.server.enabled", havingValue = "true")
     public Server inMemoryH2DatabaseaServer() throws SQLException {
         return Server.createTcpServer("-tcp", "-tcpAllowOthers", "-tcpPort", h2ServerPort);
     }
 
+    /**
+     * The API description served by springdoc, not created when its springdoc.api-docs.enabled switch is off.
+     */
     @Bean
+    @ConditionalOnProperty(name = "springdoc.api-docs.enabled", havingValue = "true", matchIfMissing = true)
     public OpenAPI customOpenAPI(@Value("${app.version}") String appVersion) {
         Map<String, Object> exts = new HashMap<>();
         exts.put("x-api-id", "72d75c22-100d-4f6c-98ea-a820f30cf8d4");
@@ -0,0 +1,106 @@
+package org.acme.pricing.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request level metrics of the prices API, the DAO stages are timed in the DAO itself.
+ * <p>
+ * - pricing.api.serialization: JSON writing of the response bodies, by body type
+ * - pricing.api.requests: responses of the prices endpoints, by endpoint and status
+ * <p>
+ * Meters are resolved once and cached, recording is a map lookup plus an atomic update.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public MetricsConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJsonConverter(objectMapper, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new OutcomeCounter(meterRegistry)).addPathPatterns("/api/prices/**");
+    }
+
+    static class TimedJsonConverter extends MappingJackson2HttpMessageConverter {
+
+        private final MeterRegistry meterRegistry;
+
+        private final Map<Class<?>, Timer> timers = new ConcurrentHashMap<>();
+
+        TimedJsonConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+            super(objectMapper);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            long start = System.nanoTime();
+            try {
+                super.writeInternal(object, type, outputMessage);
+            } finally {
+                timers.computeIfAbsent(object.getClass(), bodyType -> Timer.builder("pricing.api.serialization")
+                                .description("JSON writing of the response body")
+                                .tag("type", bodyType.getSimpleName())
+                                .register(meterRegistry))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    static class OutcomeCounter implements HandlerInterceptor {
+
+        private final MeterRegistry meterRegistry;
+
+        private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+        OutcomeCounter(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            if (handler instanceof HandlerMethod method) {
+                String endpoint = method.getMethod().getName();
+                int status = response.getStatus();
+                counters.computeIfAbsent(endpoint + status, key -> Counter.builder("pricing.api.requests")
+                                .description("Responses of the prices API")
+                                .tag("endpoint", endpoint)
+                                .tag("status", String.valueOf(status))
+                                .register(meterRegistry))
+                        .increment();
+            }
+        }
+    }
+
+}
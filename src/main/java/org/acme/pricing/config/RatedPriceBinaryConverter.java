@@ -0,0 +1,323 @@
+package org.acme.pricing.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-layout binary representation of the search-rates response, for service-to-service callers that would rather
+ * not parse ISO dates and decimal prices. It is only written when asked for with {@link #MEDIA_TYPE}, JSON stays
+ * the default.
+ * <p>
+ * Big-endian, fields in the order of {@link RatedPriceDTO}, absent fields take no bytes:
+ * <pre>
+ * u8   version (1)
+ * u16  flags: bit 0-7 present id, productId, brandId, rateListId, appliedStartAt, appliedEndAt, price, currency;
+ *      bit 8/9 appliedStartAt/appliedEndAt with nanoseconds; bit 10 price unscaled value beyond a long
+ * 16   id, most then least significant bits
+ * i32  productId, brandId, rateListId
+ * i64  epoch seconds, i32 offset seconds, [i32 nanoseconds] of appliedStartAt, then of appliedEndAt
+ * i8   price scale, i64 unscaled value (minor units at the scale of the price), or
+ *      i32 scale, u8 length, two's complement unscaled value
+ * u8   currency code length, ASCII currency code
+ * </pre>
+ * Registered after the JSON converters by {@link ContentNegotiationConfig}, so a wildcard Accept still gets JSON.
+ * The offsets and scales are kept, so a decoded price equals the encoded one. Like {@link RatedPriceJsonConverter},
+ * a write goes through a reused per-thread buffer and allocates nothing.
+ */
+public class RatedPriceBinaryConverter extends AbstractHttpMessageConverter<RatedPriceDTO> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.acme.rated-price";
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    static final byte VERSION = 1;
+
+    private static final int ID = 1;
+    private static final int PRODUCT_ID = 1 << 1;
+    private static final int BRAND_ID = 1 << 2;
+    private static final int RATE_LIST_ID = 1 << 3;
+    private static final int APPLIED_START_AT = 1 << 4;
+    private static final int APPLIED_END_AT = 1 << 5;
+    private static final int PRICE = 1 << 6;
+    private static final int CURRENCY = 1 << 7;
+    private static final int APPLIED_START_AT_NANOS = 1 << 8;
+    private static final int APPLIED_END_AT_NANOS = 1 << 9;
+    private static final int BIG_PRICE = 1 << 10;
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * The ASCII code of every currency, by ordinal.
+     */
+    private static final byte[][] CURRENCIES = new byte[CurrencyEnum.values().length][];
+
+    static {
+        for (CurrencyEnum currency : CurrencyEnum.values()) {
+            CURRENCIES[currency.ordinal()] = currency.getValue().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Longest response: every field set, both dates with nanoseconds, a price of 255 unscaled bytes and a currency
+     * code of 255 characters.
+     */
+    private static final int BUFFER_SIZE = 1 + 2 + 16 + 3 * 4 + 2 * 16 + 4 + 1 + 255 + 1 + 255;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private static final int MAX_CACHED_PREFERENCES = 64;
+
+    private static final Map<String, Boolean> PREFERENCES = new ConcurrentHashMap<>();
+
+    private final Timer timer;
+
+    public RatedPriceBinaryConverter(MeterRegistry meterRegistry) {
+        super(MEDIA_TYPE);
+        this.timer = Timer.builder("pricing.api.serialization")
+                .description("Binary writing of the response body")
+                .tag("type", "RatedPriceBinary")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the Accept header prefers the binary representation: named explicitly, with a quality at least as high
+     * as any range that covers JSON. Headers that do not name it are not parsed, the ones that do are parsed once,
+     * callers send the same few over and over. A malformed header is not a preference, content negotiation rejects it.
+     */
+    public static boolean isPreferred(String accept) {
+        if (accept == null || !accept.contains(MEDIA_TYPE_VALUE)) {
+            return false;
+        }
+        Boolean preferred = PREFERENCES.get(accept);
+        if (preferred == null) {
+            preferred = parsePreference(accept);
+            if (PREFERENCES.size() < MAX_CACHED_PREFERENCES) {
+                PREFERENCES.putIfAbsent(accept, preferred);
+            }
+        }
+        return preferred;
+    }
+
+    private static boolean parsePreference(String accept) {
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        double binary = 0;
+        double json = 0;
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.equalsTypeAndSubtype(MEDIA_TYPE)) {
+                binary = Math.max(binary, mediaType.getQualityValue());
+            } else if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, mediaType.getQualityValue());
+            }
+        }
+        return binary > 0 && binary >= json;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return RatedPriceDTO.class == clazz;
+    }
+
+    @Override
+    protected RatedPriceDTO readInternal(Class<? extends RatedPriceDTO> clazz, HttpInputMessage inputMessage)
+            throws IOException {
+        byte[] bytes = inputMessage.getBody().readNBytes(BUFFER_SIZE + 1);
+        try {
+            return read(bytes, bytes.length);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new HttpMessageNotReadableException("Invalid binary rated price", e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(RatedPriceDTO price, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            write(price, outputMessage.getBody());
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static void write(RatedPriceDTO price, OutputStream out) throws IOException {
+        byte[] buffer = BUFFER.get();
+        out.write(buffer, 0, write(price, buffer));
+    }
+
+    /**
+     * @return the length of the encoded price
+     */
+    static int write(RatedPriceDTO price, byte[] buffer) {
+        buffer[0] = VERSION;
+        int flags = 0;
+        int pos = 3;
+        if (price.getId() != null) {
+            LONG.set(buffer, pos, price.getId().getMostSignificantBits());
+            LONG.set(buffer, pos + 8, price.getId().getLeastSignificantBits());
+            pos += 16;
+            flags |= ID;
+        }
+        if (price.getProductId() != null) {
+            pos = putInt(price.getProductId(), buffer, pos);
+            flags |= PRODUCT_ID;
+        }
+        if (price.getBrandId() != null) {
+            pos = putInt(price.getBrandId(), buffer, pos);
+            flags |= BRAND_ID;
+        }
+        if (price.getRateListId() != null) {
+            pos = putInt(price.getRateListId(), buffer, pos);
+            flags |= RATE_LIST_ID;
+        }
+        if (price.getAppliedStartAt() != null) {
+            flags |= APPLIED_START_AT;
+            if (price.getAppliedStartAt().getNano() != 0) {
+                flags |= APPLIED_START_AT_NANOS;
+            }
+            pos = putDateTime(price.getAppliedStartAt(), buffer, pos);
+        }
+        if (price.getAppliedEndAt() != null) {
+            flags |= APPLIED_END_AT;
+            if (price.getAppliedEndAt().getNano() != 0) {
+                flags |= APPLIED_END_AT_NANOS;
+            }
+            pos = putDateTime(price.getAppliedEndAt(), buffer, pos);
+        }
+        if (price.getPrice() != null) {
+            BigDecimal decimal = price.getPrice();
+            flags |= PRICE;
+            int scale = decimal.scale();
+            // at most 18 digits always fit a long
+            if (scale == (byte) scale && decimal.precision() <= 18) {
+                buffer[pos++] = (byte) scale;
+                LONG.set(buffer, pos, decimal.unscaledValue().longValue());
+                pos += 8;
+            } else {
+                flags |= BIG_PRICE;
+                byte[] bytes = decimal.unscaledValue().toByteArray();
+                if (bytes.length > 255) {
+                    throw new IllegalArgumentException("Price beyond 255 bytes of unscaled value: " + decimal);
+                }
+                pos = putInt(scale, buffer, pos);
+                buffer[pos++] = (byte) bytes.length;
+                System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+                pos += bytes.length;
+            }
+        }
+        if (price.getCurrency() != null) {
+            flags |= CURRENCY;
+            byte[] code = CURRENCIES[price.getCurrency().ordinal()];
+            buffer[pos++] = (byte) code.length;
+            System.arraycopy(code, 0, buffer, pos, code.length);
+            pos += code.length;
+        }
+        SHORT.set(buffer, 1, (short) flags);
+        return pos;
+    }
+
+    public static RatedPriceDTO read(byte[] buffer, int length) {
+        if (length < 3 || buffer[0] != VERSION) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " binary rated price");
+        }
+        int flags = Short.toUnsignedInt((short) SHORT.get(buffer, 1));
+        int pos = 3;
+        RatedPriceDTO price = new RatedPriceDTO();
+        if ((flags & ID) != 0) {
+            price.setId(new UUID((long) LONG.get(buffer, pos), (long) LONG.get(buffer, pos + 8)));
+            pos += 16;
+        }
+        if ((flags & PRODUCT_ID) != 0) {
+            price.setProductId((int) INT.get(buffer, pos));
+            pos += 4;
+        }
+        if ((flags & BRAND_ID) != 0) {
+            price.setBrandId((int) INT.get(buffer, pos));
+            pos += 4;
+        }
+        if ((flags & RATE_LIST_ID) != 0) {
+            price.setRateListId((int) INT.get(buffer, pos));
+            pos += 4;
+        }
+        if ((flags & APPLIED_START_AT) != 0) {
+            price.setAppliedStartAt(getDateTime(buffer, pos, (flags & APPLIED_START_AT_NANOS) != 0));
+            pos += (flags & APPLIED_START_AT_NANOS) != 0 ? 16 : 12;
+        }
+        if ((flags & APPLIED_END_AT) != 0) {
+            price.setAppliedEndAt(getDateTime(buffer, pos, (flags & APPLIED_END_AT_NANOS) != 0));
+            pos += (flags & APPLIED_END_AT_NANOS) != 0 ? 16 : 12;
+        }
+        if ((flags & PRICE) != 0) {
+            if ((flags & BIG_PRICE) == 0) {
+                price.setPrice(BigDecimal.valueOf((long) LONG.get(buffer, pos + 1), buffer[pos]));
+                pos += 9;
+            } else {
+                int scale = (int) INT.get(buffer, pos);
+                int bytes = Byte.toUnsignedInt(buffer[pos + 4]);
+                pos += 5;
+                price.setPrice(new BigDecimal(new BigInteger(Arrays.copyOfRange(buffer, pos, pos + bytes)), scale));
+                pos += bytes;
+            }
+        }
+        if ((flags & CURRENCY) != 0) {
+            int codeLength = Byte.toUnsignedInt(buffer[pos++]);
+            price.setCurrency(CurrencyEnum.fromValue(new String(buffer, pos, codeLength, StandardCharsets.US_ASCII)));
+            pos += codeLength;
+        }
+        if (pos != length) {
+            throw new IllegalArgumentException("Binary rated price of " + pos + " bytes followed by " + (length - pos));
+        }
+        return price;
+    }
+
+    private static int putInt(int value, byte[] buffer, int pos) {
+        INT.set(buffer, pos, value);
+        return pos + 4;
+    }
+
+    private static int putDateTime(OffsetDateTime dateTime, byte[] buffer, int pos) {
+        LONG.set(buffer, pos, dateTime.toEpochSecond());
+        pos = putInt(dateTime.getOffset().getTotalSeconds(), buffer, pos + 8);
+        return dateTime.getNano() != 0 ? putInt(dateTime.getNano(), buffer, pos) : pos;
+    }
+
+    private static OffsetDateTime getDateTime(byte[] buffer, int pos, boolean nanos) {
+        long epochSecond = (long) LONG.get(buffer, pos);
+        ZoneOffset offset = ZoneOffset.ofTotalSeconds((int) INT.get(buffer, pos + 8));
+        int nano = nanos ? (int) INT.get(buffer, pos + 12) : 0;
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), offset);
+    }
+
+}
@@ -0,0 +1,309 @@
+package org.acme.pricing.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the search-rates response without going through Jackson.
+ * <p>
+ * The output is byte for byte the JSON of the application ObjectMapper (declaration order, null fields left out,
+ * ISO-8601 offset dates, BigDecimal.toString prices), but field names and currencies are pre-encoded and numbers,
+ * UUIDs and dates are written digit by digit into a reused buffer that goes to the response stream in one write, so
+ * a response allocates nothing.
+ * Values outside the common shapes (years beyond 9999, prices in exponent notation) fall back to the cached ISO
+ * formatter and BigDecimal.toString.
+ * <p>
+ * Only writes, request bodies are left to Jackson.
+ */
+@Component
+public class RatedPriceJsonConverter extends AbstractHttpMessageConverter<RatedPriceDTO> {
+
+    private static final byte[] ID = ascii("\"id\":\"");
+    private static final byte[] PRODUCT_ID = ascii("\"productId\":");
+    private static final byte[] BRAND_ID = ascii("\"brandId\":");
+    private static final byte[] RATE_LIST_ID = ascii("\"rateListId\":");
+    private static final byte[] APPLIED_START_AT = ascii("\"appliedStartAt\":\"");
+    private static final byte[] APPLIED_END_AT = ascii("\"appliedEndAt\":\"");
+    private static final byte[] PRICE = ascii("\"price\":");
+    private static final byte[] CURRENCY = ascii("\"currency\":");
+
+    /**
+     * The quoted JSON value of every currency, by ordinal.
+     */
+    private static final byte[][] CURRENCIES = new byte[CurrencyEnum.values().length][];
+
+    static {
+        for (CurrencyEnum currency : CurrencyEnum.values()) {
+            CURRENCIES[currency.ordinal()] = ascii("\"" + currency.getValue() + "\"");
+        }
+    }
+
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * BigDecimal.toString switches to exponent notation below this adjusted exponent.
+     */
+    private static final int MIN_PLAIN_ADJUSTED_EXPONENT = -6;
+
+    /**
+     * Longest response without fallback values, with room to spare: every field set, dates with nanoseconds and
+     * offsets with seconds, an 18 digit price.
+     */
+    private static final int BUFFER_SIZE = 512;
+
+    /**
+     * Scratch buffer of the response, handed to the stream in a single write. Per thread like the Jackson buffer
+     * recyclers, so virtual threads pay for one per request as they do with Jackson.
+     */
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final Timer timer;
+
+    @Autowired
+    public RatedPriceJsonConverter(MeterRegistry meterRegistry) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.timer = Timer.builder("pricing.api.serialization")
+                .description("JSON writing of the response body")
+                .tag("type", RatedPriceDTO.class.getSimpleName())
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return RatedPriceDTO.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected RatedPriceDTO readInternal(Class<? extends RatedPriceDTO> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("RatedPriceDTO is write only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(RatedPriceDTO price, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            write(price, outputMessage.getBody());
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static void write(RatedPriceDTO price, OutputStream out) throws IOException {
+        byte[] buffer = BUFFER.get();
+        int pos = 0;
+        buffer[pos++] = '{';
+        boolean next = false;
+        if (price.getId() != null) {
+            pos = put(ID, buffer, pos);
+            pos = putUuid(price.getId(), buffer, pos);
+            buffer[pos++] = '"';
+            next = true;
+        }
+        if (price.getProductId() != null) {
+            pos = put(next, PRODUCT_ID, buffer, pos);
+            pos = putLong(price.getProductId(), buffer, pos);
+            next = true;
+        }
+        if (price.getBrandId() != null) {
+            pos = put(next, BRAND_ID, buffer, pos);
+            pos = putLong(price.getBrandId(), buffer, pos);
+            next = true;
+        }
+        if (price.getRateListId() != null) {
+            pos = put(next, RATE_LIST_ID, buffer, pos);
+            pos = putLong(price.getRateListId(), buffer, pos);
+            next = true;
+        }
+        if (price.getAppliedStartAt() != null) {
+            pos = put(next, APPLIED_START_AT, buffer, pos);
+            pos = putDateTime(price.getAppliedStartAt(), buffer, pos, out);
+            buffer[pos++] = '"';
+            next = true;
+        }
+        if (price.getAppliedEndAt() != null) {
+            pos = put(next, APPLIED_END_AT, buffer, pos);
+            pos = putDateTime(price.getAppliedEndAt(), buffer, pos, out);
+            buffer[pos++] = '"';
+            next = true;
+        }
+        if (price.getPrice() != null) {
+            pos = put(next, PRICE, buffer, pos);
+            pos = putDecimal(price.getPrice(), buffer, pos, out);
+            next = true;
+        }
+        if (price.getCurrency() != null) {
+            pos = put(next, CURRENCY, buffer, pos);
+            pos = put(CURRENCIES[price.getCurrency().ordinal()], buffer, pos);
+        }
+        buffer[pos++] = '}';
+        out.write(buffer, 0, pos);
+    }
+
+    private static int put(boolean next, byte[] name, byte[] buffer, int pos) {
+        if (next) {
+            buffer[pos++] = ',';
+        }
+        return put(name, buffer, pos);
+    }
+
+    private static int put(byte[] bytes, byte[] buffer, int pos) {
+        System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    /**
+     * Flushes what is buffered and writes a formatted value that may not fit the buffer.
+     */
+    private static int putFallback(String value, byte[] buffer, int pos, OutputStream out) throws IOException {
+        out.write(buffer, 0, pos);
+        out.write(ascii(value));
+        return 0;
+    }
+
+    private static int putUuid(UUID uuid, byte[] buffer, int pos) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        pos = putHex(most >>> 32, 8, buffer, pos);
+        buffer[pos++] = '-';
+        pos = putHex(most >>> 16, 4, buffer, pos);
+        buffer[pos++] = '-';
+        pos = putHex(most, 4, buffer, pos);
+        buffer[pos++] = '-';
+        pos = putHex(least >>> 48, 4, buffer, pos);
+        buffer[pos++] = '-';
+        return putHex(least, 12, buffer, pos);
+    }
+
+    private static int putHex(long value, int digits, byte[] buffer, int pos) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            buffer[pos++] = HEX[(int) (value >>> shift) & 0xF];
+        }
+        return pos;
+    }
+
+    /**
+     * Only called with int values, so the negation cannot overflow.
+     */
+    private static int putLong(long value, byte[] buffer, int pos) {
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        return putDigits(value, digitCount(value), buffer, pos);
+    }
+
+    /**
+     * The lowest digits of a non-negative value, zero padded.
+     */
+    private static int putDigits(long value, int digits, byte[] buffer, int pos) {
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * ISO_OFFSET_DATE_TIME: seconds always printed, the fraction with as few digits as needed, 'Z' for UTC.
+     */
+    private static int putDateTime(OffsetDateTime dateTime, byte[] buffer, int pos, OutputStream out) throws IOException {
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            return putFallback(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(dateTime), buffer, pos, out);
+        }
+        pos = putDigits(year, 4, buffer, pos);
+        buffer[pos++] = '-';
+        pos = putDigits(dateTime.getMonthValue(), 2, buffer, pos);
+        buffer[pos++] = '-';
+        pos = putDigits(dateTime.getDayOfMonth(), 2, buffer, pos);
+        buffer[pos++] = 'T';
+        pos = putDigits(dateTime.getHour(), 2, buffer, pos);
+        buffer[pos++] = ':';
+        pos = putDigits(dateTime.getMinute(), 2, buffer, pos);
+        buffer[pos++] = ':';
+        pos = putDigits(dateTime.getSecond(), 2, buffer, pos);
+        int nano = dateTime.getNano();
+        if (nano > 0) {
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            buffer[pos++] = '.';
+            pos = putDigits(nano, digits, buffer, pos);
+        }
+        String offset = dateTime.getOffset().getId();
+        for (int i = 0; i < offset.length(); i++) {
+            buffer[pos++] = (byte) offset.charAt(i);
+        }
+        return pos;
+    }
+
+    /**
+     * BigDecimal.toString, digit by digit for the plain notation of an unscaled value that fits a long.
+     */
+    private static int putDecimal(BigDecimal decimal, byte[] buffer, int pos, OutputStream out) throws IOException {
+        int scale = decimal.scale();
+        if (scale < 0 || scale >= POWERS_OF_TEN.length || decimal.precision() >= POWERS_OF_TEN.length
+                || decimal.precision() - 1 - scale < MIN_PLAIN_ADJUSTED_EXPONENT) {
+            return putFallback(decimal.toString(), buffer, pos, out);
+        }
+        long unscaled = decimal.unscaledValue().longValue();
+        if (unscaled < 0) {
+            buffer[pos++] = '-';
+            unscaled = -unscaled;
+        }
+        long integer = unscaled / POWERS_OF_TEN[scale];
+        pos = putDigits(integer, digitCount(integer), buffer, pos);
+        if (scale > 0) {
+            buffer[pos++] = '.';
+            pos = putDigits(unscaled % POWERS_OF_TEN[scale], scale, buffer, pos);
+        }
+        return pos;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
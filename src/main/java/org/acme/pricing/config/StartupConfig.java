@@ -0,0 +1,64 @@
+package org.acme.pricing.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.acme.pricing.api.PricesController;
+import org.acme.pricing.data.PriceBoard;
+import org.acme.pricing.data.PriceChangeFeed;
+import org.acme.pricing.data.PriceDAO;
+import org.acme.pricing.data.PriceTracer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Startup of the application: the beans kept eager when spring.main.lazy-initialization is on, as in the faststart
+ * profile, and the first successful search-rates for the {@link StartupReport}.
+ */
+@Configuration
+public class StartupConfig implements WebMvcConfigurer {
+
+    private final StartupReport report;
+
+    @Autowired
+    public StartupConfig(StartupReport report) {
+        this.report = report;
+    }
+
+    /**
+     * The search-rates path is created at startup rather than on the first request, the lookups loaded by then, and
+     * so are the scheduled beans, a lazy one would never be scheduled. The other beans wait for their first use.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerPricingBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(PricesController.class, PriceDAO.class,
+                PriceChangeFeed.class, PriceBoard.class, PriceTracer.class);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new FirstSearchRates(report)).addPathPatterns("/api/prices/search-rates");
+    }
+
+    static class FirstSearchRates implements HandlerInterceptor {
+
+        private final StartupReport report;
+
+        FirstSearchRates(StartupReport report) {
+            this.report = report;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            if (response.getStatus() == HttpStatus.OK.value()) {
+                report.searchRatesServed();
+            }
+        }
+    }
+
+}
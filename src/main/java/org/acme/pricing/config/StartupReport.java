@@ -0,0 +1,110 @@
+package org.acme.pricing.config;
+
+import org.acme.pricing.dto.StartupReportDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.SpringApplicationEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup timeline of the application: when the context was refreshed, when it was ready and when the first
+ * search-rates was answered with a price, the time a scaled out instance takes to be useful. The slowest startup steps
+ * come from the {@link BufferingApplicationStartup} {@link org.acme.pricing.PricingApp} starts with.
+ */
+@Component
+public class StartupReport implements ApplicationListener<SpringApplicationEvent> {
+
+    private final ApplicationStartup applicationStartup;
+
+    private final Environment environment;
+
+    private volatile long startedAt;
+
+    private volatile long start;
+
+    private volatile long refreshed;
+
+    private volatile long ready;
+
+    private volatile long firstSearchRates;
+
+    @Autowired
+    public StartupReport(ApplicationStartup applicationStartup, Environment environment) {
+        this.applicationStartup = applicationStartup;
+        this.environment = environment;
+    }
+
+    @Override
+    public void onApplicationEvent(SpringApplicationEvent event) {
+        long now = System.nanoTime();
+        if (event instanceof ApplicationStartedEvent started && started.getTimeTaken() != null) {
+            start = now - started.getTimeTaken().toNanos();
+            startedAt = System.currentTimeMillis() - started.getTimeTaken().toMillis();
+            refreshed = now;
+        } else if (event instanceof ApplicationReadyEvent) {
+            ready = now;
+        }
+    }
+
+    /**
+     * Record a search-rates answered with a price, only the first one is kept.
+     */
+    public void searchRatesServed() {
+        if (firstSearchRates == 0) {
+            firstSearchRates = System.nanoTime();
+        }
+    }
+
+    public StartupReportDTO report(int limit) {
+        long jvmStartedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+        return StartupReportDTO.builder()
+                .jvmStartedAt(Instant.ofEpochMilli(jvmStartedAt).atOffset(ZoneOffset.UTC))
+                .startedAt(Instant.ofEpochMilli(startedAt).atOffset(ZoneOffset.UTC))
+                .jvmMillis(startedAt - jvmStartedAt)
+                .refreshedMillis(millis(refreshed - start))
+                .readyMillis(ready != 0 ? millis(ready - start) : null)
+                .firstSearchRatesMillis(firstSearchRates != 0 ? millis(firstSearchRates - start) : null)
+                .lazyInitialization(environment.getProperty("spring.main.lazy-initialization", Boolean.class, false))
+                .profiles(List.of(environment.getActiveProfiles()))
+                .slowestSteps(applicationStartup instanceof BufferingApplicationStartup buffering
+                        ? slowestSteps(buffering.getBufferedTimeline(), limit) : List.of())
+                .build();
+    }
+
+    private static List<StartupReportDTO.Step> slowestSteps(StartupTimeline timeline, int limit) {
+        return timeline.getEvents().stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(limit)
+                .map(event -> {
+                    Map<String, String> tags = new LinkedHashMap<>();
+                    for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+                        tags.put(tag.getKey(), tag.getValue());
+                    }
+                    return new StartupReportDTO.Step(event.getStartupStep().getName(), tags,
+                            millis(Duration.between(timeline.getStartTime(), event.getStartTime()).toNanos()),
+                            millis(event.getDuration().toNanos()));
+                })
+                .toList();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+}
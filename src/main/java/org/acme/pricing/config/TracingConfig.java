@@ -0,0 +1,61 @@
+package org.acme.pricing.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.acme.pricing.data.PriceTrace;
+import org.acme.pricing.data.PriceTracer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Traces the requests of the prices API with the {@link PriceTracer}, from the handler call until the response is
+ * complete. The traces and startup endpoints are not traced.
+ */
+@Configuration
+public class TracingConfig implements WebMvcConfigurer {
+
+    private final PriceTracer tracer;
+
+    @Autowired
+    public TracingConfig(PriceTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestTracer(tracer))
+                .addPathPatterns("/api/prices/**")
+                .excludePathPatterns("/api/prices/traces", "/api/prices/startup");
+    }
+
+    static class RequestTracer implements HandlerInterceptor {
+
+        private static final String TRACE = RequestTracer.class.getName() + ".trace";
+
+        private final PriceTracer tracer;
+
+        RequestTracer(PriceTracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            PriceTrace trace = tracer.begin(request.getMethod(), request.getRequestURI(), request.getQueryString());
+            if (trace != null) {
+                request.setAttribute(TRACE, trace);
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            if (request.getAttribute(TRACE) instanceof PriceTrace trace) {
+                tracer.end(trace, response.getStatus());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package org.acme.pricing.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in request handling on virtual threads: Tomcat hands every request to a new virtual thread instead of its
+ * bounded worker pool, so a request blocked on the database no longer holds a platform thread.
+ * <p>
+ * The database side stays bounded by {@link org.acme.pricing.data.DatabaseCallLimiter}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pricing.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+}
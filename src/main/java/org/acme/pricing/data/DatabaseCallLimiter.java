@@ -0,0 +1,113 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of request threads inside a database call.
+ * <p>
+ * With virtual threads there is no worker pool left to bound the callers, so without a cap every blocked request
+ * would queue inside the connection pool until its connection timeout. Callers beyond the cap wait up to the acquire
+ * timeout for a permit and are then rejected with 503.
+ */
+@Component
+@Slf4j
+public class DatabaseCallLimiter implements MeterBinder {
+
+    private final int maxConcurrency;
+
+    private final Semaphore permits;
+
+    private final long acquireTimeoutMillis;
+
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired
+    public DatabaseCallLimiter(@Value("${pricing.db.max-concurrency}") int maxConcurrency,
+                               @Value("${pricing.db.acquire-timeout}") long acquireTimeoutMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Take a permit, every successful call must be paired with {@link #release()}.
+     */
+    public void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            log.debug("No database permit within {} ms, {} callers waiting", acquireTimeoutMillis, permits.getQueueLength());
+            throw new PlatformHttpException(ProblemResponses.DATABASE_BUSY, Response.Status.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Take a permit per connection a caller holds at once, capped at the max concurrency. Every successful call must
+     * be paired with {@link #release(int)} of the same count.
+     */
+    public void acquire(int connections) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(Math.min(connections, maxConcurrency), acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            log.debug("No {} database permits within {} ms, {} callers waiting", connections, acquireTimeoutMillis, permits.getQueueLength());
+            throw new PlatformHttpException(ProblemResponses.DATABASE_BUSY, Response.Status.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public void release(int connections) {
+        permits.release(Math.min(connections, maxConcurrency));
+    }
+
+    public int inFlight() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pricing.db.in-flight", this, DatabaseCallLimiter::inFlight)
+                .description("Database calls holding a permit").register(registry);
+        Gauge.builder("pricing.db.waiting", this, DatabaseCallLimiter::waiting)
+                .description("Callers waiting for a database permit").register(registry);
+        FunctionCounter.builder("pricing.db.rejected", this, DatabaseCallLimiter::rejectedCount)
+                .description("Callers rejected after the acquire timeout").register(registry);
+    }
+
+}
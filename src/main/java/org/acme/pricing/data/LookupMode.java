@@ -0,0 +1,26 @@
+package org.acme.pricing.data;
+
+/**
+ * How {@link PriceDAO} resolves a price lookup.
+ * <p>
+ * INDEX – answer from the in-memory {@link PriceIndex}, the database is only read when the index is (re)loaded.
+ * STORE – answer from the {@link PriceStore}, the same timelines as INDEX in off-heap primitive columns, optionally
+ * memory-mapped from a snapshot file.
+ * CACHE – answer from the {@link PriceLookupCache}, a miss reads the rows of the product/brand from the database.
+ * SQL – run the prioritized query against the database for every lookup.
+ * SEGMENTS – run a query for every lookup against the {@link PriceSegments} materialized at write time, a primary key
+ * seek without sorting.
+ */
+public enum LookupMode {
+
+    INDEX,
+
+    STORE,
+
+    CACHE,
+
+    SQL,
+
+    SEGMENTS
+
+}
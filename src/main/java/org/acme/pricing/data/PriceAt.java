@@ -0,0 +1,19 @@
+package org.acme.pricing.data;
+
+import org.acme.pricing.dto.RatedPriceDTO;
+
+/**
+ * The price resolved for an instant and until when it stays the answer for later instants.
+ *
+ * @param validUntil epoch milliseconds, exclusive: the end of the winning window or the start of a window that
+ *                   takes over, whichever comes first. {@link #UNKNOWN} when the lookup mode does not know it.
+ */
+public record PriceAt(RatedPriceDTO price, long validUntil) {
+
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    public boolean hasValidity() {
+        return validUntil != UNKNOWN;
+    }
+
+}
@@ -0,0 +1,265 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The price board of a brand: every product of the brand with its price at an instant.
+ * <p>
+ * A board is a single scan of the brand's windows covering the instant, one statement per shard, followed by a
+ * fork-join pass over product ranges: the windows are sorted by product, split in ranges of about partition-size
+ * windows without cutting a product in two, the winner of every product is resolved in parallel and the ranges are
+ * joined back in product order. Winners follow {@link PriceTimeline#WINNER_ORDER}, like the in-memory lookups.
+ * <p>
+ * With a time bucket configured, the current board of a brand is computed at the start of the bucket and held until
+ * the bucket is over or a price of the brand changes. Concurrent requests for a board not held yet share a single
+ * computation, the brands to precompute have it computed ahead of the first request.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@Slf4j
+public class PriceBoard implements PriceChangeListener {
+
+    private final PriceShards shards;
+
+    private final DatabaseCallLimiter limiter;
+
+    private final int partitionSize;
+
+    private final long bucket;
+
+    private final List<Integer> precomputeBrands;
+
+    private final Timer computeTimer;
+
+    private final Map<Integer, Held> held = new ConcurrentHashMap<>();
+
+    private final Map<Integer, AtomicLong> changes = new ConcurrentHashMap<>();
+
+    private final AtomicLong allChanges = new AtomicLong();
+
+    private final SingleFlight<Bucket, Held> computations = new SingleFlight<>("board");
+
+    @Autowired
+    public PriceBoard(PriceShards shards, DatabaseCallLimiter limiter,
+                      @Value("${pricing.board.partition-size}") int partitionSize,
+                      @Value("${pricing.board.bucket}") long bucket,
+                      @Value("${pricing.board.precompute-brands}") List<Integer> precomputeBrands,
+                      MeterRegistry meterRegistry) {
+        if (partitionSize < 1) {
+            throw new IllegalArgumentException("pricing.board.partition-size must be at least 1");
+        }
+        this.shards = shards;
+        this.limiter = limiter;
+        this.partitionSize = partitionSize;
+        this.bucket = bucket;
+        this.precomputeBrands = List.copyOf(precomputeBrands);
+        this.computeTimer = Timer.builder("pricing.board.compute").description("Price board scan and resolution")
+                .register(meterRegistry);
+        computations.bindTo(meterRegistry);
+    }
+
+    /**
+     * @param at epoch milliseconds
+     */
+    public Board find(long at, int brandId) {
+        long start = System.nanoTime();
+        List<PriceWindow> windows = new ArrayList<>();
+        if (shards.count() == 1) {
+            scan(shards.dataSource(0), at, brandId, windows);
+        } else {
+            shards.fanOut(shard -> scan(shards.dataSource(shard), at, brandId, new ArrayList<>())).forEach(windows::addAll);
+        }
+        PriceWindow[] byProduct = windows.toArray(PriceWindow[]::new);
+        Arrays.parallelSort(byProduct, Comparator.comparingInt(PriceWindow::productId));
+        List<PriceWindow> prices = byProduct.length == 0 ? List.of()
+                : ForkJoinPool.commonPool().invoke(new Partition(byProduct, 0, byProduct.length, partitionSize));
+        computeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Computed the price board of brand {} with {} products from {} windows", brandId, prices.size(), byProduct.length);
+        return new Board(brandId, at, prices);
+    }
+
+    /**
+     * The board of the time bucket the instant falls in, computed at the start of the bucket. Without a bucket
+     * configured, the board at the instant.
+     *
+     * @param now epoch milliseconds
+     */
+    public Board current(long now, int brandId) {
+        if (bucket <= 0) {
+            return find(now, brandId);
+        }
+        long start = Math.floorDiv(now, bucket) * bucket;
+        Held board = held.get(brandId);
+        if (board != null && board.isCurrent(start, changeCount(brandId))) {
+            return board.board();
+        }
+        return computations.execute(new Bucket(brandId, start), () -> {
+            long changeCount = changeCount(brandId);
+            Held computed = new Held(find(start, brandId), changeCount);
+            held.merge(brandId, computed, (previous, next) -> next.board().at() >= previous.board().at() ? next : previous);
+            return computed;
+        }).board();
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.board.precompute-interval}")
+    public void precompute() {
+        long now = System.currentTimeMillis();
+        for (Integer brandId : precomputeBrands) {
+            current(now, brandId);
+        }
+    }
+
+    /**
+     * A held board of the brand is no longer current, the next request computes it again.
+     */
+    @Override
+    public void onPriceChange(int productId, int brandId) {
+        changes.computeIfAbsent(brandId, k -> new AtomicLong()).incrementAndGet();
+        held.remove(brandId);
+    }
+
+    @Override
+    public void onAllPricesChange() {
+        allChanges.incrementAndGet();
+        held.clear();
+    }
+
+    private long changeCount(int brandId) {
+        AtomicLong count = changes.get(brandId);
+        return allChanges.get() + (count != null ? count.get() : 0);
+    }
+
+    private List<PriceWindow> scan(DataSource dataSource, long at, int brandId, List<PriceWindow> windows) {
+        String query = "SELECT * " +
+                "FROM PRICES " +
+                "WHERE BRAND_ID = ?" +
+                "  AND START_AT <= ?" +
+                "  AND END_AT >= ?;";
+
+        limiter.acquire();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, brandId);
+            statement.setObject(2, Instant.ofEpochMilli(at).atOffset(ZoneOffset.UTC));
+            statement.setObject(3, Instant.ofEpochMilli(at).atOffset(ZoneOffset.UTC));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    windows.add(PriceWindow.fromResultSet(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Problem executing the SQL statement", e);
+            throw new PlatformHttpException(ProblemResponses.DATABASE_FAILURE, Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+        return windows;
+    }
+
+    /**
+     * @param at     epoch milliseconds
+     * @param prices the winning window of every product of the brand, in product order
+     */
+    public record Board(int brandId, long at, List<PriceWindow> prices) {
+    }
+
+    /**
+     * @param changeCount price changes of the brand seen before the board was computed
+     */
+    private record Held(Board board, long changeCount) {
+
+        boolean isCurrent(long bucketStart, long changeCount) {
+            return board.at() == bucketStart && this.changeCount == changeCount;
+        }
+    }
+
+    private record Bucket(int brandId, long start) {
+    }
+
+    /**
+     * Resolves the winners of a range of windows sorted by product, splitting it at a product boundary while it is
+     * larger than the partition size.
+     */
+    private static final class Partition extends RecursiveTask<List<PriceWindow>> {
+
+        private final PriceWindow[] windows;
+
+        private final int from;
+
+        private final int to;
+
+        private final int partitionSize;
+
+        Partition(PriceWindow[] windows, int from, int to, int partitionSize) {
+            this.windows = windows;
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected List<PriceWindow> compute() {
+            if (to - from <= partitionSize) {
+                return winners();
+            }
+            int middle = (from + to) >>> 1;
+            while (middle < to && windows[middle].productId() == windows[middle - 1].productId()) {
+                middle++;
+            }
+            if (middle == to) {
+                return winners();
+            }
+            Partition lower = new Partition(windows, from, middle, partitionSize);
+            lower.fork();
+            List<PriceWindow> upper = new Partition(windows, middle, to, partitionSize).compute();
+            List<PriceWindow> prices = lower.join();
+            prices.addAll(upper);
+            return prices;
+        }
+
+        private List<PriceWindow> winners() {
+            List<PriceWindow> prices = new ArrayList<>();
+            PriceWindow winner = windows[from];
+            for (int i = from + 1; i < to; i++) {
+                PriceWindow window = windows[i];
+                if (window.productId() != winner.productId()) {
+                    prices.add(winner);
+                    winner = window;
+                } else if (PriceTimeline.WINNER_ORDER.compare(window, winner) < 0) {
+                    winner = window;
+                }
+            }
+            prices.add(winner);
+            return prices;
+        }
+    }
+
+}
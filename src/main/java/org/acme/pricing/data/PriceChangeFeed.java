@@ -0,0 +1,103 @@
+package org.acme.pricing.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Polls the PRICE_CHANGES table filled by the {@link PriceChangeTrigger} and pushes one notification per changed
+ * (productId, brandId) to the {@link PriceChangeListener}s.
+ * <p>
+ * The change rows are deleted only after the listeners have been notified, so a failed poll is retried on the next
+ * one. Rows of uncommitted transactions are not visible yet and are picked up once committed. Every shard has its
+ * own PRICE_CHANGES table and is polled in turn.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@ConditionalOnProperty(name = "pricing.change-feed.enabled", havingValue = "true")
+@Slf4j
+public class PriceChangeFeed {
+
+    private static final int MAX_CHANGES_PER_POLL = 10_000;
+
+    private final PriceShards shards;
+
+    private final List<PriceChangeListener> listeners;
+
+    @Autowired
+    public PriceChangeFeed(PriceShards shards, List<PriceChangeListener> listeners) {
+        this.shards = shards;
+        this.listeners = listeners;
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.change-feed.poll-interval}")
+    public void poll() {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            try {
+                while (pollOnce(shards.dataSource(shard)) == MAX_CHANGES_PER_POLL) {
+                    // drain the backlog before waiting for the next interval
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.debug("Problem polling the price changes of shard {}", shard, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of change rows consumed over all the shards
+     */
+    int pollOnce() throws SQLException {
+        int consumed = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            consumed += pollOnce(shards.dataSource(shard));
+        }
+        return consumed;
+    }
+
+    private int pollOnce(DataSource dataSource) throws SQLException {
+        String select = "SELECT SEQ, PRODUCT_ID, BRAND_ID FROM PRICE_CHANGES ORDER BY SEQ LIMIT " + MAX_CHANGES_PER_POLL + ";";
+        String delete = "DELETE FROM PRICE_CHANGES WHERE SEQ = ANY(?);";
+
+        List<Long> sequences = new ArrayList<>();
+        Set<Long> keys = new LinkedHashSet<>();
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(select);
+                 ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    sequences.add(resultSet.getLong("SEQ"));
+                    keys.add(PriceKey.of(resultSet.getInt("PRODUCT_ID"), resultSet.getInt("BRAND_ID")));
+                }
+            }
+            if (sequences.isEmpty()) {
+                return 0;
+            }
+
+            for (long key : keys) {
+                for (PriceChangeListener listener : listeners) {
+                    listener.onPriceChange(PriceKey.productId(key), PriceKey.brandId(key));
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(delete)) {
+                statement.setArray(1, connection.createArrayOf("BIGINT", sequences.toArray()));
+                statement.executeUpdate();
+            }
+        }
+        log.debug("Applied {} price changes on {} product/brand keys", sequences.size(), keys.size());
+        return sequences.size();
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.acme.pricing.data;
+
+/**
+ * Notified by the {@link PriceChangeFeed} when the rows of a (productId, brandId) have changed.
+ */
+public interface PriceChangeListener {
+
+    void onPriceChange(int productId, int brandId);
+
+    /**
+     * Notified instead of once per key when the rows of too many keys changed at once, like after a bulk import.
+     */
+    void onAllPricesChange();
+
+}
@@ -0,0 +1,82 @@
+package org.acme.pricing.data;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * H2 row trigger on PRICES that records the (productId, brandId) of every inserted, updated or deleted row into
+ * PRICE_CHANGES.
+ * <p>
+ * The change row is written in the same transaction as the price row, so it only becomes visible to the
+ * {@link PriceChangeFeed} once the change is committed.
+ * <p>
+ * Recording can be paused on the current thread for bulk rewrites that reload the lookups themselves, like a snapshot
+ * restore. The embedded database fires the trigger on the thread running the statement.
+ */
+public class PriceChangeTrigger implements Trigger {
+
+    private static final ThreadLocal<Boolean> PAUSED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private int productIdColumn = -1;
+
+    private int brandIdColumn = -1;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type)
+            throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                switch (columns.getString("COLUMN_NAME")) {
+                    case "PRODUCT_ID" -> productIdColumn = columns.getInt("ORDINAL_POSITION") - 1;
+                    case "BRAND_ID" -> brandIdColumn = columns.getInt("ORDINAL_POSITION") - 1;
+                    default -> {
+                        // not part of the key
+                    }
+                }
+            }
+        }
+        if (productIdColumn < 0 || brandIdColumn < 0) {
+            throw new SQLException("Table " + tableName + " has no PRODUCT_ID/BRAND_ID columns");
+        }
+    }
+
+    static void pause() {
+        PAUSED.set(Boolean.TRUE);
+    }
+
+    static void resume() {
+        PAUSED.remove();
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (PAUSED.get()) {
+            return;
+        }
+        if (oldRow != null) {
+            record(conn, oldRow);
+        }
+        if (newRow != null && (oldRow == null || !sameKey(oldRow, newRow))) {
+            record(conn, newRow);
+        }
+    }
+
+    private boolean sameKey(Object[] oldRow, Object[] newRow) {
+        return Objects.equals(oldRow[productIdColumn], newRow[productIdColumn])
+                && Objects.equals(oldRow[brandIdColumn], newRow[brandIdColumn]);
+    }
+
+    private void record(Connection conn, Object[] row) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("INSERT INTO PRICE_CHANGES (PRODUCT_ID, BRAND_ID) VALUES (?, ?)")) {
+            statement.setObject(1, row[productIdColumn]);
+            statement.setObject(2, row[brandIdColumn]);
+            statement.executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,357 @@
+package org.acme.pricing.data;
+
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable columnar form of the flattened price timelines, held in a single (direct or memory-mapped) ByteBuffer.
+ * <p>
+ * Every column is a primitive array laid out back to back: the sorted packed (productId, brandId) keys with the
+ * offset of their first segment, the segment starts/ends with their winning row, and per winning row its id, ids,
+ * priority, UTC window, price in minor units, currency ordinal and time zone index. A lookup is two binary searches
+ * over the buffer and creates no object, a {@link RatedPriceDTO} is only built for the row that is returned.
+ * <p>
+ * Windows keep epoch milliseconds like {@link PriceTimeline}, a segment end is the inclusive END_AT plus one
+ * millisecond. The buffer is the snapshot file format as is, so {@link #write(Path)} and {@link #map(Path)} copy
+ * nothing.
+ */
+public final class PriceColumns {
+
+    static final int MAGIC = 0x50524353; // "PRCS"
+
+    static final int VERSION = 1;
+
+    /**
+     * Scale of PRICE DECIMAL(10, 2).
+     */
+    static final int MINOR_UNIT_SCALE = 2;
+
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+
+    private final int keyCount;
+
+    private final int segmentCount;
+
+    private final int rowCount;
+
+    private final ZoneId[] zones;
+
+    private final CurrencyEnum[] currencies = CurrencyEnum.values();
+
+    // column offsets in the buffer
+    private final int keys;
+    private final int keySegments;
+    private final int segmentStarts;
+    private final int segmentEnds;
+    private final int segmentRows;
+    private final int idHigh;
+    private final int idLow;
+    private final int startAts;
+    private final int endAts;
+    private final int prices;
+    private final int productIds;
+    private final int brandIds;
+    private final int priceLists;
+    private final int priorities;
+    private final int zoneIndexes;
+    private final int currencyOrdinals;
+
+    private PriceColumns(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a price columns buffer");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported price columns version " + buffer.getInt(4));
+        }
+        keyCount = buffer.getInt(8);
+        segmentCount = buffer.getInt(12);
+        rowCount = buffer.getInt(16);
+        int zoneCount = buffer.getInt(20);
+
+        int offset = HEADER_SIZE;
+        keys = offset;
+        offset += keyCount * Long.BYTES;
+        segmentStarts = offset;
+        offset += segmentCount * Long.BYTES;
+        segmentEnds = offset;
+        offset += segmentCount * Long.BYTES;
+        idHigh = offset;
+        offset += rowCount * Long.BYTES;
+        idLow = offset;
+        offset += rowCount * Long.BYTES;
+        startAts = offset;
+        offset += rowCount * Long.BYTES;
+        endAts = offset;
+        offset += rowCount * Long.BYTES;
+        prices = offset;
+        offset += rowCount * Long.BYTES;
+        keySegments = offset;
+        offset += (keyCount + 1) * Integer.BYTES;
+        segmentRows = offset;
+        offset += segmentCount * Integer.BYTES;
+        productIds = offset;
+        offset += rowCount * Integer.BYTES;
+        brandIds = offset;
+        offset += rowCount * Integer.BYTES;
+        priceLists = offset;
+        offset += rowCount * Integer.BYTES;
+        priorities = offset;
+        offset += rowCount * Integer.BYTES;
+        zoneIndexes = offset;
+        offset += rowCount * Short.BYTES;
+        currencyOrdinals = offset;
+        offset += rowCount;
+
+        zones = new ZoneId[zoneCount];
+        for (int i = 0; i < zoneCount; i++) {
+            byte[] id = new byte[buffer.getShort(offset)];
+            buffer.get(offset + Short.BYTES, id);
+            offset += Short.BYTES + id.length;
+            zones[i] = TimeZones.of(new String(id, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Flatten the windows, in any order, into a direct buffer.
+     */
+    public static PriceColumns of(List<PriceWindow> windows) {
+        return new PriceColumns(encode(windows));
+    }
+
+    /**
+     * Map a file written by {@link #write(Path)}. The columns are read from the page cache, not the heap.
+     */
+    public static PriceColumns map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PriceColumns(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write the buffer to a temporary file next to the target and move it in place, so a reader never maps a
+     * partially written file.
+     */
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer content = buffer.duplicate().clear();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the winning row at the instant or -1
+     */
+    public int find(long at, int productId, int brandId) {
+        int segment = findSegment(at, productId, brandId);
+        return segment >= 0 ? segmentRow(segment) : -1;
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the segment covering the instant or -1
+     */
+    public int findSegment(long at, int productId, int brandId) {
+        int key = binarySearch(keys, 0, keyCount - 1, PriceKey.of(productId, brandId));
+        if (key < 0) {
+            return -1;
+        }
+        int first = buffer.getInt(keySegments + key * Integer.BYTES);
+        int last = buffer.getInt(keySegments + (key + 1) * Integer.BYTES) - 1;
+        int segment = lastAtOrBefore(segmentStarts, first, last, at);
+        if (segment < first || at >= segmentEnd(segment)) {
+            return -1;
+        }
+        return segment;
+    }
+
+    public int segmentRow(int segment) {
+        return buffer.getInt(segmentRows + segment * Integer.BYTES);
+    }
+
+    /**
+     * @return epoch milliseconds, exclusive
+     */
+    public long segmentEnd(int segment) {
+        return buffer.getLong(segmentEnds + segment * Long.BYTES);
+    }
+
+    /**
+     * Materialize a row returned by {@link #find(long, int, int)}.
+     */
+    public RatedPriceDTO toRatedPrice(int row) {
+        ZoneId timeZone = zones[buffer.getShort(zoneIndexes + row * Short.BYTES)];
+        RatedPriceDTO ratedPrice = new RatedPriceDTO();
+        ratedPrice.setId(new UUID(buffer.getLong(idHigh + row * Long.BYTES), buffer.getLong(idLow + row * Long.BYTES)));
+        ratedPrice.setProductId(buffer.getInt(productIds + row * Integer.BYTES));
+        ratedPrice.setBrandId(buffer.getInt(brandIds + row * Integer.BYTES));
+        ratedPrice.setRateListId(buffer.getInt(priceLists + row * Integer.BYTES));
+        ratedPrice.setPrice(BigDecimal.valueOf(buffer.getLong(prices + row * Long.BYTES), MINOR_UNIT_SCALE));
+        ratedPrice.setCurrency(currencies[buffer.get(currencyOrdinals + row)]);
+        ratedPrice.setAppliedStartAt(TimeZones.present(buffer.getLong(startAts + row * Long.BYTES), timeZone));
+        ratedPrice.setAppliedEndAt(TimeZones.present(buffer.getLong(endAts + row * Long.BYTES), timeZone));
+        return ratedPrice;
+    }
+
+    public int priority(int row) {
+        return buffer.getInt(priorities + row * Integer.BYTES);
+    }
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    public int segmentCount() {
+        return segmentCount;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    private int binarySearch(int column, int low, int high, long value) {
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midValue = buffer.getLong(column + mid * Long.BYTES);
+            if (midValue < value) {
+                low = mid + 1;
+            } else if (midValue > value) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int lastAtOrBefore(int column, int low, int high, long value) {
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(column + mid * Long.BYTES) <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static ByteBuffer encode(List<PriceWindow> windows) {
+        Map<Long, List<PriceWindow>> byKey = new LinkedHashMap<>();
+        for (PriceWindow window : windows) {
+            byKey.computeIfAbsent(window.key(), k -> new ArrayList<>()).add(window);
+        }
+        long[] sortedKeys = byKey.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+        int[] keySegmentOffsets = new int[sortedKeys.length + 1];
+        List<PriceTimeline.Segment> segments = new ArrayList<>();
+        Map<PriceWindow, Integer> rowOf = new IdentityHashMap<>();
+        List<PriceWindow> rows = new ArrayList<>();
+        List<ZoneId> zoneTable = new ArrayList<>();
+        Map<ZoneId, Integer> zoneOf = new LinkedHashMap<>();
+
+        for (int k = 0; k < sortedKeys.length; k++) {
+            keySegmentOffsets[k] = segments.size();
+            PriceWindow[] byStart = byKey.get(sortedKeys[k]).toArray(new PriceWindow[0]);
+            Arrays.sort(byStart, Comparator.comparingLong(PriceWindow::startAt));
+            PriceTimeline.Sweep sweep = new PriceTimeline.Sweep(segment -> {
+                segments.add(segment);
+                rowOf.computeIfAbsent(segment.winner(), window -> {
+                    zoneOf.computeIfAbsent(window.timeZone(), zone -> {
+                        zoneTable.add(zone);
+                        return zoneTable.size() - 1;
+                    });
+                    rows.add(window);
+                    return rows.size() - 1;
+                });
+            });
+            for (PriceWindow window : byStart) {
+                sweep.add(window);
+            }
+            sweep.finish();
+        }
+        keySegmentOffsets[sortedKeys.length] = segments.size();
+
+        if (zoneTable.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many time zones: " + zoneTable.size());
+        }
+        List<byte[]> zoneIds = zoneTable.stream().map(zone -> zone.getId().getBytes(StandardCharsets.UTF_8)).toList();
+
+        long size = HEADER_SIZE
+                + (long) sortedKeys.length * (Long.BYTES + Integer.BYTES) + Integer.BYTES
+                + (long) segments.size() * (2 * Long.BYTES + Integer.BYTES)
+                + (long) rows.size() * (5 * Long.BYTES + 4 * Integer.BYTES + Short.BYTES + 1)
+                + zoneIds.stream().mapToLong(id -> Short.BYTES + id.length).sum();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Price columns do not fit a single buffer: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sortedKeys.length).putInt(segments.size()).putInt(rows.size())
+                .putInt(zoneIds.size());
+        for (long key : sortedKeys) {
+            buffer.putLong(key);
+        }
+        segments.forEach(segment -> buffer.putLong(segment.start()));
+        segments.forEach(segment -> buffer.putLong(segment.end()));
+        rows.forEach(row -> buffer.putLong(row.id().getMostSignificantBits()));
+        rows.forEach(row -> buffer.putLong(row.id().getLeastSignificantBits()));
+        rows.forEach(row -> buffer.putLong(row.startAt()));
+        rows.forEach(row -> buffer.putLong(row.endAt()));
+        rows.forEach(row -> buffer.putLong(minorUnits(row.price())));
+        for (int offset : keySegmentOffsets) {
+            buffer.putInt(offset);
+        }
+        segments.forEach(segment -> buffer.putInt(rowOf.get(segment.winner())));
+        rows.forEach(row -> buffer.putInt(row.productId()));
+        rows.forEach(row -> buffer.putInt(row.brandId()));
+        rows.forEach(row -> buffer.putInt(row.priceList()));
+        rows.forEach(row -> buffer.putInt(row.priority()));
+        rows.forEach(row -> buffer.putShort((short) (int) zoneOf.get(row.timeZone())));
+        rows.forEach(row -> buffer.put((byte) row.currency().ordinal()));
+        for (byte[] id : zoneIds) {
+            buffer.putShort((short) id.length).put(id);
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * @throws ArithmeticException when the price has more decimals than the PRICE column
+     */
+    private static long minorUnits(BigDecimal price) {
+        return price.setScale(MINOR_UNIT_SCALE).unscaledValue().longValueExact();
+    }
+
+}
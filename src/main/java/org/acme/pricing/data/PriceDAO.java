@@ -1,64 +1,446 @@
 package org.acme.pricing.data;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.ws.rs.core.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.PriceLookupDTO;
 import org.acme.pricing.dto.RatedPriceDTO;
 import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@DependsOn("priceSnapshot") // PRICES is restored before the lookups are loaded
 @Slf4j
-public class PriceDAO {
+public class PriceDAO implements PriceChangeListener {
 
-    private final DataSource dataSource;
+    private final PriceShards shards;
+
+    private final PriceIndex priceIndex;
+
+    private final PriceLookupCache priceCache;
+
+    private final PriceStore priceStore;
+
+    private final DatabaseCallLimiter limiter;
+
+    private final LookupMode lookupMode;
+
+    private final Timer lookupTimer;
+
+    private final Timer connectionTimer;
+
+    private final Timer queryTimer;
+
+    private final Timer mappingTimer;
+
+    private final Timer batchConnectionTimer;
+
+    private final Timer batchQueryTimer;
+
+    private final Timer batchMappingTimer;
+
+    private final SingleFlight<Lookup, Optional<PriceAt>> queries = new SingleFlight<>("sql");
 
     @Autowired
-    public PriceDAO(DataSource dataSource) {
+    public PriceDAO(PriceShards shards, PriceIndex priceIndex, PriceLookupCache priceCache, PriceStore priceStore,
+                    DatabaseCallLimiter limiter, @Value("${pricing.lookup.mode}") LookupMode lookupMode,
+                    MeterRegistry meterRegistry) {
+
+        this.shards = shards;
+        this.priceIndex = priceIndex;
+        this.priceCache = priceCache;
+        this.priceStore = priceStore;
+        this.limiter = limiter;
+        this.lookupMode = lookupMode;
 
-        this.dataSource = dataSource;
+        this.lookupTimer = Timer.builder("pricing.dao.lookup").description("In-memory lookup")
+                .tag("mode", lookupMode.name()).register(meterRegistry);
+        this.connectionTimer = stageTimer("pricing.dao.connection", "Connection acquisition", "single", meterRegistry);
+        this.queryTimer = stageTimer("pricing.dao.query", "Statement preparation and execution", "single", meterRegistry);
+        this.mappingTimer = stageTimer("pricing.dao.mapping", "Result set mapping", "single", meterRegistry);
+        this.batchConnectionTimer = stageTimer("pricing.dao.connection", "Connection acquisition", "batch", meterRegistry);
+        this.batchQueryTimer = stageTimer("pricing.dao.query", "Statement preparation and execution", "batch", meterRegistry);
+        this.batchMappingTimer = stageTimer("pricing.dao.mapping", "Result set mapping", "batch", meterRegistry);
+        queries.bindTo(meterRegistry);
+    }
+
+    private static Timer stageTimer(String name, String description, String statement, MeterRegistry meterRegistry) {
+        return Timer.builder(name).description(description).tag("statement", statement).register(meterRegistry);
+    }
+
+    /**
+     * Record the time elapsed since the previous lap, also in the trace of the request when it is traced.
+     *
+     * @return the start of the next lap
+     */
+    private static long lap(Timer timer, long since) {
+        long now = System.nanoTime();
+        timer.record(now - since, TimeUnit.NANOSECONDS);
+        PriceTrace trace = PriceTrace.current();
+        if (trace != null) {
+            trace.stage(timer.getId(), now - since);
+        }
+        return now;
+    }
+
+    @PostConstruct
+    public void loadIndex() {
+        switch (lookupMode) {
+            case INDEX -> priceIndex.reload();
+            case STORE -> priceStore.reload();
+            default -> {
+                // loaded lazily or not held in memory
+            }
+        }
+    }
+
+    /**
+     * Keep the in-memory lookups of the current mode in line with the database.
+     */
+    @Override
+    public void onPriceChange(int productId, int brandId) {
+        switch (lookupMode) {
+            case INDEX -> priceIndex.refresh(productId, brandId);
+            case CACHE -> priceCache.invalidate(productId, brandId);
+            case STORE -> priceStore.refresh(productId, brandId);
+            case SQL, SEGMENTS -> {
+                // nothing held in memory
+            }
+        }
+    }
+
+    @Override
+    public void onAllPricesChange() {
+        switch (lookupMode) {
+            case INDEX -> priceIndex.reload();
+            case CACHE -> priceCache.invalidateAll();
+            case STORE -> priceStore.reload();
+            case SQL, SEGMENTS -> {
+                // nothing held in memory
+            }
+        }
     }
 
     public RatedPriceDTO findPriceByDate(OffsetDateTime date, Integer productId, Integer brandId) {
-        String query = "SELECT * " +
+        if (queriesEveryLookup()) {
+            PriceAt price = queryPriceByDate(date, productId, brandId);
+            return price != null ? price.price() : null;
+        }
+        long start = System.nanoTime();
+        RatedPriceDTO price = findPrice(date.toInstant().toEpochMilli(), productId, brandId);
+        lap(lookupTimer, start);
+        return price;
+    }
+
+    /**
+     * Like {@link #findPriceByDate}, plus until when the price stays the answer. The in-memory and SEGMENTS modes know
+     * it from the timeline segment, the SQL mode does not look it up.
+     *
+     * @return the price or null when no window covers the instant
+     */
+    public PriceAt findPriceAt(OffsetDateTime date, Integer productId, Integer brandId) {
+        if (queriesEveryLookup()) {
+            return queryPriceByDate(date, productId, brandId);
+        }
+        long start = System.nanoTime();
+        long at = date.toInstant().toEpochMilli();
+        PriceAt price = switch (lookupMode) {
+            case STORE -> priceStore.findAt(at, productId, brandId);
+            case INDEX -> withValidity(priceIndex.segmentAt(at, productId, brandId));
+            default -> withValidity(priceCache.validityAt(at, productId, brandId));
+        };
+        lap(lookupTimer, start);
+        return price;
+    }
+
+    private static PriceAt withValidity(PriceTimeline.Segment segment) {
+        return segment != null && segment.winner() != null ? new PriceAt(segment.winner().toRatedPrice(), segment.end()) : null;
+    }
+
+    /**
+     * Resolve many lookups at once.
+     *
+     * @return the prices in the same order as the lookups, null for the ones without a price
+     */
+    public List<RatedPriceDTO> findPricesByDate(List<PriceLookupDTO> lookups) {
+        if (queriesEveryLookup()) {
+            return queryPricesByDate(lookups);
+        }
+        List<RatedPriceDTO> prices = new ArrayList<>(lookups.size());
+        for (PriceLookupDTO lookup : lookups) {
+            prices.add(findPrice(lookup.getAppliedAt().toInstant().toEpochMilli(), lookup.getProductId(), lookup.getBrandId()));
+        }
+        return prices;
+    }
+
+    /**
+     * The DTO is only materialized here, for the winning row.
+     */
+    private RatedPriceDTO findPrice(long at, int productId, int brandId) {
+        if (lookupMode == LookupMode.STORE) {
+            return priceStore.find(at, productId, brandId);
+        }
+        PriceWindow window = lookupMode == LookupMode.INDEX
+                ? priceIndex.find(at, productId, brandId)
+                : priceCache.find(at, productId, brandId);
+        return window != null ? window.toRatedPrice() : null;
+    }
+
+    private boolean queriesEveryLookup() {
+        return lookupMode == LookupMode.SQL || lookupMode == LookupMode.SEGMENTS;
+    }
+
+    /**
+     * Concurrent lookups of the same instant and product/brand share a single query. The instant is compared, not the
+     * offset, the answer does not depend on it.
+     */
+    private PriceAt queryPriceByDate(OffsetDateTime date, Integer productId, Integer brandId) {
+        Lookup lookup = new Lookup(date != null ? date.toInstant() : null, productId, brandId);
+        return queries.execute(lookup, () -> Optional.ofNullable(runPriceByDateQuery(date, productId, brandId))).orElse(null);
+    }
+
+    /**
+     * SQL: every window covering the instant, sorted by priority. SEGMENTS: the first segment of the key ending after
+     * the instant is the only one that can cover it, so the scan of the primary key stops at the first match.
+     */
+    private PriceAt runPriceByDateQuery(OffsetDateTime date, Integer productId, Integer brandId) {
+        String query = lookupMode == LookupMode.SEGMENTS
+                ? "SELECT P.*, S.END_AT AS SEGMENT_END " +
+                "FROM PRICE_SEGMENTS S " +
+                "JOIN PRICES P ON P.ID = S.PRICE_ID " +
+                "WHERE S.PRODUCT_ID = ?" +
+                "  AND S.BRAND_ID = ?" +
+                "  AND S.START_AT <= ?" +
+                "  AND S.END_AT > ? " +
+                "LIMIT 1;"
+                : "SELECT * " +
                 "FROM PRICES " +
                 "WHERE PRODUCT_ID = ?" +
                 "  AND BRAND_ID = ?" +
-                "  AND START_DATE <= ?" +
-                "  AND END_DATE >= ? " +
+                "  AND START_AT <= ?" +
+                "  AND END_AT >= ? " +
                 "ORDER BY PRIORITY DESC " +
                 "LIMIT 1;";
 
-        try (Connection connection = dataSource.getConnection();
+        long lap = System.nanoTime();
+        limiter.acquire();
+        try (Connection connection = shards.route(productId, brandId).getConnection()) {
+            lap = lap(connectionTimer, lap);
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setInt(1, productId);
+                statement.setInt(2, brandId);
+                statement.setObject(3, date);
+                statement.setObject(4, date);
+                // references only, the statement is formatted if the trace is kept
+                PriceTrace trace = PriceTrace.current();
+                if (trace != null) {
+                    trace.statement(query, productId, brandId, date);
+                }
+
+                ResultSet resultSet = statement.executeQuery();
+                lap = lap(queryTimer, lap);
+                if (resultSet.next()) {
+                    RatedPriceDTO price = mapResultSetToRatedPrice(resultSet);
+                    long validUntil = lookupMode == LookupMode.SEGMENTS
+                            ? resultSet.getObject("SEGMENT_END", OffsetDateTime.class).toInstant().toEpochMilli()
+                            : PriceAt.UNKNOWN;
+                    lap(mappingTimer, lap);
+                    return new PriceAt(price, validUntil);
+                } else {
+                    return null; // No matching records found
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Problem executing the SQL statement", e);
+            throw new PlatformHttpException(ProblemResponses.DATABASE_FAILURE, Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Single set-based statement per shard: the lookups are unnested from array parameters, joined to PRICES and the
+     * highest priority row is picked per lookup ordinal, or joined to the covering segment and its winning row. With
+     * several shards the lookups are split by shard, queried in parallel and merged back in order.
+     */
+    private List<RatedPriceDTO> queryPricesByDate(List<PriceLookupDTO> lookups) {
+        List<RatedPriceDTO> prices = new ArrayList<>(Collections.nCopies(lookups.size(), null));
+        if (shards.count() == 1) {
+            queryPricesByDate(shards.dataSource(0), lookups, null, prices);
+            return prices;
+        }
+        List<List<PriceLookupDTO>> shardLookups = new ArrayList<>(shards.count());
+        List<List<Integer>> shardPositions = new ArrayList<>(shards.count());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            shardLookups.add(new ArrayList<>());
+            shardPositions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < lookups.size(); i++) {
+            PriceLookupDTO lookup = lookups.get(i);
+            int shard = shards.shardOf(lookup.getProductId(), lookup.getBrandId());
+            shardLookups.get(shard).add(lookup);
+            shardPositions.get(shard).add(i);
+        }
+        // every task writes its own positions of the list, and records into the trace of the request
+        PriceTrace trace = PriceTrace.current();
+        shards.fanOut(shard -> {
+            if (!shardLookups.get(shard).isEmpty()) {
+                PriceTrace previous = PriceTrace.attach(trace);
+                try {
+                    queryPricesByDate(shards.dataSource(shard), shardLookups.get(shard), shardPositions.get(shard), prices);
+                } finally {
+                    PriceTrace.restore(previous);
+                }
+            }
+            return null;
+        });
+        return prices;
+    }
+
+    /**
+     * @param positions where the price of every lookup goes in the prices, or null for the same index
+     */
+    private void queryPricesByDate(DataSource dataSource, List<PriceLookupDTO> lookups, List<Integer> positions,
+                                   List<RatedPriceDTO> prices) {
+        String query = lookupMode == LookupMode.SEGMENTS
+                ? "SELECT L.IDX, P.* " +
+                "FROM UNNEST(CAST(? AS INT ARRAY), CAST(? AS INT ARRAY), CAST(? AS TIMESTAMP WITH TIME ZONE ARRAY)) " +
+                "  WITH ORDINALITY AS L(PRODUCT_ID, BRAND_ID, APPLIED_AT, IDX) " +
+                "JOIN PRICE_SEGMENTS S ON S.PRODUCT_ID = L.PRODUCT_ID" +
+                "  AND S.BRAND_ID = L.BRAND_ID" +
+                "  AND S.START_AT <= L.APPLIED_AT" +
+                "  AND S.END_AT > L.APPLIED_AT " +
+                "JOIN PRICES P ON P.ID = S.PRICE_ID;"
+                : "SELECT * FROM (" +
+                "SELECT L.IDX, P.*, ROW_NUMBER() OVER (PARTITION BY L.IDX ORDER BY P.PRIORITY DESC) AS RN " +
+                "FROM UNNEST(CAST(? AS INT ARRAY), CAST(? AS INT ARRAY), CAST(? AS TIMESTAMP WITH TIME ZONE ARRAY)) " +
+                "  WITH ORDINALITY AS L(PRODUCT_ID, BRAND_ID, APPLIED_AT, IDX) " +
+                "JOIN PRICES P ON P.PRODUCT_ID = L.PRODUCT_ID" +
+                "  AND P.BRAND_ID = L.BRAND_ID" +
+                "  AND P.START_AT <= L.APPLIED_AT" +
+                "  AND P.END_AT >= L.APPLIED_AT" +
+                ") WHERE RN = 1;";
+
+        Integer[] productIds = new Integer[lookups.size()];
+        Integer[] brandIds = new Integer[lookups.size()];
+        OffsetDateTime[] dates = new OffsetDateTime[lookups.size()];
+        for (int i = 0; i < lookups.size(); i++) {
+            PriceLookupDTO lookup = lookups.get(i);
+            productIds[i] = lookup.getProductId();
+            brandIds[i] = lookup.getBrandId();
+            dates[i] = lookup.getAppliedAt();
+        }
+
+        long lap = System.nanoTime();
+        limiter.acquire();
+        try (Connection connection = dataSource.getConnection()) {
+            lap = lap(batchConnectionTimer, lap);
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setArray(1, connection.createArrayOf("INTEGER", productIds));
+                statement.setArray(2, connection.createArrayOf("INTEGER", brandIds));
+                statement.setArray(3, connection.createArrayOf("TIMESTAMP WITH TIME ZONE", dates));
+                PriceTrace trace = PriceTrace.current();
+                if (trace != null) {
+                    trace.statement(query, productIds, brandIds, dates);
+                }
+
+                ResultSet resultSet = statement.executeQuery();
+                lap = lap(batchQueryTimer, lap);
+                while (resultSet.next()) {
+                    int index = resultSet.getInt("IDX") - 1;
+                    prices.set(positions != null ? positions.get(index) : index, mapResultSetToRatedPrice(resultSet));
+                }
+                lap(batchMappingTimer, lap);
+            }
+        } catch (SQLException e) {
+            log.debug("Problem executing the SQL statement", e);
+            throw new PlatformHttpException(ProblemResponses.DATABASE_FAILURE, Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /**
+     * The effective-price segments of a product/brand within [from, to), in time order and clipped to the range.
+     * <p>
+     * A single range scan ordered by START_AT feeds the timeline sweep. The segments are collected, a timeline over a
+     * range is small, so the connection and the permit are released before the caller writes them to a client that
+     * may be slow. Stretches without a price are skipped.
+     *
+     * @param from epoch milliseconds, inclusive
+     * @param to   epoch milliseconds, exclusive
+     */
+    public List<PriceTimeline.Segment> timeline(int productId, int brandId, long from, long to) {
+        String query = "SELECT * " +
+                "FROM PRICES " +
+                "WHERE PRODUCT_ID = ?" +
+                "  AND BRAND_ID = ?" +
+                "  AND START_AT < ?" +
+                "  AND END_AT >= ? " +
+                "ORDER BY START_AT;";
+
+        List<PriceTimeline.Segment> segments = new ArrayList<>();
+        PriceTimeline.Sweep sweep = new PriceTimeline.Sweep(segment -> {
+            long start = Math.max(segment.start(), from);
+            long end = Math.min(segment.end(), to);
+            if (start < end) {
+                segments.add(new PriceTimeline.Segment(start, end, segment.winner()));
+            }
+        });
+
+        limiter.acquire();
+        try (Connection connection = shards.route(productId, brandId).getConnection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, productId);
             statement.setInt(2, brandId);
-            statement.setTimestamp(3, Timestamp.from(date.toInstant()));
-            statement.setTimestamp(4, Timestamp.from(date.toInstant()));
-
-            log.debug("Executing statement: " + statement);
-
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                return mapResultSetToRatedPrice(resultSet);
-            } else {
-                return null; // No matching records found
+            statement.setObject(3, Instant.ofEpochMilli(to).atOffset(ZoneOffset.UTC));
+            statement.setObject(4, Instant.ofEpochMilli(from).atOffset(ZoneOffset.UTC));
+            PriceTrace trace = PriceTrace.current();
+            if (trace != null) {
+                trace.statement(query, productId, brandId, to, from);
             }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    sweep.add(PriceWindow.fromResultSet(resultSet));
+                }
+            }
+            sweep.finish();
         } catch (SQLException e) {
             log.debug("Problem executing the SQL statement", e);
-            throw new PlatformHttpException("Failed to retrieve prices from the database", Response.Status.INTERNAL_SERVER_ERROR);
+            throw new PlatformHttpException(ProblemResponses.DATABASE_FAILURE, Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
         }
+        return segments;
     }
 
+    /**
+     * Key of a single price lookup.
+     */
+    record Lookup(Instant at, Integer productId, Integer brandId) {
+    }
 
-    private RatedPriceDTO mapResultSetToRatedPrice(ResultSet resultSet) throws SQLException {
+    RatedPriceDTO mapResultSetToRatedPrice(ResultSet resultSet) throws SQLException {
         RatedPriceDTO ratedPrice = new RatedPriceDTO();
         ratedPrice.setId(resultSet.getObject("ID", UUID.class));
         ratedPrice.setProductId(resultSet.getInt("PRODUCT_ID"));
@@ -67,14 +449,10 @@ public class PriceDAO {
         ratedPrice.setPrice(resultSet.getBigDecimal("PRICE"));
         ratedPrice.setCurrency(CurrencyEnum.valueOf(resultSet.getString("CURRENCY")));
 
-        // Handle database timestamps + time zone
-        Timestamp startTimestamp = resultSet.getTimestamp("START_DATE");
-        Timestamp endTimestamp = resultSet.getTimestamp("END_DATE");
-        ZoneId timeZone = ZoneId.of(resultSet.getString("TIME_ZONE"));
-        OffsetDateTime appliedStartAt = startTimestamp.toLocalDateTime().atZone(timeZone).toOffsetDateTime();
-        OffsetDateTime appliedEndAt = endTimestamp.toLocalDateTime().atZone(timeZone).toOffsetDateTime();
-        ratedPrice.setAppliedStartAt(appliedStartAt);
-        ratedPrice.setAppliedEndAt(appliedEndAt);
+        // UTC instants normalized at write time, presented in the time zone of the row
+        ZoneId timeZone = TimeZones.of(resultSet.getString("TIME_ZONE"));
+        ratedPrice.setAppliedStartAt(TimeZones.present(resultSet.getObject("START_AT", OffsetDateTime.class).toInstant().toEpochMilli(), timeZone));
+        ratedPrice.setAppliedEndAt(TimeZones.present(resultSet.getObject("END_AT", OffsetDateTime.class).toInstant().toEpochMilli(), timeZone));
 
         return ratedPrice;
     }
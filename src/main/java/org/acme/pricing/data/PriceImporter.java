@@ -0,0 +1,345 @@
+package org.acme.pricing.data;
+
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.PriceImportDTO;
+import org.acme.pricing.dto.PriceImportReportDTO;
+import org.acme.pricing.exception.ErrorInfo;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Streams price rows from a CSV or NDJSON payload into PRICES.
+ * <p>
+ * Rows are parsed one at a time and written with a batched PreparedStatement, committing every commit-size rows, so
+ * the heap use does not depend on the payload size. Invalid rows are rejected and reported, the valid ones are
+ * imported. A payload that cannot be parsed any further stops the import, the rows committed until then are kept.
+ * <p>
+ * With several shards every row goes to the batch of its shard and a commit commits every shard, one after the other.
+ * <p>
+ * The {@link PriceSegments} are not rebuilt row by row: every key written since the last commit is rebuilt once, in
+ * the transaction that commits its rows. Neither are the change feed rows written: once the import is over, committed
+ * or failed, the {@link PriceChangeListener}s are notified once per committed key, or once for all of them past
+ * {@link #MAX_NOTIFIED_KEYS} keys.
+ */
+@Component
+@Slf4j
+public class PriceImporter {
+
+    private static final String INSERT = "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+    /**
+     * Rejected rows detailed in the report, the rest are only counted.
+     */
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * Integer digits of PRICE DECIMAL(10, 2).
+     */
+    private static final int MAX_PRICE_INTEGER_DIGITS = 8;
+
+    /**
+     * Committed keys notified one by one, the listeners reload everything past it.
+     */
+    static final int MAX_NOTIFIED_KEYS = 10_000;
+
+    private final PriceShards shards;
+
+    private final DatabaseCallLimiter limiter;
+
+    private final List<PriceChangeListener> listeners;
+
+    private final ObjectReader ndjsonReader;
+
+    private final ObjectReader csvReader;
+
+    private final int batchSize;
+
+    private final int commitSize;
+
+    @Autowired
+    public PriceImporter(PriceShards shards, DatabaseCallLimiter limiter, List<PriceChangeListener> listeners,
+                         ObjectMapper objectMapper,
+                         @Value("${pricing.import.batch-size}") int batchSize,
+                         @Value("${pricing.import.commit-size}") int commitSize) {
+        this.shards = shards;
+        this.limiter = limiter;
+        this.listeners = listeners;
+        this.ndjsonReader = objectMapper.readerFor(PriceImportDTO.class);
+        this.csvReader = CsvMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+                .enable(CsvParser.Feature.TRIM_SPACES)
+                .build()
+                .readerFor(PriceImportDTO.class)
+                .with(CsvSchema.emptySchema().withHeader());
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * CSV with a header line naming the {@link PriceImportDTO} properties, in any order.
+     */
+    public PriceImportReportDTO importCsv(InputStream body) {
+        return importRows(csvReader, body);
+    }
+
+    /**
+     * One {@link PriceImportDTO} JSON object per line.
+     */
+    public PriceImportReportDTO importNdjson(InputStream body) {
+        return importRows(ndjsonReader, body);
+    }
+
+    private PriceImportReportDTO importRows(ObjectReader reader, InputStream body) {
+        long start = System.nanoTime();
+        long row = 0;
+        long imported = 0;
+        long rejected = 0;
+        List<ErrorInfo> errors = new ArrayList<>();
+        Committed committed = new Committed();
+
+        // a connection per shard is held for the whole import
+        limiter.acquire(shards.count());
+        List<ShardWriter> writers = new ArrayList<>(shards.count());
+        PriceChangeTrigger.pause();
+        PriceSegmentTrigger.pause();
+        try (MappingIterator<PriceImportDTO> rows = reader.readValues(body)) {
+            try {
+                for (int shard = 0; shard < shards.count(); shard++) {
+                    writers.add(new ShardWriter(shards.dataSource(shard).getConnection()));
+                }
+                long uncommitted = 0;
+                while (rows.hasNextValue()) {
+                    row++;
+                    PriceImportDTO price;
+                    String problem;
+                    try {
+                        price = rows.nextValue();
+                        problem = validate(price);
+                    } catch (DatabindException e) {
+                        price = null;
+                        problem = e.getOriginalMessage();
+                    }
+                    if (problem != null) {
+                        rejected++;
+                        if (errors.size() < MAX_REPORTED_ERRORS) {
+                            errors.add(ErrorInfo.builder().detail(problem).value(row).build());
+                        }
+                        continue;
+                    }
+
+                    writers.get(shards.shardOf(price.getProductId(), price.getBrandId())).add(price, batchSize);
+                    if (++uncommitted == commitSize) {
+                        commit(writers, committed);
+                        imported += uncommitted;
+                        uncommitted = 0;
+                    }
+                }
+                commit(writers, committed);
+                imported += uncommitted;
+            } catch (SQLException | StreamReadException e) {
+                for (ShardWriter writer : writers) {
+                    writer.connection.rollback();
+                }
+                throw e;
+            } finally {
+                for (ShardWriter writer : writers) {
+                    writer.close();
+                }
+            }
+        } catch (StreamReadException e) {
+            log.debug("Malformed import payload after {} imported rows", imported, e);
+            throw new PlatformHttpException(String.format("Malformed payload at row %d, %d rows were imported before it",
+                    row, imported), Response.Status.BAD_REQUEST);
+        } catch (SQLException | IOException e) {
+            log.debug("Problem importing prices after {} imported rows", imported, e);
+            throw new PlatformHttpException("Failed to import prices into the database", Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            PriceSegmentTrigger.resume();
+            PriceChangeTrigger.resume();
+            limiter.release(shards.count());
+            notifyListeners(committed);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long rowsPerSecond = elapsedNanos > 0 ? imported * 1_000_000_000L / elapsedNanos : imported;
+        log.debug("Imported {} prices, rejected {}, {} rows/s", imported, rejected, rowsPerSecond);
+        return PriceImportReportDTO.builder()
+                .imported(imported)
+                .rejected(rejected)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .rowsPerSecond(rowsPerSecond)
+                .errors(errors)
+                .build();
+    }
+
+    /**
+     * @return the problem of the row or null when it can be imported
+     */
+    private static String validate(PriceImportDTO price) {
+        if (price.getBrandId() == null || price.getProductId() == null || price.getPriceList() == null
+                || price.getPriority() == null || price.getStartDate() == null || price.getEndDate() == null
+                || price.getPrice() == null || price.getTimeZone() == null) {
+            return "brandId, productId, priceList, priority, startDate, endDate, price and timeZone are required";
+        }
+        if (price.getStartDate().isAfter(price.getEndDate())) {
+            return "startDate is after endDate";
+        }
+        if (price.getPrice().precision() - price.getPrice().scale() > MAX_PRICE_INTEGER_DIGITS) {
+            return "price is out of range";
+        }
+        try {
+            CurrencyEnum.fromValue(price.getCurrency());
+        } catch (IllegalArgumentException e) {
+            return "Unknown currency '" + price.getCurrency() + "'";
+        }
+        try {
+            TimeZones.of(price.getTimeZone());
+        } catch (DateTimeException e) {
+            return "Unknown time zone '" + price.getTimeZone() + "'";
+        }
+        return null;
+    }
+
+    private static void commit(List<ShardWriter> writers, Committed committed) throws SQLException {
+        for (ShardWriter writer : writers) {
+            writer.flush();
+            PriceSegments.rebuild(writer.connection, writer.keys);
+            writer.connection.commit();
+            committed.add(writer.keys);
+            writer.keys.clear();
+        }
+    }
+
+    /**
+     * The lookups are refreshed by the importing thread, with the database permits released, as the change feed
+     * would have done from the change rows of the import.
+     */
+    private void notifyListeners(Committed committed) {
+        if (committed.all) {
+            log.debug("Import committed more than {} product/brand keys, reloading the lookups", MAX_NOTIFIED_KEYS);
+            for (PriceChangeListener listener : listeners) {
+                listener.onAllPricesChange();
+            }
+            return;
+        }
+        for (long key : committed.keys) {
+            for (PriceChangeListener listener : listeners) {
+                listener.onPriceChange(PriceKey.productId(key), PriceKey.brandId(key));
+            }
+        }
+    }
+
+    /**
+     * The keys of the committed rows, until there are too many to notify one by one.
+     */
+    private static final class Committed {
+
+        private final Set<Long> keys = new HashSet<>();
+
+        private boolean all;
+
+        void add(Set<Long> written) {
+            if (all) {
+                return;
+            }
+            keys.addAll(written);
+            if (keys.size() > MAX_NOTIFIED_KEYS) {
+                keys.clear();
+                all = true;
+            }
+        }
+    }
+
+    /**
+     * The open transaction and the pending batch of a shard, with the keys written in the transaction.
+     */
+    private static final class ShardWriter implements AutoCloseable {
+
+        private final Connection connection;
+
+        private final PreparedStatement statement;
+
+        private final Set<Long> keys = new HashSet<>();
+
+        private int batched;
+
+        ShardWriter(Connection connection) throws SQLException {
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(false);
+                this.statement = connection.prepareStatement(INSERT);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void add(PriceImportDTO price, int batchSize) throws SQLException {
+            bind(statement, price);
+            statement.addBatch();
+            keys.add(PriceKey.of(price.getProductId(), price.getBrandId()));
+            if (++batched == batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (batched > 0) {
+                statement.executeBatch();
+                batched = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                statement.close();
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement statement, PriceImportDTO price) throws SQLException {
+        statement.setObject(1, price.getId() != null ? price.getId() : UUID.randomUUID());
+        statement.setInt(2, price.getBrandId());
+        statement.setObject(3, price.getStartDate());
+        statement.setObject(4, price.getEndDate());
+        statement.setInt(5, price.getPriceList());
+        statement.setInt(6, price.getProductId());
+        statement.setInt(7, price.getPriority());
+        statement.setBigDecimal(8, price.getPrice());
+        statement.setString(9, price.getCurrency());
+        statement.setString(10, price.getTimeZone());
+    }
+
+}
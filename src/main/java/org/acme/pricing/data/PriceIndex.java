@@ -0,0 +1,90 @@
+package org.acme.pricing.data;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the PRICES table keyed by (productId, brandId).
+ * <p>
+ * Every key holds its flattened {@link PriceTimeline}, so a lookup is a hash probe plus a binary search and never
+ * touches the DataSource.
+ * <p>
+ * A full {@link #reload()} swaps in a new map, {@link #refresh(int, int)} rebuilds a single key. Timelines are
+ * immutable, readers never block and always see either the old or the new one. Writers are serialized, so a refresh
+ * cannot be lost behind a concurrent reload.
+ */
+@Component
+@Slf4j
+public class PriceIndex {
+
+    private final PriceWindowReader reader;
+
+    private volatile Map<Long, PriceTimeline> timelines = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PriceIndex(PriceWindowReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Find the highest priority window covering the instant. On equal priority the latest started window wins.
+     *
+     * @param at epoch milliseconds
+     * @return the winning window or null when no window covers the instant
+     */
+    public PriceWindow find(long at, int productId, int brandId) {
+        PriceTimeline timeline = timelines.get(PriceKey.of(productId, brandId));
+        return timeline != null ? timeline.find(at) : null;
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the segment of the winning window covering the instant or null
+     */
+    public PriceTimeline.Segment segmentAt(long at, int productId, int brandId) {
+        PriceTimeline timeline = timelines.get(PriceKey.of(productId, brandId));
+        return timeline != null ? timeline.segmentAt(at) : null;
+    }
+
+    public PriceTimeline timeline(int productId, int brandId) {
+        return timelines.get(PriceKey.of(productId, brandId));
+    }
+
+    public int size() {
+        return timelines.size();
+    }
+
+    /**
+     * Read the whole PRICES table and swap in a new index.
+     */
+    public synchronized void reload() {
+        Map<Long, List<PriceWindow>> grouped = new HashMap<>();
+        reader.readAll(window -> grouped.computeIfAbsent(window.key(), k -> new ArrayList<>()).add(window));
+
+        Map<Long, PriceTimeline> index = new ConcurrentHashMap<>(grouped.size() * 4 / 3 + 1);
+        grouped.forEach((key, windows) -> index.put(key, PriceTimeline.of(windows)));
+        timelines = index;
+        log.debug("Loaded price index with {} product/brand keys", index.size());
+    }
+
+    /**
+     * Re-read the rows of a single (productId, brandId) and replace its timeline.
+     */
+    public synchronized void refresh(int productId, int brandId) {
+        List<PriceWindow> windows = reader.read(productId, brandId);
+        long key = PriceKey.of(productId, brandId);
+        if (windows.isEmpty()) {
+            timelines.remove(key);
+        } else {
+            timelines.put(key, PriceTimeline.of(windows));
+        }
+    }
+
+}
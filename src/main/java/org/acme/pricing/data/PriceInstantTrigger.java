@@ -0,0 +1,77 @@
+package org.acme.pricing.data;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * H2 BEFORE INSERT/UPDATE row trigger on PRICES that normalizes the local START_DATE/END_DATE of a row, read in the
+ * row TIME_ZONE, into the UTC instants START_AT/END_AT.
+ * <p>
+ * The conversion is done once when the row is written, lookups compare and read the UTC columns directly.
+ */
+public class PriceInstantTrigger implements Trigger {
+
+    private int startDateColumn;
+
+    private int endDateColumn;
+
+    private int timeZoneColumn;
+
+    private int startAtColumn;
+
+    private int endAtColumn;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type)
+            throws SQLException {
+        Map<String, Integer> positions = new HashMap<>();
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                positions.put(columns.getString("COLUMN_NAME"), columns.getInt("ORDINAL_POSITION") - 1);
+            }
+        }
+        startDateColumn = position(positions, "START_DATE", tableName);
+        endDateColumn = position(positions, "END_DATE", tableName);
+        timeZoneColumn = position(positions, "TIME_ZONE", tableName);
+        startAtColumn = position(positions, "START_AT", tableName);
+        endAtColumn = position(positions, "END_AT", tableName);
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+        Object timeZone = newRow[timeZoneColumn];
+        ZoneId zone = timeZone != null ? TimeZones.of(timeZone.toString()) : null;
+        newRow[startAtColumn] = toUtc(newRow[startDateColumn], zone);
+        newRow[endAtColumn] = toUtc(newRow[endDateColumn], zone);
+    }
+
+    private static Object toUtc(Object localTimestamp, ZoneId zone) {
+        LocalDateTime local;
+        if (localTimestamp instanceof LocalDateTime value) {
+            local = value;
+        } else if (localTimestamp instanceof Timestamp value) {
+            local = value.toLocalDateTime();
+        } else {
+            return null;
+        }
+        return zone != null ? local.atZone(zone).withZoneSameInstant(ZoneOffset.UTC).toOffsetDateTime() : null;
+    }
+
+    private static int position(Map<String, Integer> positions, String column, String tableName) throws SQLException {
+        Integer position = positions.get(column);
+        if (position == null) {
+            throw new SQLException("Table " + tableName + " has no " + column + " column");
+        }
+        return position;
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.acme.pricing.data;
+
+/**
+ * Packs a (productId, brandId) pair into a single long, so it can be used as a cheap map key.
+ */
+public final class PriceKey {
+
+    private PriceKey() {
+    }
+
+    public static long of(int productId, int brandId) {
+        return ((long) productId << 32) | (brandId & 0xFFFFFFFFL);
+    }
+
+    public static int productId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int brandId(long key) {
+        return (int) key;
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.acme.pricing.data;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of resolved lookups keyed by (productId, brandId).
+ * <p>
+ * An entry holds the stretch of the product/brand timeline where the answer cannot change (the segment of the
+ * winning window, or the gap without a price), so any instant inside it is a hit regardless of how long ago the
+ * entry was loaded. An instant outside it is a miss that reloads the key.
+ * <p>
+ * Eviction is Caffeine's size based W-TinyLFU, run on the calling thread. Concurrent misses of the same key share a
+ * single read of its rows, each caller then resolves its own instant from the shared timeline.
+ * <p>
+ * An invalidation bumps the generation of the key (of its stripe, keys share a few generations). A read only caches
+ * its segment when the generation it started under is still current, and misses after an invalidation never join a
+ * read started before it, so rows read before a change are not cached after the change feed invalidated them.
+ */
+@Component
+public class PriceLookupCache implements MeterBinder {
+
+    private final PriceWindowReader reader;
+
+    private final Cache<Long, PriceTimeline.Segment> segments;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final SingleFlight<Read, PriceTimeline> reads = new SingleFlight<>("cache");
+
+    @Autowired
+    public PriceLookupCache(PriceWindowReader reader, @Value("${pricing.cache.max-size}") long maxSize) {
+        this.reader = reader;
+        this.segments = Caffeine.newBuilder().maximumSize(maxSize).executor(Runnable::run).recordStats().build();
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the winning window or null when no window covers the instant
+     */
+    public PriceWindow find(long at, int productId, int brandId) {
+        return validityAt(at, productId, brandId).winner();
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the stretch around the instant where the answer does not change, without a winner in a gap
+     */
+    public PriceTimeline.Segment validityAt(long at, int productId, int brandId) {
+        long key = PriceKey.of(productId, brandId);
+        PriceTimeline.Segment segment = segments.getIfPresent(key);
+        if (segment != null && segment.contains(at)) {
+            hits.increment();
+            return segment;
+        }
+        misses.increment();
+        int stripe = stripe(key);
+        long generation = generations.get(stripe);
+        PriceTimeline.Segment read = reads.execute(new Read(key, generation),
+                () -> PriceTimeline.of(reader.read(productId, brandId))).validityAt(at);
+        // checked under the lock of the key: an invalidation bumps the generation before it removes the entry
+        segments.asMap().compute(key, (k, current) -> generations.get(stripe) == generation ? read : current);
+        return read;
+    }
+
+    public void invalidate(int productId, int brandId) {
+        long key = PriceKey.of(productId, brandId);
+        generations.incrementAndGet(stripe(key));
+        segments.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < GENERATION_STRIPES; stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+        segments.invalidateAll();
+    }
+
+    private static int stripe(long key) {
+        return Long.hashCode(key * 0x9E3779B97F4A7C15L) & (GENERATION_STRIPES - 1);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return segments.stats().evictionCount();
+    }
+
+    public long size() {
+        return segments.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pricing.cache.hits", this, PriceLookupCache::hitCount)
+                .description("Lookups answered inside a cached validity window").register(registry);
+        FunctionCounter.builder("pricing.cache.misses", this, PriceLookupCache::missCount)
+                .description("Lookups that reloaded the product/brand").register(registry);
+        FunctionCounter.builder("pricing.cache.evictions", this, PriceLookupCache::evictionCount)
+                .description("Entries evicted by the size cap").register(registry);
+        Gauge.builder("pricing.cache.size", this, PriceLookupCache::size)
+                .description("Cached product/brand entries").register(registry);
+        reads.bindTo(registry);
+    }
+
+    private record Read(long key, long generation) {
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.acme.pricing.data;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * H2 AFTER row trigger on PRICES that rebuilds the {@link PriceSegments} of the (productId, brandId) of every
+ * inserted, updated or deleted row, in the same transaction. An update moving a row to another key rebuilds both.
+ * <p>
+ * Rebuilding can be paused on the current thread by bulk writers, which rebuild the segments themselves once every
+ * row is in. The embedded database fires the trigger on the thread running the statement.
+ */
+public class PriceSegmentTrigger implements Trigger {
+
+    private static final ThreadLocal<Boolean> PAUSED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private int productIdColumn = -1;
+
+    private int brandIdColumn = -1;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type)
+            throws SQLException {
+        try (ResultSet columns = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                switch (columns.getString("COLUMN_NAME")) {
+                    case "PRODUCT_ID" -> productIdColumn = columns.getInt("ORDINAL_POSITION") - 1;
+                    case "BRAND_ID" -> brandIdColumn = columns.getInt("ORDINAL_POSITION") - 1;
+                    default -> {
+                        // not part of the key
+                    }
+                }
+            }
+        }
+        if (productIdColumn < 0 || brandIdColumn < 0) {
+            throw new SQLException("Table " + tableName + " has no PRODUCT_ID/BRAND_ID columns");
+        }
+    }
+
+    static void pause() {
+        PAUSED.set(Boolean.TRUE);
+    }
+
+    static void resume() {
+        PAUSED.remove();
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (PAUSED.get()) {
+            return;
+        }
+        if (oldRow != null) {
+            rebuild(conn, oldRow);
+        }
+        if (newRow != null && (oldRow == null || !sameKey(oldRow, newRow))) {
+            rebuild(conn, newRow);
+        }
+    }
+
+    private boolean sameKey(Object[] oldRow, Object[] newRow) {
+        return Objects.equals(oldRow[productIdColumn], newRow[productIdColumn])
+                && Objects.equals(oldRow[brandIdColumn], newRow[brandIdColumn]);
+    }
+
+    /**
+     * A row without a product or brand is never looked up, it has no segments.
+     */
+    private void rebuild(Connection conn, Object[] row) throws SQLException {
+        if (row[productIdColumn] instanceof Number productId && row[brandIdColumn] instanceof Number brandId) {
+            PriceSegments.rebuild(conn, productId.intValue(), brandId.intValue());
+        }
+    }
+
+}
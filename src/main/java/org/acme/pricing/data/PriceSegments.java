@@ -0,0 +1,371 @@
+package org.acme.pricing.data;
+
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.dto.PriceSegmentsReportDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * PRICE_SEGMENTS, the effective prices of PRICES materialized at write time: for every product/brand, the
+ * non-overlapping segments [START_AT, END_AT) of its {@link PriceTimeline} with the ID of the winning row.
+ * <p>
+ * The {@link PriceSegmentTrigger} rebuilds the segments of a key whenever one of its rows is written. Bulk writers
+ * pause it and rebuild the keys they touched, or the whole table, before they commit. A lookup is a seek on the
+ * (PRODUCT_ID, BRAND_ID, END_AT) primary key: the first segment ending after the instant is the only candidate.
+ * <p>
+ * {@link #check()} compares the table with the segments recomputed from PRICES, {@link #rebuild()} replaces it.
+ */
+@Component
+@Slf4j
+public class PriceSegments {
+
+    static final int MAX_REPORTED_KEYS = 20;
+
+    private static final String WINDOWS = "SELECT ID, PRODUCT_ID, BRAND_ID, PRIORITY, START_AT, END_AT FROM PRICES " +
+            "WHERE PRODUCT_ID IS NOT NULL AND BRAND_ID IS NOT NULL AND START_AT IS NOT NULL AND END_AT IS NOT NULL " +
+            "AND START_AT <= END_AT";
+
+    private static final String INSERT = "INSERT INTO PRICE_SEGMENTS (PRODUCT_ID, BRAND_ID, START_AT, END_AT, PRICE_ID) " +
+            "VALUES (?, ?, ?, ?, ?);";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final PriceShards shards;
+
+    private final DatabaseCallLimiter limiter;
+
+    @Autowired
+    public PriceSegments(PriceShards shards, DatabaseCallLimiter limiter) {
+        this.shards = shards;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Recompute the segments of every shard from PRICES and report the keys whose stored segments differ.
+     */
+    public PriceSegmentsReportDTO check() {
+        long start = System.nanoTime();
+        List<Check> checks = shards.fanOut(shard -> {
+            limiter.acquire();
+            try (Connection connection = shards.dataSource(shard).getConnection()) {
+                return check(connection);
+            } catch (SQLException e) {
+                log.debug("Problem checking the price segments", e);
+                throw new PlatformHttpException("Failed to check the price segments", Response.Status.INTERNAL_SERVER_ERROR);
+            } finally {
+                limiter.release();
+            }
+        });
+        PriceSegmentsReportDTO report = report(checks, false, start);
+        log.debug("Checked {} price segments of {} keys, {} keys inconsistent", report.getSegments(), report.getKeys(),
+                report.getInconsistentKeys());
+        return report;
+    }
+
+    /**
+     * Replace the segments of every shard with the ones recomputed from PRICES.
+     */
+    public PriceSegmentsReportDTO rebuild() {
+        long start = System.nanoTime();
+        List<Check> rebuilt = shards.fanOut(shard -> {
+            limiter.acquire();
+            try (Connection connection = shards.dataSource(shard).getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    Check check = rebuildAll(connection);
+                    connection.commit();
+                    return check;
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                log.debug("Problem rebuilding the price segments", e);
+                throw new PlatformHttpException("Failed to rebuild the price segments", Response.Status.INTERNAL_SERVER_ERROR);
+            } finally {
+                limiter.release();
+            }
+        });
+        PriceSegmentsReportDTO report = report(rebuilt, true, start);
+        log.debug("Rebuilt {} price segments of {} keys in {} ms", report.getSegments(), report.getKeys(), report.getElapsedMillis());
+        return report;
+    }
+
+    private static PriceSegmentsReportDTO report(List<Check> checks, boolean rebuilt, long start) {
+        long keys = 0;
+        long segments = 0;
+        long inconsistentKeys = 0;
+        List<String> inconsistent = new ArrayList<>();
+        for (Check check : checks) {
+            keys += check.keys();
+            segments += check.segments();
+            inconsistentKeys += check.inconsistentKeys();
+            for (String key : check.inconsistent()) {
+                if (inconsistent.size() < MAX_REPORTED_KEYS) {
+                    inconsistent.add(key);
+                }
+            }
+        }
+        return PriceSegmentsReportDTO.builder()
+                .keys(keys)
+                .segments(segments)
+                .inconsistentKeys(inconsistentKeys)
+                .inconsistent(inconsistent)
+                .rebuilt(rebuilt)
+                .elapsedMillis((System.nanoTime() - start) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * Rebuild the segments of a single key, within the transaction of the connection.
+     */
+    static void rebuild(Connection connection, int productId, int brandId) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM PRICE_SEGMENTS WHERE PRODUCT_ID = ? AND BRAND_ID = ?;");
+             PreparedStatement select = connection.prepareStatement(WINDOWS + " AND PRODUCT_ID = ? AND BRAND_ID = ? ORDER BY START_AT;");
+             PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            rebuild(delete, select, insert, productId, brandId);
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Rebuild the segments of the keys, within the transaction of the connection.
+     */
+    static void rebuild(Connection connection, Collection<Long> keys) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM PRICE_SEGMENTS WHERE PRODUCT_ID = ? AND BRAND_ID = ?;");
+             PreparedStatement select = connection.prepareStatement(WINDOWS + " AND PRODUCT_ID = ? AND BRAND_ID = ? ORDER BY START_AT;");
+             PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            int batched = 0;
+            for (long key : keys) {
+                batched += rebuild(delete, select, insert, PriceKey.productId(key), PriceKey.brandId(key));
+                if (batched >= BATCH_SIZE) {
+                    insert.executeBatch();
+                    batched = 0;
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * @return the number of segments added to the insert batch
+     */
+    private static int rebuild(PreparedStatement delete, PreparedStatement select, PreparedStatement insert,
+                               int productId, int brandId) throws SQLException {
+        delete.setInt(1, productId);
+        delete.setInt(2, brandId);
+        delete.executeUpdate();
+        select.setInt(1, productId);
+        select.setInt(2, brandId);
+        List<Segment> segments = new ArrayList<>();
+        try (ResultSet resultSet = select.executeQuery()) {
+            PriceTimeline.Sweep sweep = new PriceTimeline.Sweep(segment -> segments.add(Segment.of(segment)));
+            while (resultSet.next()) {
+                sweep.add(window(resultSet));
+            }
+            sweep.finish();
+        }
+        for (Segment segment : segments) {
+            segment.bind(insert);
+            insert.addBatch();
+        }
+        return segments.size();
+    }
+
+    /**
+     * Replace every segment with the ones recomputed from PRICES, within the transaction of the connection.
+     */
+    static Check rebuildAll(Connection connection) throws SQLException {
+        long keys = 0;
+        long segments = 0;
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM PRICE_SEGMENTS;");
+             PreparedStatement select = connection.prepareStatement(WINDOWS + " ORDER BY PRODUCT_ID, BRAND_ID, START_AT;");
+             PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            delete.executeUpdate();
+            try (ResultSet resultSet = select.executeQuery()) {
+                Groups<PriceWindow> windows = new Groups<>(resultSet, PriceSegments::window, PriceWindow::key);
+                int batched = 0;
+                for (List<PriceWindow> key = windows.next(); key != null; key = windows.next()) {
+                    for (Segment segment : segments(key)) {
+                        segment.bind(insert);
+                        insert.addBatch();
+                        segments++;
+                        if (++batched == BATCH_SIZE) {
+                            insert.executeBatch();
+                            batched = 0;
+                        }
+                    }
+                    keys++;
+                }
+                insert.executeBatch();
+            }
+        }
+        return new Check(keys, segments, 0, List.of());
+    }
+
+    /**
+     * Walk the keys of PRICES and PRICE_SEGMENTS side by side, both in key order, one key in memory at a time.
+     */
+    static Check check(Connection connection) throws SQLException {
+        long keys = 0;
+        long segments = 0;
+        long inconsistentKeys = 0;
+        List<String> inconsistent = new ArrayList<>();
+        try (PreparedStatement selectWindows = connection.prepareStatement(WINDOWS + " ORDER BY PRODUCT_ID, BRAND_ID, START_AT;");
+             PreparedStatement selectSegments = connection.prepareStatement("SELECT PRODUCT_ID, BRAND_ID, START_AT, END_AT, PRICE_ID " +
+                     "FROM PRICE_SEGMENTS ORDER BY PRODUCT_ID, BRAND_ID, END_AT;");
+             ResultSet windowRows = selectWindows.executeQuery();
+             ResultSet segmentRows = selectSegments.executeQuery()) {
+            Groups<PriceWindow> windows = new Groups<>(windowRows, PriceSegments::window, PriceWindow::key);
+            Groups<Segment> stored = new Groups<>(segmentRows, Segment::fromResultSet, Segment::key);
+            List<PriceWindow> keyWindows = windows.next();
+            List<Segment> keySegments = stored.next();
+            while (keyWindows != null || keySegments != null) {
+                long windowKey = keyWindows != null ? keyWindows.get(0).key() : Long.MAX_VALUE;
+                long segmentKey = keySegments != null ? keySegments.get(0).key() : Long.MAX_VALUE;
+                long key = Math.min(windowKey, segmentKey);
+                List<Segment> expected = windowKey == key ? segments(keyWindows) : List.of();
+                List<Segment> actual = segmentKey == key ? keySegments : List.of();
+                if (!expected.equals(actual)) {
+                    inconsistentKeys++;
+                    if (inconsistent.size() < MAX_REPORTED_KEYS) {
+                        inconsistent.add(PriceKey.productId(key) + "/" + PriceKey.brandId(key));
+                    }
+                }
+                keys++;
+                segments += expected.size();
+                if (windowKey == key) {
+                    keyWindows = windows.next();
+                }
+                if (segmentKey == key) {
+                    keySegments = stored.next();
+                }
+            }
+        }
+        return new Check(keys, segments, inconsistentKeys, inconsistent);
+    }
+
+    private static List<Segment> segments(List<PriceWindow> windows) {
+        List<Segment> segments = new ArrayList<>();
+        PriceTimeline.Sweep sweep = new PriceTimeline.Sweep(segment -> segments.add(Segment.of(segment)));
+        windows.forEach(sweep::add);
+        sweep.finish();
+        return segments;
+    }
+
+    /**
+     * Only what decides the winner is read, a NULL priority counts as 0 like in the in-memory lookups.
+     */
+    private static PriceWindow window(ResultSet resultSet) throws SQLException {
+        return new PriceWindow(resultSet.getObject("ID", UUID.class), resultSet.getInt("PRODUCT_ID"),
+                resultSet.getInt("BRAND_ID"), 0, resultSet.getInt("PRIORITY"),
+                epochMillis(resultSet, "START_AT"), epochMillis(resultSet, "END_AT"), null, null, null);
+    }
+
+    private static long epochMillis(ResultSet resultSet, String column) throws SQLException {
+        return resultSet.getObject(column, OffsetDateTime.class).toInstant().toEpochMilli();
+    }
+
+    private static OffsetDateTime utc(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC);
+    }
+
+    /**
+     * A PRICE_SEGMENTS row, the end is exclusive.
+     */
+    record Segment(int productId, int brandId, long start, long end, UUID priceId) {
+
+        static Segment of(PriceTimeline.Segment segment) {
+            PriceWindow winner = segment.winner();
+            return new Segment(winner.productId(), winner.brandId(), segment.start(), segment.end(), winner.id());
+        }
+
+        static Segment fromResultSet(ResultSet resultSet) throws SQLException {
+            return new Segment(resultSet.getInt("PRODUCT_ID"), resultSet.getInt("BRAND_ID"),
+                    epochMillis(resultSet, "START_AT"), epochMillis(resultSet, "END_AT"),
+                    resultSet.getObject("PRICE_ID", UUID.class));
+        }
+
+        long key() {
+            return PriceKey.of(productId, brandId);
+        }
+
+        void bind(PreparedStatement insert) throws SQLException {
+            insert.setInt(1, productId);
+            insert.setInt(2, brandId);
+            insert.setObject(3, utc(start));
+            insert.setObject(4, utc(end));
+            insert.setObject(5, priceId);
+        }
+    }
+
+    /**
+     * Outcome of checking or rebuilding the segments of a shard.
+     */
+    record Check(long keys, long segments, long inconsistentKeys, List<String> inconsistent) {
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * The rows of a result set ordered by key, one key at a time.
+     */
+    private static final class Groups<T> {
+
+        private final ResultSet resultSet;
+
+        private final RowMapper<T> mapper;
+
+        private final ToLongFunction<T> key;
+
+        private T pending;
+
+        Groups(ResultSet resultSet, RowMapper<T> mapper, ToLongFunction<T> key) throws SQLException {
+            this.resultSet = resultSet;
+            this.mapper = mapper;
+            this.key = key;
+            this.pending = resultSet.next() ? mapper.map(resultSet) : null;
+        }
+
+        /**
+         * @return the rows of the next key or null when there are no more
+         */
+        List<T> next() throws SQLException {
+            if (pending == null) {
+                return null;
+            }
+            List<T> rows = new ArrayList<>();
+            rows.add(pending);
+            long current = key.applyAsLong(pending);
+            pending = null;
+            while (resultSet.next()) {
+                T row = mapper.map(resultSet);
+                if (key.applyAsLong(row) != current) {
+                    pending = row;
+                    break;
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+package org.acme.pricing.data;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * The databases holding the PRICES rows, partitioned by {@link ShardKey}.
+ * <p>
+ * With a single shard (the default) it is the application DataSource and nothing is routed. With several shards each
+ * one is its own database behind its own connection pool, created with schema.sql at startup. The application
+ * DataSource is then only the seed: the rows it was initialized with (data.sql or the price snapshot) are copied to
+ * the shard of their key. Lookups of a product/brand go to one shard, work over all the rows fans out to every shard
+ * in parallel.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@DependsOn("priceSnapshot") // the seed rows are restored before they are copied
+@Slf4j
+public class PriceShards {
+
+    private static final String SELECT = "SELECT ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE FROM PRICES;";
+
+    private static final String INSERT = "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+    private static final int COPY_BATCH_SIZE = 1000;
+
+    private final DataSource seed;
+
+    private final List<DataSource> shards;
+
+    private final ShardKey shardKey;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    private final ExecutorService fanOut;
+
+    @Autowired
+    public PriceShards(DataSource dataSource, @Value("${pricing.shards.count}") int count,
+                       @Value("${pricing.shards.key}") ShardKey shardKey, @Value("${pricing.shards.url}") String url,
+                       @Value("${pricing.shards.pool-size}") int poolSize, MeterRegistry meterRegistry) {
+        if (count < 1) {
+            throw new IllegalArgumentException("pricing.shards.count must be at least 1");
+        }
+        this.seed = dataSource;
+        this.shardKey = shardKey;
+        if (count == 1) {
+            this.shards = List.of(dataSource);
+        } else {
+            List<DataSource> dataSources = new ArrayList<>(count);
+            for (int shard = 0; shard < count; shard++) {
+                HikariConfig config = new HikariConfig();
+                config.setPoolName("pricing-shard-" + shard);
+                config.setJdbcUrl(url.replace("{shard}", Integer.toString(shard)));
+                config.setMaximumPoolSize(poolSize);
+                config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+                HikariDataSource pool = new HikariDataSource(config);
+                pools.add(pool);
+                dataSources.add(pool);
+            }
+            this.shards = List.copyOf(dataSources);
+        }
+        this.fanOut = count > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    /**
+     * Shards that are already initialized, nothing is copied to them.
+     */
+    PriceShards(List<DataSource> shards, ShardKey shardKey) {
+        this.seed = null;
+        this.shards = List.copyOf(shards);
+        this.shardKey = shardKey;
+        this.fanOut = shards.size() > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    /**
+     * A single shard, the given DataSource.
+     */
+    public static PriceShards of(DataSource dataSource) {
+        return new PriceShards(List.of(dataSource), ShardKey.BRAND);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (pools.isEmpty()) {
+            return;
+        }
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        for (DataSource shard : shards) {
+            schema.execute(shard);
+        }
+        copy(seed);
+    }
+
+    /**
+     * Copy the PRICES rows of the source to the shard of their key, then build the price segments of every shard.
+     * The change feed is not notified.
+     *
+     * @return the number of rows copied
+     */
+    long copy(DataSource source) {
+        long start = System.nanoTime();
+        long rows = 0;
+        List<Connection> connections = new ArrayList<>(shards.size());
+        PriceChangeTrigger.pause();
+        PriceSegmentTrigger.pause();
+        try (Connection connection = source.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT);
+             ResultSet resultSet = select.executeQuery()) {
+            List<PreparedStatement> inserts = new ArrayList<>(shards.size());
+            for (DataSource shard : shards) {
+                Connection shardConnection = shard.getConnection();
+                connections.add(shardConnection);
+                shardConnection.setAutoCommit(false);
+                inserts.add(shardConnection.prepareStatement(INSERT));
+            }
+            int[] batched = new int[shards.size()];
+            while (resultSet.next()) {
+                int shard = shardOf(resultSet.getInt("PRODUCT_ID"), resultSet.getInt("BRAND_ID"));
+                PreparedStatement insert = inserts.get(shard);
+                for (int column = 1; column <= 10; column++) {
+                    insert.setObject(column, resultSet.getObject(column));
+                }
+                insert.addBatch();
+                if (++batched[shard] == COPY_BATCH_SIZE) {
+                    insert.executeBatch();
+                    batched[shard] = 0;
+                }
+                rows++;
+            }
+            for (int shard = 0; shard < shards.size(); shard++) {
+                if (batched[shard] > 0) {
+                    inserts.get(shard).executeBatch();
+                }
+                PriceSegments.rebuildAll(connections.get(shard));
+                connections.get(shard).commit();
+            }
+        } catch (SQLException e) {
+            log.debug("Problem copying the prices to the shards", e);
+            throw new PlatformHttpException("Failed to copy the prices to the shards", Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            PriceChangeTrigger.resume();
+            PriceSegmentTrigger.resume();
+            closeAll(connections);
+        }
+        log.debug("Copied {} prices to {} shards by {} in {} ms", rows, shards.size(), shardKey,
+                (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private static void closeAll(List<Connection> connections) {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Problem closing a shard connection", e);
+            }
+        }
+    }
+
+    public int count() {
+        return shards.size();
+    }
+
+    public int shardOf(int productId, int brandId) {
+        if (shards.size() == 1) {
+            return 0;
+        }
+        int hash = switch (shardKey) {
+            case BRAND -> brandId;
+            case PRODUCT_BRAND -> Long.hashCode(PriceKey.of(productId, brandId) * 0x9E3779B97F4A7C15L);
+        };
+        return Math.floorMod(hash, shards.size());
+    }
+
+    public DataSource dataSource(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * @return the shard holding the rows of the product/brand
+     */
+    public DataSource route(int productId, int brandId) {
+        return shards.get(shardOf(productId, brandId));
+    }
+
+    /**
+     * Run the task for every shard, in parallel with several, and wait for all of them.
+     * <p>
+     * The first failure is rethrown once every task has finished, a {@link RuntimeException} as is.
+     *
+     * @return the results in shard order
+     */
+    public <T> List<T> fanOut(IntFunction<T> task) {
+        if (fanOut == null) {
+            return Collections.singletonList(task.apply(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int current = shard;
+            futures.add(fanOut.submit(() -> task.apply(current)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                results.add(null);
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException ? runtimeException
+                            : new PlatformHttpException("Failed to query the price shards", Response.Status.INTERNAL_SERVER_ERROR);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PlatformHttpException("Interrupted while querying the price shards", Response.Status.SERVICE_UNAVAILABLE);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (fanOut != null) {
+            fanOut.shutdown();
+        }
+        pools.forEach(HikariDataSource::close);
+    }
+
+}
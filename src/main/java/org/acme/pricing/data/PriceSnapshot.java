@@ -0,0 +1,478 @@
+package org.acme.pricing.data;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.dto.PriceSnapshotReportDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the PRICES rows, to restore the table at startup instead of replaying SQL inserts.
+ * <p>
+ * The file is a 32 byte header (magic, format version, row count, dictionary offset, CRC32C of everything after the
+ * header), the rows in ID order as fixed 70 byte records, then a dictionary of the CURRENCY/TIME_ZONE strings the
+ * records refer to by index. START_AT/END_AT are not stored, the {@link PriceInstantTrigger} recomputes them.
+ * <p>
+ * Both directions stream through a direct buffer with sequential NIO reads and writes. A restore verifies the
+ * checksum in a first pass, so a damaged file is rejected before the table is touched, then replaces the PRICES rows
+ * with batched inserts in primary key order, without the change feed, and clears PRICE_CHANGES. The lookup structures
+ * are loaded after it ({@link PriceDAO} depends on this bean).
+ * <p>
+ * With several {@link PriceShards} the application database only holds the seed rows, the snapshot is restored into
+ * it but never written from it: the imports and changes of the shards would be lost at the next startup.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@Slf4j
+public class PriceSnapshot {
+
+    static final int MAGIC = 0x5052534E; // "PRSN"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+
+    static final int ROW_SIZE = 70;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String SELECT = "SELECT ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE " +
+            "FROM PRICES ORDER BY ID;";
+
+    private static final String INSERT = "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+
+    // null flags of a record
+    private static final int NULL_BRAND_ID = 1;
+    private static final int NULL_START_DATE = 1 << 1;
+    private static final int NULL_END_DATE = 1 << 2;
+    private static final int NULL_PRICE_LIST = 1 << 3;
+    private static final int NULL_PRODUCT_ID = 1 << 4;
+    private static final int NULL_PRIORITY = 1 << 5;
+    private static final int NULL_PRICE = 1 << 6;
+
+    private final DataSource dataSource;
+
+    private final DatabaseCallLimiter limiter;
+
+    private final Path file;
+
+    private final boolean writeOnShutdown;
+
+    private final int batchSize;
+
+    private final int shards;
+
+    @Autowired
+    public PriceSnapshot(DataSource dataSource, DatabaseCallLimiter limiter,
+                         @Value("${pricing.snapshot.file:}") String file,
+                         @Value("${pricing.snapshot.write-on-shutdown:false}") boolean writeOnShutdown,
+                         @Value("${pricing.import.batch-size}") int batchSize,
+                         @Value("${pricing.shards.count}") int shards) {
+        this.dataSource = dataSource;
+        this.limiter = limiter;
+        this.file = file.isBlank() ? null : Path.of(file);
+        this.writeOnShutdown = writeOnShutdown;
+        this.batchSize = batchSize;
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void restoreOnStartup() {
+        if (file != null && Files.isRegularFile(file)) {
+            restore();
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() {
+        if (file != null && writeOnShutdown) {
+            if (shards > 1) {
+                log.debug("Price snapshot {} not written on shutdown, the prices are in {} shards", file, shards);
+                return;
+            }
+            write();
+        }
+    }
+
+    /**
+     * Write the PRICES rows to the snapshot file, replacing it once complete. Refused with several shards.
+     */
+    public PriceSnapshotReportDTO write() {
+        Path target = configuredFile();
+        if (shards > 1) {
+            throw new PlatformHttpException("The price snapshot is not supported with several shards", Response.Status.CONFLICT);
+        }
+        long start = System.nanoTime();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        long rows;
+        long bytes;
+
+        limiter.acquire();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT);
+             ResultSet resultSet = statement.executeQuery();
+             FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChecksumWriter out = new ChecksumWriter(channel);
+            Dictionary dictionary = new Dictionary();
+            rows = 0;
+            while (resultSet.next()) {
+                out.ensure(ROW_SIZE);
+                encodeRow(resultSet, dictionary, out.buffer);
+                rows++;
+            }
+            long dictionaryOffset = HEADER_SIZE + rows * ROW_SIZE;
+            out.ensure(Integer.BYTES);
+            out.buffer.putInt(dictionary.values.size());
+            for (String value : dictionary.values) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                out.ensure(Short.BYTES + encoded.length);
+                out.buffer.putShort((short) encoded.length).put(encoded);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(rows)
+                    .putLong(dictionaryOffset).putInt((int) out.checksum.getValue()).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+            bytes = channel.size();
+        } catch (SQLException | IOException e) {
+            log.debug("Problem writing the price snapshot {}", target, e);
+            throw new PlatformHttpException("Failed to write the price snapshot", Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.debug("Problem replacing the price snapshot {}", target, e);
+            throw new PlatformHttpException("Failed to write the price snapshot", Response.Status.INTERNAL_SERVER_ERROR);
+        }
+        return report(target, rows, bytes, start);
+    }
+
+    /**
+     * Replace the PRICES rows with the rows of the snapshot file, in a single transaction: a restore that fails, on a
+     * damaged file or half way through the rows, leaves PRICES, PRICE_SEGMENTS and PRICE_CHANGES as they were.
+     */
+    public PriceSnapshotReportDTO restore() {
+        Path source = configuredFile();
+        long start = System.nanoTime();
+        long rows;
+        long bytes;
+
+        limiter.acquire();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+             Connection connection = dataSource.getConnection()) {
+            bytes = channel.size();
+            ByteBuffer header = readHeader(channel);
+            rows = header.getLong(8);
+            long dictionaryOffset = header.getLong(16);
+            verifyChecksum(channel, header.getInt(24));
+            String[] dictionary = readDictionary(channel, dictionaryOffset);
+
+            // no DDL in between, it would commit the deleted rows
+            connection.setAutoCommit(false);
+            PriceChangeTrigger.pause();
+            PriceSegmentTrigger.pause();
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM PRICES;");
+                 PreparedStatement insert = connection.prepareStatement(INSERT);
+                 PreparedStatement clearChanges = connection.prepareStatement("DELETE FROM PRICE_CHANGES;")) {
+                delete.executeUpdate();
+                insertRows(channel, rows, dictionary, insert);
+                clearChanges.executeUpdate();
+                PriceSegments.rebuildAll(connection);
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                PriceChangeTrigger.resume();
+                PriceSegmentTrigger.resume();
+            }
+        } catch (SQLException | IOException | IllegalArgumentException e) {
+            log.debug("Problem restoring the price snapshot {}", source, e);
+            throw new PlatformHttpException("Failed to restore the price snapshot", Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+
+        PriceSnapshotReportDTO report = report(source, rows, bytes, start);
+        log.debug("Restored {} prices from {} in {} ms", rows, source, report.getElapsedMillis());
+        return report;
+    }
+
+    private Path configuredFile() {
+        if (file == null) {
+            throw new PlatformHttpException("No snapshot file is configured (pricing.snapshot.file)", Response.Status.CONFLICT);
+        }
+        return file;
+    }
+
+    private static PriceSnapshotReportDTO report(Path file, long rows, long bytes, long start) {
+        return PriceSnapshotReportDTO.builder()
+                .file(file.toString())
+                .rows(rows)
+                .bytes(bytes)
+                .elapsedMillis((System.nanoTime() - start) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * The buffer holds whole records, so a record never straddles two reads.
+     */
+    private void insertRows(FileChannel channel, long rows, String[] dictionary, PreparedStatement insert)
+            throws IOException, SQLException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE - BUFFER_SIZE % ROW_SIZE).limit(0);
+        long position = HEADER_SIZE;
+        int batched = 0;
+        for (long row = 0; row < rows; row++) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), (rows - row) * ROW_SIZE));
+                int read = readFully(channel, buffer, position);
+                if (read < buffer.limit()) {
+                    throw new IllegalArgumentException("Truncated price snapshot");
+                }
+                position += read;
+                buffer.flip();
+            }
+            decodeRow(buffer, dictionary, insert);
+            insert.addBatch();
+            if (++batched == batchSize) {
+                insert.executeBatch();
+                batched = 0;
+            }
+        }
+        if (batched > 0) {
+            insert.executeBatch();
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() < HEADER_SIZE || readFully(channel, header, 0) < HEADER_SIZE) {
+            throw new IllegalArgumentException("Truncated price snapshot header");
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a price snapshot");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported price snapshot version " + header.getInt(4));
+        }
+        long rows = header.getLong(8);
+        long dictionaryOffset = header.getLong(16);
+        if (rows < 0 || dictionaryOffset != HEADER_SIZE + rows * ROW_SIZE || dictionaryOffset + Integer.BYTES > channel.size()) {
+            throw new IllegalArgumentException("Inconsistent price snapshot header");
+        }
+        return header;
+    }
+
+    private static void verifyChecksum(FileChannel channel, int expected) throws IOException {
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long position = HEADER_SIZE;
+        while (position < channel.size()) {
+            buffer.clear();
+            position += readFully(channel, buffer, position);
+            checksum.update(buffer.flip());
+        }
+        if ((int) checksum.getValue() != expected) {
+            throw new IllegalArgumentException("Price snapshot checksum mismatch");
+        }
+    }
+
+    private static String[] readDictionary(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - offset));
+        readFully(channel, buffer, offset);
+        buffer.flip();
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] value = new byte[buffer.getShort()];
+            buffer.get(value);
+            values[i] = new String(value, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * Read until the buffer is full or the end of the file.
+     *
+     * @return the bytes read
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    private static void encodeRow(ResultSet resultSet, Dictionary dictionary, ByteBuffer buffer) throws SQLException {
+        int flagsPosition = buffer.position();
+        int nulls = 0;
+        buffer.put((byte) 0);
+        UUID id = resultSet.getObject("ID", UUID.class);
+        buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        nulls |= putInt(resultSet, "BRAND_ID", buffer, NULL_BRAND_ID);
+        nulls |= putInt(resultSet, "PRODUCT_ID", buffer, NULL_PRODUCT_ID);
+        nulls |= putInt(resultSet, "PRICE_LIST", buffer, NULL_PRICE_LIST);
+        nulls |= putInt(resultSet, "PRIORITY", buffer, NULL_PRIORITY);
+        nulls |= putDateTime(resultSet.getObject("START_DATE", LocalDateTime.class), buffer, NULL_START_DATE);
+        nulls |= putDateTime(resultSet.getObject("END_DATE", LocalDateTime.class), buffer, NULL_END_DATE);
+        BigDecimal price = resultSet.getBigDecimal("PRICE");
+        if (price == null) {
+            buffer.putLong(0).put((byte) 0);
+            nulls |= NULL_PRICE;
+        } else {
+            buffer.putLong(price.unscaledValue().longValueExact()).put((byte) price.scale());
+        }
+        buffer.putShort(dictionary.indexOf(resultSet.getString("CURRENCY")));
+        buffer.putShort(dictionary.indexOf(resultSet.getString("TIME_ZONE")));
+        buffer.put(flagsPosition, (byte) nulls);
+    }
+
+    private static int putInt(ResultSet resultSet, String column, ByteBuffer buffer, int nullFlag) throws SQLException {
+        buffer.putInt(resultSet.getInt(column));
+        return resultSet.wasNull() ? nullFlag : 0;
+    }
+
+    private static int putDateTime(LocalDateTime dateTime, ByteBuffer buffer, int nullFlag) {
+        if (dateTime == null) {
+            buffer.putLong(0).putInt(0);
+            return nullFlag;
+        }
+        buffer.putLong(dateTime.toEpochSecond(ZoneOffset.UTC)).putInt(dateTime.getNano());
+        return 0;
+    }
+
+    private static void decodeRow(ByteBuffer buffer, String[] dictionary, PreparedStatement insert) throws SQLException {
+        int nulls = buffer.get();
+        insert.setObject(1, new UUID(buffer.getLong(), buffer.getLong()));
+        setInt(insert, 2, buffer.getInt(), nulls, NULL_BRAND_ID);
+        setInt(insert, 6, buffer.getInt(), nulls, NULL_PRODUCT_ID);
+        setInt(insert, 5, buffer.getInt(), nulls, NULL_PRICE_LIST);
+        setInt(insert, 7, buffer.getInt(), nulls, NULL_PRIORITY);
+        setDateTime(insert, 3, buffer.getLong(), buffer.getInt(), nulls, NULL_START_DATE);
+        setDateTime(insert, 4, buffer.getLong(), buffer.getInt(), nulls, NULL_END_DATE);
+        long unscaledPrice = buffer.getLong();
+        int scale = buffer.get();
+        insert.setBigDecimal(8, (nulls & NULL_PRICE) != 0 ? null : BigDecimal.valueOf(unscaledPrice, scale));
+        insert.setString(9, lookup(dictionary, buffer.getShort()));
+        insert.setString(10, lookup(dictionary, buffer.getShort()));
+    }
+
+    private static void setInt(PreparedStatement insert, int parameter, int value, int nulls, int nullFlag) throws SQLException {
+        if ((nulls & nullFlag) != 0) {
+            insert.setNull(parameter, Types.INTEGER);
+        } else {
+            insert.setInt(parameter, value);
+        }
+    }
+
+    private static void setDateTime(PreparedStatement insert, int parameter, long epochSecond, int nano, int nulls,
+                                    int nullFlag) throws SQLException {
+        insert.setObject(parameter, (nulls & nullFlag) != 0 ? null
+                : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC), Types.TIMESTAMP);
+    }
+
+    private static String lookup(String[] dictionary, short index) {
+        if (index < -1 || index >= dictionary.length) {
+            throw new IllegalArgumentException("Dictionary index " + index + " out of range");
+        }
+        return index < 0 ? null : dictionary[index];
+    }
+
+    /**
+     * Distinct strings of the snapshot, -1 for null.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Short> indexes = new HashMap<>();
+
+        private final List<String> values = new ArrayList<>();
+
+        short indexOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            return indexes.computeIfAbsent(value, v -> {
+                if (values.size() == Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct currencies and time zones");
+                }
+                values.add(v);
+                return (short) (values.size() - 1);
+            });
+        }
+    }
+
+    /**
+     * Sequential writes after the header through a direct buffer, checksumming every flushed byte.
+     */
+    private static final class ChecksumWriter {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private final CRC32C checksum = new CRC32C();
+
+        private long position = HEADER_SIZE;
+
+        ChecksumWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+}
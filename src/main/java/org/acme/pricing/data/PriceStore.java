@@ -0,0 +1,165 @@
+package org.acme.pricing.data;
+
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Off-heap form of the {@link PriceIndex}: the PRICES table flattened into {@link PriceColumns}.
+ * <p>
+ * A {@link #reload()} builds new columns from the database and, when a snapshot file is configured, writes them to it
+ * and maps the file, so the columns live in the page cache instead of a direct buffer. Columns are immutable, a
+ * {@link #refresh(int, int)} puts the new timeline of the key in a small on-heap overlay that wins over the columns
+ * until the next reload. Once the overlay holds compact-threshold keys, a background reload folds it back into new
+ * columns. Readers never block. Refreshes are serialized and are not held up by a reload: the keys refreshed while it
+ * reads the table are kept in the overlay of the new columns.
+ */
+@Component
+@Slf4j
+public class PriceStore {
+
+    private final PriceWindowReader reader;
+
+    private final Path snapshotFile;
+
+    private final int compactThreshold;
+
+    private final Object reloads = new Object();
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private volatile Generation generation = new Generation(PriceColumns.of(List.of()), new ConcurrentHashMap<>());
+
+    /**
+     * The overlay of the columns being built, while a reload reads the table. Guarded by this.
+     */
+    private Map<Long, PriceTimeline> reloadOverlay;
+
+    @Autowired
+    public PriceStore(PriceWindowReader reader, @Value("${pricing.store.snapshot-file:}") String snapshotFile,
+                      @Value("${pricing.store.compact-threshold}") int compactThreshold) {
+        this.reader = reader;
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the winning price, materialized, or null when no window covers the instant
+     */
+    public RatedPriceDTO find(long at, int productId, int brandId) {
+        PriceAt price = findAt(at, productId, brandId);
+        return price != null ? price.price() : null;
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the winning price, materialized, with the end of its segment, or null
+     */
+    public PriceAt findAt(long at, int productId, int brandId) {
+        Generation current = generation;
+        if (!current.overlay().isEmpty()) {
+            PriceTimeline timeline = current.overlay().get(PriceKey.of(productId, brandId));
+            if (timeline != null) {
+                PriceTimeline.Segment segment = timeline.segmentAt(at);
+                return segment != null ? new PriceAt(segment.winner().toRatedPrice(), segment.end()) : null;
+            }
+        }
+        PriceColumns columns = current.columns();
+        int segment = columns.findSegment(at, productId, brandId);
+        return segment >= 0 ? new PriceAt(columns.toRatedPrice(columns.segmentRow(segment)), columns.segmentEnd(segment)) : null;
+    }
+
+    public PriceColumns columns() {
+        return generation.columns();
+    }
+
+    public int overlaySize() {
+        return generation.overlay().size();
+    }
+
+    /**
+     * Read the whole PRICES table and swap in new columns, with an overlay of the keys refreshed meanwhile only.
+     */
+    public void reload() {
+        synchronized (reloads) {
+            Map<Long, PriceTimeline> overlay = new ConcurrentHashMap<>();
+            synchronized (this) {
+                reloadOverlay = overlay;
+            }
+            try {
+                List<PriceWindow> windows = new ArrayList<>();
+                reader.readAll(windows::add);
+                PriceColumns columns = PriceColumns.of(windows);
+                if (snapshotFile != null) {
+                    try {
+                        // moved in place of the file the current columns are mapped from, which stay readable
+                        columns.write(snapshotFile);
+                        columns = PriceColumns.map(snapshotFile);
+                    } catch (IOException e) {
+                        log.debug("Problem writing the price store snapshot {}", snapshotFile, e);
+                        throw new PlatformHttpException("Failed to write the price store snapshot", Response.Status.INTERNAL_SERVER_ERROR);
+                    }
+                }
+                synchronized (this) {
+                    generation = new Generation(columns, overlay);
+                }
+                log.debug("Loaded price store with {} product/brand keys, {} segments, {} bytes", columns.keyCount(),
+                        columns.segmentCount(), columns.sizeInBytes());
+            } finally {
+                synchronized (this) {
+                    reloadOverlay = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-read the rows of a single (productId, brandId) into the overlay, and into the overlay of the columns being
+     * built by a reload, which may have read the rows before the change.
+     */
+    public void refresh(int productId, int brandId) {
+        int overlaySize;
+        synchronized (this) {
+            long key = PriceKey.of(productId, brandId);
+            PriceTimeline timeline = PriceTimeline.of(reader.read(productId, brandId));
+            generation.overlay().put(key, timeline);
+            if (reloadOverlay != null) {
+                reloadOverlay.put(key, timeline);
+            }
+            overlaySize = generation.overlay().size();
+        }
+        if (overlaySize >= compactThreshold && compacting.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("price-store-compaction").start(this::compact);
+        }
+    }
+
+    private void compact() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.debug("Problem folding the price store overlay into new columns", e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * The columns and the keys refreshed since they were built, swapped together on reload.
+     */
+    private record Generation(PriceColumns columns, Map<Long, PriceTimeline> overlay) {
+    }
+
+}
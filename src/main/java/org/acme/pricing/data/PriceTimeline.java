@@ -0,0 +1,198 @@
+package org.acme.pricing.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * The effective price of a single (productId, brandId) over time.
+ * <p>
+ * The overlapping price windows are flattened into non-overlapping segments, each one already carrying the winning
+ * window, so resolving an instant is a binary search over the segment starts.
+ * Segments are half-open [start, end) in epoch milliseconds. Instants between segments have no price.
+ */
+public final class PriceTimeline {
+
+    /**
+     * Highest priority first, on equal priority the latest started window wins.
+     */
+    static final Comparator<PriceWindow> WINNER_ORDER = Comparator.comparingInt(PriceWindow::priority)
+            .thenComparingLong(PriceWindow::startAt).reversed();
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final PriceWindow[] winners;
+
+    private PriceTimeline(long[] starts, long[] ends, PriceWindow[] winners) {
+        this.starts = starts;
+        this.ends = ends;
+        this.winners = winners;
+    }
+
+    /**
+     * Flatten the windows of a single (productId, brandId), in any order.
+     */
+    public static PriceTimeline of(List<PriceWindow> windows) {
+        PriceWindow[] byStart = windows.toArray(new PriceWindow[0]);
+        Arrays.sort(byStart, Comparator.comparingLong(PriceWindow::startAt));
+
+        List<Segment> segments = new ArrayList<>();
+        Sweep sweep = new Sweep(segments::add);
+        for (PriceWindow window : byStart) {
+            sweep.add(window);
+        }
+        sweep.finish();
+
+        long[] starts = new long[segments.size()];
+        long[] ends = new long[segments.size()];
+        PriceWindow[] winners = new PriceWindow[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            starts[i] = segment.start();
+            ends[i] = segment.end();
+            winners[i] = segment.winner();
+        }
+        return new PriceTimeline(starts, ends, winners);
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the segment covering the instant or null
+     */
+    public Segment segmentAt(long at) {
+        int i = lastStartingAtOrBefore(at);
+        if (i < 0 || at >= ends[i]) {
+            return null;
+        }
+        return new Segment(starts[i], ends[i], winners[i]);
+    }
+
+    /**
+     * The stretch around the instant where the answer does not change, gaps included.
+     * A gap carries no winner, the gaps before the first and after the last segment are unbounded.
+     *
+     * @param at epoch milliseconds
+     */
+    public Segment validityAt(long at) {
+        int i = lastStartingAtOrBefore(at);
+        if (i >= 0 && at < ends[i]) {
+            return new Segment(starts[i], ends[i], winners[i]);
+        }
+        long gapStart = i >= 0 ? ends[i] : Long.MIN_VALUE;
+        long gapEnd = i + 1 < starts.length ? starts[i + 1] : Long.MAX_VALUE;
+        return new Segment(gapStart, gapEnd, null);
+    }
+
+    /**
+     * @param at epoch milliseconds
+     * @return the winning window at the instant or null
+     */
+    public PriceWindow find(long at) {
+        int i = lastStartingAtOrBefore(at);
+        return i >= 0 && at < ends[i] ? winners[i] : null;
+    }
+
+    public int segmentCount() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    private int lastStartingAtOrBefore(long at) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= at) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * A stretch of time [start, end) where the winner does not change.
+     */
+    public record Segment(long start, long end, PriceWindow winner) {
+
+        public boolean contains(long at) {
+            return start <= at && at < end;
+        }
+    }
+
+    /**
+     * Sweep line over windows fed in start order. A segment is emitted as soon as it is complete, so the windows can
+     * be streamed from a range scan.
+     */
+    static final class Sweep {
+
+        private final PriorityQueue<PriceWindow> byWinner = new PriorityQueue<>(WINNER_ORDER);
+
+        private final PriorityQueue<PriceWindow> byEnd = new PriorityQueue<>(Comparator.comparingLong(PriceWindow::endAt));
+
+        private final Consumer<Segment> sink;
+
+        private long lastStart = Long.MIN_VALUE;
+
+        private long segmentStart;
+
+        private PriceWindow segmentWinner;
+
+        Sweep(Consumer<Segment> sink) {
+            this.sink = sink;
+        }
+
+        void add(PriceWindow window) {
+            if (window.startAt() < lastStart) {
+                throw new IllegalArgumentException("Price windows must be added in start order");
+            }
+            lastStart = window.startAt();
+            expireBefore(window.startAt());
+            byWinner.add(window);
+            byEnd.add(window);
+            changeAt(window.startAt());
+        }
+
+        void finish() {
+            expireBefore(Long.MAX_VALUE);
+        }
+
+        /**
+         * Close every window ending before the instant, one distinct end at a time.
+         */
+        private void expireBefore(long at) {
+            while (!byEnd.isEmpty() && byEnd.peek().endAt() < at) {
+                long end = byEnd.poll().endAt();
+                while (!byEnd.isEmpty() && byEnd.peek().endAt() == end) {
+                    byEnd.poll();
+                }
+                changeAt(end + 1);
+            }
+        }
+
+        private void changeAt(long at) {
+            while (!byWinner.isEmpty() && byWinner.peek().endAt() < at) {
+                byWinner.poll();
+            }
+            PriceWindow winner = byWinner.peek();
+            if (winner == segmentWinner) {
+                return;
+            }
+            if (segmentWinner != null && segmentStart < at) {
+                sink.accept(new Segment(segmentStart, at, segmentWinner));
+            }
+            segmentStart = at;
+            segmentWinner = winner;
+        }
+    }
+
+}
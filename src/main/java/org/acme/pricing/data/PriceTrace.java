@@ -0,0 +1,89 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.Meter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stage timings and statements of a single request, recorded while it runs. {@link PriceTracer} decides when the
+ * request is over whether the trace is kept.
+ * <p>
+ * Recording only stores references: the meter ids, the SQL text and the parameter values. Nothing is formatted on the
+ * request path, a kept trace is formatted when it is drained. The trace is bound to the thread serving the request,
+ * shard tasks bind it to their own thread with {@link #attach(PriceTrace)}.
+ */
+public final class PriceTrace {
+
+    private static final ThreadLocal<PriceTrace> CURRENT = new ThreadLocal<>();
+
+    final String method;
+
+    final String uri;
+
+    final String query;
+
+    final long startedAt;
+
+    final long start;
+
+    final List<Stage> stages = new ArrayList<>(4);
+
+    final List<Statement> statements = new ArrayList<>(2);
+
+    long elapsed;
+
+    int status;
+
+    PriceTrace(String method, String uri, String query) {
+        this.method = method;
+        this.uri = uri;
+        this.query = query;
+        this.startedAt = System.currentTimeMillis();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * @return the trace of the request served by the current thread, or null when it is not traced
+     */
+    public static PriceTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a trace to the current thread.
+     *
+     * @return the trace bound before, to be restored with {@link #restore(PriceTrace)}
+     */
+    public static PriceTrace attach(PriceTrace trace) {
+        PriceTrace previous = CURRENT.get();
+        CURRENT.set(trace);
+        return previous;
+    }
+
+    public static void restore(PriceTrace previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public synchronized void stage(Meter.Id meter, long nanos) {
+        stages.add(new Stage(meter, nanos));
+    }
+
+    /**
+     * @param parameters the bound values, arrays are rendered element by element
+     */
+    public synchronized void statement(String sql, Object... parameters) {
+        statements.add(new Statement(sql, parameters));
+    }
+
+    record Stage(Meter.Id meter, long nanos) {
+    }
+
+    record Statement(String sql, Object[] parameters) {
+    }
+
+}
@@ -0,0 +1,241 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.dto.PriceTraceDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the traces of the requests slower than a threshold, plus a sample of the others.
+ * <p>
+ * Every traced request records its {@link PriceTrace}. When the request is over, a kept trace is offered to a bounded
+ * lock-free ring, a trace that is not kept is simply dropped. The ring is drained in the background: the traces are
+ * formatted there and the most recent ones retained for {@link #recent}. When the ring is full, new traces are
+ * dropped and counted rather than waited for.
+ * <p>
+ * Metrics: pricing.trace.kept and pricing.trace.dropped.
+ */
+@Component
+@Slf4j
+public class PriceTracer {
+
+    private final boolean enabled;
+
+    private final long thresholdNanos;
+
+    private final double sampleRate;
+
+    private final int retained;
+
+    private final Ring ring;
+
+    private final Deque<PriceTraceDTO> recent = new ArrayDeque<>();
+
+    private final Counter kept;
+
+    private final Counter dropped;
+
+    @Autowired
+    public PriceTracer(@Value("${pricing.trace.enabled}") boolean enabled,
+                       @Value("${pricing.trace.threshold}") long threshold,
+                       @Value("${pricing.trace.sample-rate}") double sampleRate,
+                       @Value("${pricing.trace.buffer-size}") int bufferSize,
+                       @Value("${pricing.trace.retained}") int retained,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.sampleRate = sampleRate;
+        this.retained = retained;
+        this.ring = new Ring(bufferSize);
+        this.kept = Counter.builder("pricing.trace.kept").description("Request traces kept")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("pricing.trace.dropped").description("Request traces dropped on a full buffer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start tracing a request on the current thread.
+     *
+     * @return the trace, or null when tracing is disabled
+     */
+    public PriceTrace begin(String method, String uri, String query) {
+        if (!enabled) {
+            return null;
+        }
+        PriceTrace trace = new PriceTrace(method, uri, query);
+        PriceTrace.attach(trace);
+        return trace;
+    }
+
+    /**
+     * Finish the trace of the current thread and keep it if the request was slow or sampled.
+     */
+    public void end(PriceTrace trace, int status) {
+        PriceTrace.restore(null);
+        trace.elapsed = System.nanoTime() - trace.start;
+        trace.status = status;
+        if (trace.elapsed < thresholdNanos && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        if (ring.offer(trace)) {
+            kept.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Format the traces in the ring and retain the most recent ones. The ring has a single consumer, this method.
+     */
+    @Scheduled(fixedDelayString = "${pricing.trace.drain-interval}")
+    public synchronized void drain() {
+        PriceTrace trace;
+        while ((trace = ring.poll()) != null) {
+            PriceTraceDTO dto = format(trace);
+            log.debug("Request trace: {} {} {} in {} ms", dto.getMethod(), dto.getUri(), dto.getStatus(), dto.getElapsedMillis());
+            recent.addFirst(dto);
+            if (recent.size() > retained) {
+                recent.removeLast();
+            }
+        }
+    }
+
+    /**
+     * @return the most recent kept traces of at least minMillis, newest first
+     */
+    public synchronized List<PriceTraceDTO> recent(double minMillis, int limit) {
+        drain();
+        List<PriceTraceDTO> traces = new ArrayList<>(Math.min(limit, recent.size()));
+        for (PriceTraceDTO trace : recent) {
+            if (traces.size() >= limit) {
+                break;
+            }
+            if (trace.getElapsedMillis() >= minMillis) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    private PriceTraceDTO format(PriceTrace trace) {
+        List<PriceTraceDTO.Stage> stages = new ArrayList<>(trace.stages.size());
+        for (PriceTrace.Stage stage : trace.stages) {
+            Map<String, String> tags = new LinkedHashMap<>();
+            for (Tag tag : stage.meter().getTagsAsIterable()) {
+                tags.put(tag.getKey(), tag.getValue());
+            }
+            stages.add(new PriceTraceDTO.Stage(stage.meter().getName(), tags, millis(stage.nanos())));
+        }
+        List<PriceTraceDTO.Statement> statements = new ArrayList<>(trace.statements.size());
+        for (PriceTrace.Statement statement : trace.statements) {
+            List<String> parameters = new ArrayList<>(statement.parameters().length);
+            for (Object parameter : statement.parameters()) {
+                parameters.add(parameter instanceof Object[] values ? Arrays.toString(values) : String.valueOf(parameter));
+            }
+            statements.add(new PriceTraceDTO.Statement(statement.sql(), parameters));
+        }
+        return PriceTraceDTO.builder()
+                .startedAt(Instant.ofEpochMilli(trace.startedAt).atOffset(ZoneOffset.UTC))
+                .method(trace.method)
+                .uri(trace.query != null ? trace.uri + '?' + trace.query : trace.uri)
+                .status(trace.status)
+                .elapsedMillis(millis(trace.elapsed))
+                .slow(trace.elapsed >= thresholdNanos)
+                .stages(stages)
+                .statements(statements)
+                .build();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring. Every slot carries the sequence it is ready for: a producer claims
+     * the next write sequence with a CAS once the consumer has released the slot, the consumer takes a slot once the
+     * producer has published it. A producer that finds the ring full gives up instead of waiting.
+     */
+    static final class Ring {
+
+        private final AtomicReferenceArray<PriceTrace> traces;
+
+        private final AtomicLongArray sequences;
+
+        private final int mask;
+
+        private final AtomicLong head = new AtomicLong();
+
+        private long tail;
+
+        Ring(int capacity) {
+            int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+            this.traces = new AtomicReferenceArray<>(size);
+            this.sequences = new AtomicLongArray(size);
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * @return false when the ring is full
+         */
+        boolean offer(PriceTrace trace) {
+            while (true) {
+                long position = head.get();
+                int slot = (int) position & mask;
+                long ready = sequences.get(slot) - position;
+                if (ready == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        traces.set(slot, trace);
+                        sequences.set(slot, position + 1);
+                        return true;
+                    }
+                } else if (ready < 0) {
+                    return false;
+                }
+                // another producer claimed the position first
+            }
+        }
+
+        /**
+         * @return the oldest published trace, or null when there is none
+         */
+        PriceTrace poll() {
+            int slot = (int) tail & mask;
+            if (sequences.get(slot) != tail + 1) {
+                return null;
+            }
+            PriceTrace trace = traces.get(slot);
+            traces.set(slot, null);
+            sequences.set(slot, tail + mask + 1);
+            tail++;
+            return trace;
+        }
+    }
+
+}
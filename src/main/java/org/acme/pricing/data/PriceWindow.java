@@ -0,0 +1,59 @@
+package org.acme.pricing.data;
+
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * A single row of the PRICES table with its validity window normalized to UTC epoch milliseconds.
+ * <p>
+ * Both ends of the window are inclusive, like the START_DATE/END_DATE comparison of the SQL query.
+ */
+public record PriceWindow(UUID id, int productId, int brandId, int priceList, int priority,
+                          long startAt, long endAt, BigDecimal price, CurrencyEnum currency, ZoneId timeZone) {
+
+    public long key() {
+        return PriceKey.of(productId, brandId);
+    }
+
+    public boolean covers(long at) {
+        return startAt <= at && at <= endAt;
+    }
+
+    public RatedPriceDTO toRatedPrice() {
+        RatedPriceDTO ratedPrice = new RatedPriceDTO();
+        ratedPrice.setId(id);
+        ratedPrice.setProductId(productId);
+        ratedPrice.setBrandId(brandId);
+        ratedPrice.setRateListId(priceList);
+        ratedPrice.setPrice(price);
+        ratedPrice.setCurrency(currency);
+        ratedPrice.setAppliedStartAt(TimeZones.present(startAt, timeZone));
+        ratedPrice.setAppliedEndAt(TimeZones.present(endAt, timeZone));
+        return ratedPrice;
+    }
+
+    /**
+     * Map the current row of a PRICES result set, reading the window from the UTC START_AT/END_AT columns.
+     */
+    public static PriceWindow fromResultSet(ResultSet resultSet) throws SQLException {
+        return new PriceWindow(
+                resultSet.getObject("ID", UUID.class),
+                resultSet.getInt("PRODUCT_ID"),
+                resultSet.getInt("BRAND_ID"),
+                resultSet.getInt("PRICE_LIST"),
+                resultSet.getInt("PRIORITY"),
+                resultSet.getObject("START_AT", OffsetDateTime.class).toInstant().toEpochMilli(),
+                resultSet.getObject("END_AT", OffsetDateTime.class).toInstant().toEpochMilli(),
+                resultSet.getBigDecimal("PRICE"),
+                CurrencyEnum.valueOf(resultSet.getString("CURRENCY")),
+                TimeZones.of(resultSet.getString("TIME_ZONE")));
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.acme.pricing.data;
+
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads PRICES rows as {@link PriceWindow}s for the in-memory lookup structures, from the shard of the key or from
+ * every shard in parallel.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@Slf4j
+public class PriceWindowReader {
+
+    private final PriceShards shards;
+
+    private final DatabaseCallLimiter limiter;
+
+    @Autowired
+    public PriceWindowReader(PriceShards shards, DatabaseCallLimiter limiter) {
+        this.shards = shards;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Stream every row of the table to the consumer. With several shards the consumer is called by one shard at a
+     * time, in no particular order.
+     */
+    public void readAll(Consumer<PriceWindow> consumer) {
+        if (shards.count() == 1) {
+            readAll(shards.dataSource(0), consumer);
+            return;
+        }
+        Object lock = new Object();
+        shards.fanOut(shard -> {
+            readAll(shards.dataSource(shard), window -> {
+                synchronized (lock) {
+                    consumer.accept(window);
+                }
+            });
+            return null;
+        });
+    }
+
+    private void readAll(DataSource dataSource, Consumer<PriceWindow> consumer) {
+        String query = "SELECT * FROM PRICES;";
+
+        limiter.acquire();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                consumer.accept(PriceWindow.fromResultSet(resultSet));
+            }
+        } catch (SQLException e) {
+            log.debug("Problem reading the price windows", e);
+            throw new PlatformHttpException("Failed to load prices from the database", Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Read the rows of a single (productId, brandId).
+     */
+    public List<PriceWindow> read(int productId, int brandId) {
+        String query = "SELECT * FROM PRICES WHERE PRODUCT_ID = ? AND BRAND_ID = ?;";
+
+        List<PriceWindow> windows = new ArrayList<>();
+        limiter.acquire();
+        try (Connection connection = shards.route(productId, brandId).getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, productId);
+            statement.setInt(2, brandId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    windows.add(PriceWindow.fromResultSet(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Problem reading the price windows", e);
+            throw new PlatformHttpException("Failed to load prices from the database", Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            limiter.release();
+        }
+        return windows;
+    }
+
+}
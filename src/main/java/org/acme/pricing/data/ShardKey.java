@@ -0,0 +1,15 @@
+package org.acme.pricing.data;
+
+/**
+ * What decides the shard of a PRICES row in {@link PriceShards}.
+ * <p>
+ * BRAND – the brandId, so every lookup and import of a brand goes to one database.
+ * PRODUCT_BRAND – a hash of the (productId, brandId) pair, which spreads a large brand over all the shards.
+ */
+public enum ShardKey {
+
+    BRAND,
+
+    PRODUCT_BRAND
+
+}
@@ -0,0 +1,116 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.acme.pricing.exception.PlatformHttpException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load on its own thread, callers arriving
+ * while it is in flight wait for and share its result instead of running their own.
+ * <p>
+ * A failed load fails every caller that shared it. A {@link PlatformHttpException} is rethrown to each of them as a
+ * new exception with the same message and status, any other exception as is. Nothing is kept once the load
+ * completes, a caller arriving after that starts a new one.
+ *
+ * @param <K> key with value semantics
+ */
+public final class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * @param name tag of the metrics
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> current = inFlight.putIfAbsent(key, flight);
+        if (current != null) {
+            shared.increment();
+            return await(current);
+        }
+        loads.increment();
+        V value;
+        try {
+            value = loader.get();
+        } catch (Throwable e) {
+            // leave the map first, so no caller joins a flight that already failed
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, flight);
+        flight.complete(value);
+        return value;
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof PlatformHttpException platformHttpException) {
+                throw new PlatformHttpException(platformHttpException.getMessage(), platformHttpException.getHttpStatus());
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * @return the share of the calls answered by another caller's load
+     */
+    public double dedupRatio() {
+        long sharedCount = sharedCount();
+        long calls = loadCount() + sharedCount;
+        return calls == 0 ? 0 : (double) sharedCount / calls;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pricing.single-flight.calls", this, SingleFlight::loadCount).tag("flight", name)
+                .tag("outcome", "load").description("Calls that ran their own load").register(registry);
+        FunctionCounter.builder("pricing.single-flight.calls", this, SingleFlight::sharedCount).tag("flight", name)
+                .tag("outcome", "shared").description("Calls that shared an in-flight load").register(registry);
+        Gauge.builder("pricing.single-flight.dedup-ratio", this, SingleFlight::dedupRatio).tag("flight", name)
+                .description("Share of the calls answered by an in-flight load").register(registry);
+        Gauge.builder("pricing.single-flight.in-flight", this, SingleFlight::inFlight).tag("flight", name)
+                .description("Loads in flight").register(registry);
+    }
+
+}
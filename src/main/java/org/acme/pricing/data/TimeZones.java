@@ -0,0 +1,44 @@
+package org.acme.pricing.data;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned time zones of the PRICES rows.
+ * <p>
+ * The TIME_ZONE column only holds a handful of distinct ids, parsing them once avoids a ZoneId.of per row. Zones with
+ * fixed rules (like 'GMT+2') are kept as their ZoneOffset, so presenting an instant needs no rules lookup.
+ */
+public final class TimeZones {
+
+    private static final Map<String, ZoneId> ZONES = new ConcurrentHashMap<>();
+
+    private TimeZones() {
+    }
+
+    public static ZoneId of(String id) {
+        return ZONES.computeIfAbsent(id, TimeZones::parse);
+    }
+
+    /**
+     * @param epochMilli a UTC instant
+     * @return the instant with the offset of the time zone at that instant
+     */
+    public static OffsetDateTime present(long epochMilli, ZoneId zone) {
+        Instant instant = Instant.ofEpochMilli(epochMilli);
+        if (zone instanceof ZoneOffset offset) {
+            return OffsetDateTime.ofInstant(instant, offset);
+        }
+        return OffsetDateTime.ofInstant(instant, zone);
+    }
+
+    private static ZoneId parse(String id) {
+        ZoneId zone = ZoneId.of(id);
+        return zone.getRules().isFixedOffset() ? zone.getRules().getOffset(Instant.EPOCH) : zone;
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.acme.pricing.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A PRICES row of a bulk import, one NDJSON line or CSV record. The dates are local to the time zone, like the
+ * START_DATE/END_DATE columns. Without an id a random one is assigned.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"id", "brandId", "startDate", "endDate", "priceList", "productId", "priority", "price", "currency", "timeZone"})
+public class PriceImportDTO {
+
+    private UUID id;
+
+    @Schema(example = "1")
+    private Integer brandId;
+
+    @Schema(type = "string", example = "2020-06-14 00:00:00")
+    @JsonFormat(pattern = "yyyy-MM-dd['T'][' ']HH:mm:ss")
+    private LocalDateTime startDate;
+
+    @Schema(type = "string", example = "2020-12-31 23:59:59")
+    @JsonFormat(pattern = "yyyy-MM-dd['T'][' ']HH:mm:ss")
+    private LocalDateTime endDate;
+
+    @Schema(example = "1")
+    private Integer priceList;
+
+    @Schema(example = "35455")
+    private Integer productId;
+
+    @Schema(example = "0")
+    private Integer priority;
+
+    @Schema(type = "number", format = "decimal", example = "35.50")
+    private BigDecimal price;
+
+    @Schema(example = "EUR")
+    private String currency;
+
+    @Schema(example = "Europe/Madrid")
+    private String timeZone;
+
+}
@@ -0,0 +1,31 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.acme.pricing.exception.ErrorInfo;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Rejected rows are counted, only the first ones are detailed, with the row number as the
+ * error value.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceImportReportDTO {
+
+    private long imported;
+
+    private long rejected;
+
+    private long elapsedMillis;
+
+    private long rowsPerSecond;
+
+    private List<ErrorInfo> errors;
+
+}
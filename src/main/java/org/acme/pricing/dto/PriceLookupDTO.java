@@ -0,0 +1,29 @@
+package org.acme.pricing.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.OffsetDateTime;
+
+/**
+ * A single item of a batch price search, same parameters as the single search.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceLookupDTO {
+
+    @Schema(example = "2020-07-08T10:00:00Z")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime appliedAt;
+
+    @Schema(example = "35455")
+    private Integer productId;
+
+    @Schema(example = "1")
+    private Integer brandId;
+
+}
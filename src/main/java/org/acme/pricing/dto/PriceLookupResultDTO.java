@@ -0,0 +1,31 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.acme.pricing.exception.ProblemInfo;
+
+/**
+ * Outcome of a single item of a batch price search.
+ * The status is the one the single search would have answered, with either the price or the problem.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceLookupResultDTO {
+
+    private int status;
+
+    private RatedPriceDTO price;
+
+    private ProblemInfo problem;
+
+    public static PriceLookupResultDTO found(RatedPriceDTO price) {
+        return new PriceLookupResultDTO(200, price, null);
+    }
+
+    public static PriceLookupResultDTO problem(ProblemInfo problem) {
+        return new PriceLookupResultDTO(problem.getStatus(), null, problem);
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.OffsetDateTime;
+
+/**
+ * A stretch of a price timeline with a single effective price, from startAt (inclusive) until endAt (exclusive).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceSegmentDTO {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime startAt;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime endAt;
+
+    private RatedPriceDTO price;
+
+}
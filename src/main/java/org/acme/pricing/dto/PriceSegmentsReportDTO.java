@@ -0,0 +1,34 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of checking or rebuilding the materialized price segments against PRICES.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceSegmentsReportDTO {
+
+    private long keys;
+
+    private long segments;
+
+    private long inconsistentKeys;
+
+    /**
+     * The first inconsistent keys, as productId/brandId.
+     */
+    private List<String> inconsistent;
+
+    private boolean rebuilt;
+
+    private long elapsedMillis;
+
+}
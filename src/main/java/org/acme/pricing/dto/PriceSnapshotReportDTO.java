@@ -0,0 +1,25 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of writing or restoring a binary price snapshot.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceSnapshotReportDTO {
+
+    private String file;
+
+    private long rows;
+
+    private long bytes;
+
+    private long elapsedMillis;
+
+}
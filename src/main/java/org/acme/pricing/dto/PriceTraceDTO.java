@@ -0,0 +1,66 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A kept request trace: the request, its stage timings in the order they ran and the SQL statements it executed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceTraceDTO {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime startedAt;
+
+    private String method;
+
+    private String uri;
+
+    private int status;
+
+    private double elapsedMillis;
+
+    /**
+     * False when the request was kept by sampling rather than for being slow.
+     */
+    private boolean slow;
+
+    private List<Stage> stages;
+
+    private List<Statement> statements;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stage {
+
+        private String name;
+
+        private Map<String, String> tags;
+
+        private double millis;
+
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Statement {
+
+        private String sql;
+
+        private List<String> parameters;
+
+    }
+
+}
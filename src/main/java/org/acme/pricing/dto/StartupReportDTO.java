@@ -0,0 +1,78 @@
+package org.acme.pricing.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The startup timeline of the application: the phases from the JVM start until the first successful search-rates and
+ * the slowest startup steps. The phase durations are counted from the application start.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StartupReportDTO {
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime jvmStartedAt;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime startedAt;
+
+    /**
+     * From the JVM start until the application start: JVM boot and class loading before Spring, what a CDS archive
+     * shortens.
+     */
+    private double jvmMillis;
+
+    /**
+     * Until the context is refreshed, the web server listening.
+     */
+    private double refreshedMillis;
+
+    /**
+     * Until the application is ready to serve, null while starting.
+     */
+    private Double readyMillis;
+
+    /**
+     * Until the first search-rates answered with a price, null before.
+     */
+    private Double firstSearchRatesMillis;
+
+    private boolean lazyInitialization;
+
+    private List<String> profiles;
+
+    /**
+     * Slowest first. Steps nest, a bean instantiation includes the beans it depends on. Empty when the application
+     * was not started with a buffering startup, like from tests.
+     */
+    private List<Step> slowestSteps;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Step {
+
+        private String name;
+
+        private Map<String, String> tags;
+
+        /**
+         * Since the application start.
+         */
+        private double startMillis;
+
+        private double millis;
+
+    }
+
+}
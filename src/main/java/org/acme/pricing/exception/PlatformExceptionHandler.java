@@ -2,8 +2,11 @@ package org.acme.pricing.exception;
 
 import jakarta.validation.ConstraintViolationException;
 import jakarta.ws.rs.NotAuthorizedException;
+import jakarta.ws.rs.core.Response;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -17,71 +20,79 @@ import java.time.format.DateTimeParseException;
  * <p>
  * It logs the exceptions message for know exceptions.
  * It logs the stacktrace for unhandled exceptions.
+ * <p>
+ * The responses come from {@link ProblemResponses}, the known constant problems are serialized once.
  */
 @Slf4j
 @RestControllerAdvice
 public class PlatformExceptionHandler {
 
+    static final ProblemInfo UNHANDLED = ProblemInfo.constant(ProblemInfo.builder().type(URI.create("about:blank"))
+            .status(500).title("Oops, We've tripped on a banana peel! We're on it").build());
+
+    private final ProblemResponses problems;
+
+    @Autowired
+    public PlatformExceptionHandler(ProblemResponses problems) {
+        this.problems = problems;
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handle(NotAuthorizedException ex) {
+        log.debug("Handling NotAuthorizedException: {}", ex.getMessage());
+        return problems.of(ProblemInfo.forException(ex));
+    }
+
     @ExceptionHandler
-    public ResponseEntity<ProblemInfo> handle(NotAuthorizedException ex) {
-        log.debug("Handling NotAuthorizedException", ex);
-        return buildProblemResponse(ProblemInfo.forException(ex));
+    public ResponseEntity<Object> handle(ConstraintViolationException ex) {
+        log.debug("Handling ConstraintViolationException: {}", ex.getMessage());
+        return problems.of(ProblemInfo.forException(ex));
     }
 
     @ExceptionHandler
-    public ResponseEntity<ProblemInfo> handle(ConstraintViolationException ex) {
-        log.debug("Handling ConstraintViolationException", ex);
-        return buildProblemResponse(ProblemInfo.forException(ex));
+    public ResponseEntity<Object> handle(PlatformHttpException ex) {
+        log.debug("Handling PlatformHttpException: {} {}", ex.getHttpStatus().getStatusCode(), ex.getMessage());
+        return problems.of(ProblemInfo.forException(ex));
     }
 
     @ExceptionHandler
-    public ResponseEntity<ProblemInfo> handle(PlatformHttpException ex) {
-        log.debug("Handling PlatformHttpException exception", ex);
-        return buildProblemResponse(ProblemInfo.forException(ex));
+    private ResponseEntity<Object> handle(DateTimeParseException ex) {
+        log.debug("Handling DateTimeParseException: {}", ex.getMessage());
+        return problems.of(ProblemInfo.forException(ex));
     }
 
+    /**
+     * A malformed Accept header, or one without JSON nor the binary price. The cached problem has its content type
+     * set, it is written without negotiating the same header again.
+     */
     @ExceptionHandler
-    private ResponseEntity<ProblemInfo> handle(DateTimeParseException ex) {
-        log.debug("Handling PlatformHttpException exception", ex);
-        return buildProblemResponse(ProblemInfo.forException(ex));
+    public ResponseEntity<Object> handle(HttpMediaTypeNotAcceptableException ex) {
+        log.debug("Handling HttpMediaTypeNotAcceptableException: {}", ex.getMessage());
+        return problems.of(ProblemInfo.forStatusAndTitle(Response.Status.NOT_ACCEPTABLE, ProblemResponses.NOT_ACCEPTABLE));
     }
 
     @ExceptionHandler
-    public ResponseEntity<ProblemInfo> catchAllOthers(Throwable th) {
-        // search for nested exception:
-        Throwable cause = th;
-        while (cause != null) {
+    public ResponseEntity<Object> catchAllOthers(Throwable th) {
+        // a single walk of the cause chain, a nested ConstraintViolationException wins over a DateTimeParseException
+        DateTimeParseException dateTimeParseException = null;
+        for (Throwable cause = th; cause != null; cause = cause.getCause()) {
             if (cause instanceof ConstraintViolationException cvex) {
-                log.debug("Catch all exceptions found nested ConstraintViolationException root cause", th);
+                log.debug("Catch all exceptions found nested ConstraintViolationException root cause");
                 return handle(cvex);
             }
-            // search for more interesting nested exceptions
-
-            cause = cause.getCause();
-        }
-        // DateTimeParseException
-        cause = th;
-        while (cause != null) {
-            if (cause instanceof DateTimeParseException inner) {
-                log.debug("Catch all exceptions found nested DateTimeParseException root cause", th);
-                return handle(inner);
+            if (dateTimeParseException == null && cause instanceof DateTimeParseException inner) {
+                dateTimeParseException = inner;
             }
-            // search for more interesting nested exceptions
-
-            cause = cause.getCause();
+        }
+        if (dateTimeParseException != null) {
+            log.debug("Catch all exceptions found nested DateTimeParseException root cause");
+            return handle(dateTimeParseException);
         }
         // search for other Spring Framework known exceptions...
 
         // catch all others....
         log.debug("Found unhandled exception", th);
-        return buildProblemResponse(ProblemInfo.builder().type(URI.create("about:blank"))
-                .status(500).title("Oops, We've tripped on a banana peel! We're on it").build());
+        return problems.of(UNHANDLED);
     }
 
-    private ResponseEntity<ProblemInfo> buildProblemResponse(ProblemInfo problem) {
-        return ResponseEntity.status(problem.getStatus()).body(problem);
-    }
-
-
 }
-
@@ -2,11 +2,17 @@ package org.acme.pricing.exception;
 
 import jakarta.ws.rs.core.Response;
 
+/**
+ * An error answered with the given status and message as the problem title.
+ * <p>
+ * It is a control flow signal to the {@link PlatformExceptionHandler}, not a diagnostic: no stack trace is captured
+ * and nothing can be suppressed. The underlying cause is logged where it is caught.
+ */
 public class PlatformHttpException extends RuntimeException {
     private final Response.Status httpStatus;
 
     public PlatformHttpException(String message, Response.Status httpStatus) {
-        super(message);
+        super(message, null, false, false);
         this.httpStatus = httpStatus;
     }
 
@@ -14,4 +20,4 @@ public class PlatformHttpException extends RuntimeException {
         return httpStatus;
     }
 
-}
\ No newline at end of file
+}
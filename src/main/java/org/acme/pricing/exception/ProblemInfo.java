@@ -117,5 +117,45 @@ public class ProblemInfo {
                 .errors(List.of(new ErrorInfo(ex.getMessage(), "date")))
                 .build();
     }
+
+    /**
+     * An immutable copy of the problem, to share between responses: its setters throw.
+     */
+    public static ProblemInfo constant(ProblemInfo problem) {
+        return new Constant(problem);
+    }
+
+    private static final class Constant extends ProblemInfo {
+
+        private Constant(ProblemInfo problem) {
+            super(problem.getTitle(), problem.getType(), problem.getStatus(), problem.getStatusPhrase(),
+                    problem.getErrors() != null ? List.copyOf(problem.getErrors()) : null);
+        }
+
+        @Override
+        public void setTitle(@Nullable String title) {
+            throw new UnsupportedOperationException("Constant problem");
+        }
+
+        @Override
+        public void setType(URI type) {
+            throw new UnsupportedOperationException("Constant problem");
+        }
+
+        @Override
+        public void setStatus(int status) {
+            throw new UnsupportedOperationException("Constant problem");
+        }
+
+        @Override
+        public void setStatusPhrase(String statusPhrase) {
+            throw new UnsupportedOperationException("Constant problem");
+        }
+
+        @Override
+        public void setErrors(@Nullable List<ErrorInfo> errors) {
+            throw new UnsupportedOperationException("Constant problem");
+        }
+    }
 }
 
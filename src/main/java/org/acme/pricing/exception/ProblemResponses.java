@@ -0,0 +1,83 @@
+package org.acme.pricing.exception;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Problem responses, with the JSON body of the known constant problems written once.
+ * <p>
+ * The problems of {@link #CONSTANT_PROBLEMS}, such as the 404 of an unknown price and the database failures, are
+ * serialized with the application ObjectMapper at startup and the immutable response, bytes and headers, is reused, so
+ * they cost neither a {@link ProblemInfo} nor a JSON write. The bytes are the ones Jackson writes for the
+ * {@link ProblemInfo}. Any other problem may carry per-request values, a row number or a limit, and is written per
+ * request.
+ */
+@Component
+@Slf4j
+public class ProblemResponses {
+
+    public static final String PRICE_NOT_FOUND = "Price not found for the given parameters";
+
+    public static final String DATABASE_FAILURE = "Failed to retrieve prices from the database";
+
+    public static final String DATABASE_BUSY = "Too many concurrent requests to the database";
+
+    public static final String NOT_ACCEPTABLE = "No acceptable representation for the Accept header";
+
+    public static final ProblemInfo PRICE_NOT_FOUND_PROBLEM = ProblemInfo.constant(
+            ProblemInfo.builder().status(404).title(PRICE_NOT_FOUND).build());
+
+    static final List<ProblemInfo> CONSTANT_PROBLEMS = List.of(
+            PRICE_NOT_FOUND_PROBLEM,
+            ProblemInfo.constant(ProblemInfo.forStatusAndTitle(Response.Status.INTERNAL_SERVER_ERROR, DATABASE_FAILURE)),
+            ProblemInfo.constant(ProblemInfo.forStatusAndTitle(Response.Status.SERVICE_UNAVAILABLE, DATABASE_BUSY)),
+            ProblemInfo.constant(ProblemInfo.forStatusAndTitle(Response.Status.NOT_ACCEPTABLE, NOT_ACCEPTABLE)),
+            PlatformExceptionHandler.UNHANDLED);
+
+    private final Map<ProblemInfo, ResponseEntity<Object>> responses;
+
+    private final ResponseEntity<Object> priceNotFound;
+
+    @Autowired
+    public ProblemResponses(ObjectMapper objectMapper) {
+        Map<ProblemInfo, ResponseEntity<Object>> responses = new HashMap<>();
+        for (ProblemInfo problem : CONSTANT_PROBLEMS) {
+            responses.put(problem, serialize(objectMapper, problem));
+        }
+        this.responses = Map.copyOf(responses);
+        this.priceNotFound = this.responses.get(PRICE_NOT_FOUND_PROBLEM);
+    }
+
+    /**
+     * The 404 of a lookup without a price.
+     */
+    public ResponseEntity<Object> priceNotFound() {
+        return priceNotFound;
+    }
+
+    public ResponseEntity<Object> of(ProblemInfo problem) {
+        ResponseEntity<Object> response = responses.get(problem);
+        return response != null ? response : ResponseEntity.status(problem.getStatus()).body(problem);
+    }
+
+    private static ResponseEntity<Object> serialize(ObjectMapper objectMapper, ProblemInfo problem) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(problem);
+            return ResponseEntity.status(problem.getStatus()).contentType(MediaType.APPLICATION_JSON).body(body);
+        } catch (JsonProcessingException e) {
+            log.debug("Problem serializing the problem response", e);
+            return ResponseEntity.status(problem.getStatus()).body(problem);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.acme.pricing.reactive;
+
+import io.r2dbc.spi.Row;
+import jakarta.ws.rs.core.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.data.TimeZones;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.acme.pricing.exception.ProblemResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * R2DBC counterpart of the SQL lookup of {@link org.acme.pricing.data.PriceDAO}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactivePriceDAO {
+
+    private static final String QUERY = "SELECT * " +
+            "FROM PRICES " +
+            "WHERE PRODUCT_ID = :productId" +
+            "  AND BRAND_ID = :brandId" +
+            "  AND START_AT <= :appliedAt" +
+            "  AND END_AT >= :appliedAt " +
+            "ORDER BY PRIORITY DESC " +
+            "LIMIT 1";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactivePriceDAO(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * @return the highest priority price or an empty Mono when there is none
+     */
+    public Mono<RatedPriceDTO> findPriceByDate(OffsetDateTime date, Integer productId, Integer brandId) {
+        return databaseClient.sql(QUERY)
+                .bind("productId", productId)
+                .bind("brandId", brandId)
+                .bind("appliedAt", date)
+                .map((row, metadata) -> mapRowToRatedPrice(row))
+                .first()
+                .onErrorMap(e -> !(e instanceof PlatformHttpException), e -> {
+                    log.debug("Problem executing the SQL statement", e);
+                    return new PlatformHttpException(ProblemResponses.DATABASE_FAILURE, Response.Status.INTERNAL_SERVER_ERROR);
+                });
+    }
+
+    private static RatedPriceDTO mapRowToRatedPrice(Row row) {
+        RatedPriceDTO ratedPrice = new RatedPriceDTO();
+        ratedPrice.setId(row.get("ID", UUID.class));
+        ratedPrice.setProductId(row.get("PRODUCT_ID", Integer.class));
+        ratedPrice.setBrandId(row.get("BRAND_ID", Integer.class));
+        ratedPrice.setRateListId(row.get("PRICE_LIST", Integer.class));
+        ratedPrice.setPrice(row.get("PRICE", BigDecimal.class));
+        ratedPrice.setCurrency(CurrencyEnum.valueOf(row.get("CURRENCY", String.class)));
+
+        // UTC instants normalized at write time, presented in the time zone of the row
+        ZoneId timeZone = TimeZones.of(row.get("TIME_ZONE", String.class));
+        ratedPrice.setAppliedStartAt(TimeZones.present(row.get("START_AT", OffsetDateTime.class).toInstant().toEpochMilli(), timeZone));
+        ratedPrice.setAppliedEndAt(TimeZones.present(row.get("END_AT", OffsetDateTime.class).toInstant().toEpochMilli(), timeZone));
+
+        return ratedPrice;
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.acme.pricing.reactive;
+
+import io.swagger.v3.oas.annotations.Parameter;
+import org.acme.pricing.exception.ProblemResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Non-blocking GET /api/prices/search-rates, same contract as {@link org.acme.pricing.api.PricesController}.
+ */
+@RestController
+@RequestMapping("/api/prices")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePricesController {
+
+    private final ReactivePriceDAO dao;
+
+    private final ProblemResponses problems;
+
+    @Autowired
+    public ReactivePricesController(ReactivePriceDAO dao, ProblemResponses problems) {
+        this.dao = dao;
+        this.problems = problems;
+    }
+
+    @GetMapping("/search-rates")
+    public Mono<ResponseEntity<Object>> searchRates(
+            @Parameter(example = "2020-07-08T10:00:00Z") OffsetDateTime appliedAt,
+            @Parameter(example = "35455") Integer productId,
+            @Parameter(example = "1") Integer brandId) {
+        return dao.findPriceByDate(appliedAt, productId, brandId)
+                .<ResponseEntity<Object>>map(ResponseEntity::ok)
+                .switchIfEmpty(Mono.fromSupplier(problems::priceNotFound));
+    }
+
+}
@@ -0,0 +1,31 @@
+package org.acme.pricing.reactive;
+
+import org.acme.pricing.config.JacksonObjectMapperCustomizer;
+import org.acme.pricing.exception.PlatformExceptionHandler;
+import org.acme.pricing.exception.ProblemResponses;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Non-blocking variant of the prices API: WebFlux on Netty event loops over R2DBC.
+ * <p>
+ * Started on its own, next to the servlet {@link org.acme.pricing.PricingApp}, with the "reactive" profile. It only
+ * scans this package and shares the DTOs, the Jackson setup and the problem responses of the servlet application.
+ */
+@Import({PlatformExceptionHandler.class, ProblemResponses.class, JacksonObjectMapperCustomizer.class})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+public class ReactivePricingApp {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactivePricingApp.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles("reactive")
+                .run(args);
+    }
+
+}
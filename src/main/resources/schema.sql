@@ -15,7 +15,44 @@ CREATE TABLE PRICES
 ALTER TABLE PRICES
     ADD COLUMN TIME_ZONE VARCHAR(255);
 
+-- UTC instants of START_DATE/END_DATE in TIME_ZONE, computed by a trigger when a row is written
+ALTER TABLE PRICES
+    ADD COLUMN START_AT TIMESTAMP WITH TIME ZONE;
+ALTER TABLE PRICES
+    ADD COLUMN END_AT TIMESTAMP WITH TIME ZONE;
+
+CREATE TRIGGER PRICES_UTC_INSTANTS BEFORE INSERT, UPDATE ON PRICES
+    FOR EACH ROW CALL 'org.acme.pricing.data.PriceInstantTrigger';
+
 CREATE INDEX IDX_PRODUCT_ID ON PRICES (PRODUCT_ID);
 CREATE INDEX IDX_BRAND_ID ON PRICES (BRAND_ID);
 CREATE INDEX IDX_START_DATE ON PRICES (START_DATE);
 CREATE INDEX IDX_END_DATE ON PRICES (END_DATE);
+CREATE INDEX IDX_START_AT ON PRICES (START_AT);
+CREATE INDEX IDX_END_AT ON PRICES (END_AT);
+
+CREATE TABLE PRICE_CHANGES
+(
+    SEQ        BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    PRODUCT_ID INT,
+    BRAND_ID   INT,
+    PRIMARY KEY (SEQ)
+);
+
+CREATE TRIGGER PRICES_CHANGE_FEED AFTER INSERT, UPDATE, DELETE ON PRICES
+    FOR EACH ROW CALL 'org.acme.pricing.data.PriceChangeTrigger';
+
+-- effective prices materialized at write time: the non-overlapping segments [START_AT, END_AT) of every
+-- product/brand with the ID of the winning PRICES row, rebuilt for the key of every written row
+CREATE TABLE PRICE_SEGMENTS
+(
+    PRODUCT_ID INT,
+    BRAND_ID   INT,
+    START_AT   TIMESTAMP WITH TIME ZONE,
+    END_AT     TIMESTAMP WITH TIME ZONE,
+    PRICE_ID   UUID,
+    PRIMARY KEY (PRODUCT_ID, BRAND_ID, END_AT)
+);
+
+CREATE TRIGGER PRICES_SEGMENTS AFTER INSERT, UPDATE, DELETE ON PRICES
+    FOR EACH ROW CALL 'org.acme.pricing.data.PriceSegmentTrigger';
@@ -0,0 +1,64 @@
+package org.acme.pricing;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import org.acme.pricing.config.StartupReport;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.dto.StartupReportDTO;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The faststart profile, started like {@link PricingApp#main} does rather than as a test context.
+ */
+class PricingAppStartupTest {
+
+    /**
+     * Optional bound on the time from the application start until the first search-rates answered with a price, an
+     * ISO-8601 duration such as PT14S. Only set it on a machine whose startup time is known, the bound means nothing
+     * elsewhere: mvn test -Dtest=PricingAppStartupTest -Dpricing.startup.max-first-search-rates=PT14S
+     */
+    private static final String MAX_FIRST_SEARCH_RATES = "pricing.startup.max-first-search-rates";
+
+    @Test
+    void shouldServeTheFirstSearchRatesAfterAFastStart() {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = PricingApp.application()
+                .run("--spring.profiles.active=faststart", "--server.port=0")) {
+
+            assertTrue(context.getBeanFactory().containsSingleton("priceDAO"));
+            assertTrue(context.getBeanFactory().containsSingleton("pricesController"));
+            assertFalse(context.getBeanFactory().containsSingleton("priceImporter"));
+            assertEquals(0, context.getBeanNamesForType(Server.class).length);
+            assertEquals(0, context.getBeanNamesForType(OpenAPI.class).length);
+
+            ResponseEntity<RatedPriceDTO> response = new TestRestTemplate().getForEntity(URI.create(
+                    "http://localhost:" + context.getEnvironment().getProperty("local.server.port") +
+                            "/api/prices/search-rates?appliedAt=2020-06-14T16:00:00%2B02:00&productId=35455&brandId=1"),
+                    RatedPriceDTO.class);
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+
+            StartupReportDTO report = context.getBean(StartupReport.class).report(10);
+            assertTrue(report.isLazyInitialization());
+            assertTrue(report.getProfiles().contains("faststart"));
+            assertNotNull(report.getFirstSearchRatesMillis());
+            assertTrue(report.getRefreshedMillis() <= report.getFirstSearchRatesMillis());
+            assertTrue(report.getFirstSearchRatesMillis() <= elapsed.toMillis(), report + " vs " + elapsed);
+            assertEquals(10, report.getSlowestSteps().size());
+            String bound = System.getProperty(MAX_FIRST_SEARCH_RATES);
+            if (bound != null) {
+                assertTrue(elapsed.compareTo(Duration.parse(bound)) < 0, "first search-rates after " + elapsed);
+            }
+        }
+    }
+
+}
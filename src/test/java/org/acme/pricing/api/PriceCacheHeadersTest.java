@@ -0,0 +1,70 @@
+package org.acme.pricing.api;
+
+import org.acme.pricing.data.PriceAt;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceCacheHeadersTest {
+
+    private static final long NOW = OffsetDateTime.parse("2020-06-14T10:00:00+02:00").toInstant().toEpochMilli();
+
+    @Test
+    void shouldCacheUntilTheSegmentEndsCappedByTheMaxAge() {
+        RatedPriceDTO price = price();
+        assertEquals("max-age=90, public", PriceCacheHeaders.cacheControl(new PriceAt(price, NOW + 90_500), NOW, 300).getHeaderValue());
+        assertEquals("max-age=300, public", PriceCacheHeaders.cacheControl(new PriceAt(price, NOW + 3_600_000), NOW, 300).getHeaderValue());
+        assertEquals("max-age=0, public", PriceCacheHeaders.cacheControl(new PriceAt(price, NOW + 999), NOW, 300).getHeaderValue());
+        // a lookup in the past
+        assertEquals("max-age=300, public", PriceCacheHeaders.cacheControl(new PriceAt(price, NOW - 1), NOW, 300).getHeaderValue());
+        assertEquals("no-cache", PriceCacheHeaders.cacheControl(new PriceAt(price, PriceAt.UNKNOWN), NOW, 300).getHeaderValue());
+    }
+
+    @Test
+    void shouldChangeTheEtagWithAnyField() {
+        String etag = PriceCacheHeaders.etag(price(), false);
+        assertTrue(etag.matches("\"[0-9a-f]+\""), etag);
+        assertEquals(etag, PriceCacheHeaders.etag(price(), false));
+
+        RatedPriceDTO changed = price();
+        changed.setPrice(new BigDecimal("35.5"));
+        assertNotEquals(etag, PriceCacheHeaders.etag(changed, false));
+        changed = price();
+        changed.setAppliedStartAt(OffsetDateTime.parse("2020-06-14T08:00:00Z"));
+        assertNotEquals(etag, PriceCacheHeaders.etag(changed, false));
+        changed = price();
+        changed.setRateListId(2);
+        assertNotEquals(etag, PriceCacheHeaders.etag(changed, false));
+        changed = price();
+        changed.setCurrency(null);
+        assertNotEquals(etag, PriceCacheHeaders.etag(changed, false));
+    }
+
+    @Test
+    void shouldTagEveryRepresentationApart() {
+        String json = PriceCacheHeaders.etag(price(), false);
+        String binary = PriceCacheHeaders.etag(price(), true);
+        assertTrue(binary.matches("\"[0-9a-f]+\""), binary);
+        assertNotEquals(json, binary);
+        assertEquals(binary, PriceCacheHeaders.etag(price(), true));
+    }
+
+    private static RatedPriceDTO price() {
+        RatedPriceDTO price = new RatedPriceDTO();
+        price.setId(UUID.fromString("6b1f8d2e-2f0a-4f7e-9a53-2f0c3c1b7d10"));
+        price.setProductId(35455);
+        price.setBrandId(1);
+        price.setRateListId(1);
+        price.setAppliedStartAt(OffsetDateTime.parse("2020-06-14T00:00:00+02:00"));
+        price.setAppliedEndAt(OffsetDateTime.parse("2020-12-31T23:59:59+02:00"));
+        price.setPrice(new BigDecimal("35.50"));
+        price.setCurrency(CurrencyEnum.EUR);
+        return price;
+    }
+}
@@ -0,0 +1,87 @@
+package org.acme.pricing.api;
+
+import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.exception.ProblemInfo;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The API in the SQL lookup mode, where every lookup hits the database, so a database problem reaches the client.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+// its own database, which it wipes, and no H2 server, the port is taken by the context of PricesControllerTest
+@TestPropertySource(properties = {"pricing.lookup.mode=SQL", "spring.datasource.url=jdbc:h2:mem:pricing_sql_test",
+        "h2.server.enabled=false"})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Slf4j
+class PricesControllerDatabaseProblemTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    @Order(value = 1)
+    void shouldNotCacheAPriceOfUnknownValidity() {
+        ResponseEntity<RatedPriceDTO> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/search-rates?appliedAt={appliedAt}&productId={productId}&brandId={brandId}"),
+                RatedPriceDTO.class, "2020-06-14T16:00:00+02:00", 35455, 1);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getHeaders().getETag());
+        // the SQL lookup mode does not know until when the price holds
+        assertEquals("no-cache", response.getHeaders().getCacheControl());
+    }
+
+    /**
+     * Needs to run last because it wipes the DB.
+     */
+    @Test
+    @Order(value = 999)
+    void shouldReturn500_DatabaseProblem() {
+        Integer brandId = 1;
+        Integer productId = 1;
+        String appliedAt = "2020-06-15T10:00:00Z";
+
+        new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS;");
+
+        ResponseEntity<ProblemInfo> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/search-rates?appliedAt={appliedAt}&productId={productId}&brandId={brandId}"),
+                ProblemInfo.class, appliedAt, productId, brandId);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertNotNull(response.getBody());
+
+        ProblemInfo error = response.getBody();
+        assertNotNull(error);
+        assertNotNull(error.getTitle());
+        log.debug("Problem: " + error.getTitle());
+    }
+
+    private String createURLWithPort(String uri) {
+        return "http://localhost:" + port + uri;
+    }
+}
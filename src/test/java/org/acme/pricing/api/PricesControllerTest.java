@@ -1,36 +1,50 @@
 package org.acme.pricing.api;
 
-import jakarta.ws.rs.core.Response;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.acme.pricing.config.RatedPriceBinaryConverter;
+import org.acme.pricing.dto.PriceImportReportDTO;
+import org.acme.pricing.dto.PriceLookupDTO;
+import org.acme.pricing.dto.PriceSegmentDTO;
+import org.acme.pricing.dto.PriceLookupResultDTO;
+import org.acme.pricing.dto.PriceSegmentsReportDTO;
+import org.acme.pricing.dto.PriceTraceDTO;
 import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.dto.StartupReportDTO;
 import org.acme.pricing.exception.ErrorInfo;
-import org.acme.pricing.exception.PlatformHttpException;
 import org.acme.pricing.exception.ProblemInfo;
+import org.acme.pricing.exception.ProblemResponses;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 
-import javax.sql.DataSource;
 import java.math.BigDecimal;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
 @ActiveProfiles("test")
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @Slf4j
@@ -43,7 +57,7 @@ class PricesControllerTest {
     private TestRestTemplate restTemplate;
 
     @Autowired
-    private DataSource dataSource;
+    private ObjectMapper objectMapper;
 
     /**
      * Test 1: petición a las 10:00 del día 14/jun/2020 del producto 35455 para la brand 1
@@ -218,42 +232,287 @@ class PricesControllerTest {
         log.debug("Problem: " + error.getTitle());
     }
 
-    /**
-     * Needs order and needs to run last because it wipes the DB which would impact other tests.
-     */
     @Test
-    @Order(value = 999)
-    void shouldReturn500_DatabaseProblem() {
-        Integer brandId = 1;
-        Integer productId = 1;
-        String appliedAt = "2020-06-15T10:00:00Z";
+    @Order(value = 8)
+    void shouldResolveBatchInOrder() {
+        List<PriceLookupDTO> lookups = Arrays.asList(
+                new PriceLookupDTO(OffsetDateTime.parse("2020-06-16T21:00:00+02:00"), 35455, 1),
+                new PriceLookupDTO(OffsetDateTime.parse("2020-06-15T10:00:00+02:00"), 1, 1),
+                new PriceLookupDTO(OffsetDateTime.parse("2020-06-15T10:00:00+02:00"), 35455, 1),
+                new PriceLookupDTO(null, 35455, 1),
+                new PriceLookupDTO(OffsetDateTime.parse("2020-06-14T10:00:00+02:00"), 35455, 1));
+        ResponseEntity<PriceLookupResultDTO[]> response = restTemplate.postForEntity(
+                createURLWithPort("/api/prices/search-rates/batch"), lookups, PriceLookupResultDTO[].class);
 
-        dropAllDbObjects();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        PriceLookupResultDTO[] results = response.getBody();
+        assertNotNull(results);
+        assertEquals(lookups.size(), results.length);
+
+        assertEquals(200, results[0].getStatus());
+        assertThat(BigDecimal.valueOf(38.95), Matchers.comparesEqualTo(results[0].getPrice().getPrice()));
+        assertEquals(404, results[1].getStatus());
+        assertNotNull(results[1].getProblem());
+        assertEquals(200, results[2].getStatus());
+        assertThat(BigDecimal.valueOf(30.5), Matchers.comparesEqualTo(results[2].getPrice().getPrice()));
+        assertEquals(400, results[3].getStatus());
+        assertNull(results[3].getPrice());
+        assertEquals(200, results[4].getStatus());
+        assertThat(BigDecimal.valueOf(35.5), Matchers.comparesEqualTo(results[4].getPrice().getPrice()));
+    }
 
-        ResponseEntity<ProblemInfo> response = restTemplate.getForEntity(
-                createURLWithPort("/api/prices/search-rates?appliedAt={appliedAt}&productId={productId}&brandId={brandId}"),
-                ProblemInfo.class, appliedAt, productId, brandId);
+    @Test
+    @Order(value = 9)
+    void shouldReturn400_OnOversizedBatch() {
+        List<PriceLookupDTO> lookups = Collections.nCopies(1001,
+                new PriceLookupDTO(OffsetDateTime.parse("2020-06-16T21:00:00+02:00"), 35455, 1));
+        ResponseEntity<ProblemInfo> response = restTemplate.postForEntity(
+                createURLWithPort("/api/prices/search-rates/batch"), lookups, ProblemInfo.class);
 
-        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertNotNull(response.getBody());
+        assertNotNull(response.getBody().getTitle());
+    }
 
-        ProblemInfo error = response.getBody();
-        assertNotNull(error);
-        assertNotNull(error.getTitle());
-        log.debug("Problem: " + error.getTitle());
+    @Test
+    @Order(value = 10)
+    void shouldExposeStageMetricsForPrometheus() {
+        ResponseEntity<String> response = restTemplate.getForEntity(createURLWithPort("/actuator/prometheus"), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String metrics = response.getBody();
+        assertNotNull(metrics);
+        assertThat(metrics, Matchers.containsString("pricing_dao_connection_seconds_bucket{statement=\"single\""));
+        assertThat(metrics, Matchers.containsString("pricing_dao_query_seconds_bucket{statement=\"batch\""));
+        assertThat(metrics, Matchers.containsString("pricing_dao_mapping_seconds_count{statement=\"single\""));
+        assertThat(metrics, Matchers.containsString("pricing_api_serialization_seconds_count{type=\"RatedPriceDTO\""));
+        assertThat(metrics, Matchers.containsString("pricing_api_requests_total{endpoint=\"searchRates\",status=\"200\""));
+        assertThat(metrics, Matchers.containsString("pricing_api_requests_total{endpoint=\"searchRates\",status=\"404\""));
+        assertThat(metrics, Matchers.containsString("hikaricp_connections_active"));
+        assertThat(metrics, Matchers.containsString("pricing_single_flight_calls_total{flight=\"sql\",outcome=\"load\""));
+        assertThat(metrics, Matchers.containsString("pricing_single_flight_dedup_ratio{flight=\"sql\""));
+    }
+
+    @Test
+    @Order(value = 11)
+    void shouldImportNdjsonPricesForTheSearch() {
+        String body = "{\"brandId\": 2, \"productId\": 99999, \"priceList\": 1, \"priority\": 0, \"startDate\": \"2020-06-14 00:00:00\", " +
+                "\"endDate\": \"2020-12-31 23:59:59\", \"price\": 12.30, \"currency\": \"USD\", \"timeZone\": \"America/New_York\"}\n" +
+                "{\"brandId\": 2, \"productId\": 99999, \"priceList\": 2, \"priority\": 1, \"startDate\": \"2020-06-14 00:00:00\", " +
+                "\"endDate\": \"2020-12-31 23:59:59\", \"price\": 12.30, \"currency\": \"XXX\", \"timeZone\": \"UTC\"}\n";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        ResponseEntity<PriceImportReportDTO> response = restTemplate.postForEntity(createURLWithPort("/api/prices/import"),
+                new HttpEntity<>(body, headers), PriceImportReportDTO.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(1, response.getBody().getImported());
+        assertEquals(1, response.getBody().getRejected());
+
+        ResponseEntity<RatedPriceDTO> price = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/search-rates?appliedAt={appliedAt}&productId={productId}&brandId={brandId}"),
+                RatedPriceDTO.class, "2020-06-14T04:00:00Z", 99999, 2);
+        assertEquals(HttpStatus.OK, price.getStatusCode());
+        assertNotNull(price.getBody());
+        assertEquals(OffsetDateTime.parse("2020-06-14T00:00:00-04:00"), price.getBody().getAppliedStartAt());
     }
 
-    private void dropAllDbObjects() {
-        String query = "DROP ALL OBJECTS;";
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new PlatformHttpException("Failed to retrieve prices from the database", Response.Status.INTERNAL_SERVER_ERROR);
+    @Test
+    @Order(value = 12)
+    void shouldStreamThePriceTimeline() throws Exception {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/timeline?productId={productId}&brandId={brandId}&from={from}&to={to}"),
+                String.class, 35455, 1, "2020-06-14T00:00:00+02:00", "2020-06-16T00:00:00+02:00");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getHeaders().getContentType().toString());
+        assertNotNull(response.getBody());
+        List<PriceSegmentDTO> segments = new ArrayList<>();
+        for (String line : response.getBody().split("\n")) {
+            segments.add(objectMapper.readValue(line, PriceSegmentDTO.class));
         }
 
+        assertEquals(List.of(1, 2, 1, 3, 1, 4), segments.stream().map(segment -> segment.getPrice().getRateListId()).toList());
+        assertEquals(OffsetDateTime.parse("2020-06-14T00:00:00+02:00"), segments.get(0).getStartAt());
+        assertEquals(OffsetDateTime.parse("2020-06-14T15:00:00+02:00"), segments.get(0).getEndAt());
+        assertEquals(OffsetDateTime.parse("2020-06-14T18:30:00.001+02:00"), segments.get(1).getEndAt());
+        assertEquals(OffsetDateTime.parse("2020-06-16T00:00:00+02:00"), segments.get(5).getEndAt());
     }
 
+    @Test
+    @Order(value = 13)
+    void shouldReturn400_OnInvertedTimelineRange() {
+        ResponseEntity<ProblemInfo> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/timeline?productId={productId}&brandId={brandId}&from={from}&to={to}"),
+                ProblemInfo.class, 35455, 1, "2020-06-16T00:00:00+02:00", "2020-06-14T00:00:00+02:00");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("from must be before to", response.getBody().getTitle());
+    }
+
+    @Test
+    @Order(value = 14)
+    void shouldAnswerAConditionalSearchWithNotModified() {
+        String url = createURLWithPort("/api/prices/search-rates?appliedAt={appliedAt}&productId={productId}&brandId={brandId}");
+        ResponseEntity<RatedPriceDTO> response = restTemplate.getForEntity(url, RatedPriceDTO.class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String etag = response.getHeaders().getETag();
+        assertNotNull(etag);
+        // the price ended in 2020, cached for the configured max age, not its remaining validity
+        assertEquals("max-age=300, public", response.getHeaders().getCacheControl());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<String> conditional = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(HttpStatus.NOT_MODIFIED, conditional.getStatusCode());
+        assertNull(conditional.getBody());
+        assertEquals(etag, conditional.getHeaders().getETag());
+
+        headers.setIfNoneMatch("\"0\"");
+        ResponseEntity<RatedPriceDTO> changed = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers),
+                RatedPriceDTO.class, "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotNull(changed.getBody());
+        assertEquals(2, changed.getBody().getRateListId());
+    }
+
+    @Test
+    @Order(value = 15)
+    void shouldStreamThePriceBoardOfABrand() throws Exception {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/board?brandId={brandId}&appliedAt={appliedAt}"),
+                String.class, 2, "2020-06-14T16:00:00+02:00");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getHeaders().getContentType().toString());
+        assertNotNull(response.getBody());
+        String[] lines = response.getBody().split("\n");
+        assertEquals(1, lines.length);
+        RatedPriceDTO price = objectMapper.readValue(lines[0], RatedPriceDTO.class);
+        assertEquals(99999, price.getProductId());
+        assertEquals(1, price.getRateListId());
+
+        // the current board, nothing is priced any more
+        ResponseEntity<String> current = restTemplate.getForEntity(createURLWithPort("/api/prices/board?brandId={brandId}"),
+                String.class, 1);
+        assertEquals(HttpStatus.OK, current.getStatusCode());
+        assertNull(current.getBody());
+    }
+
+    @Test
+    @Order(value = 16)
+    void shouldCheckAndRebuildThePriceSegments() {
+        ResponseEntity<PriceSegmentsReportDTO> check = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/segments/check"), PriceSegmentsReportDTO.class);
+        assertEquals(HttpStatus.OK, check.getStatusCode());
+        assertNotNull(check.getBody());
+        assertEquals(0, check.getBody().getInconsistentKeys());
+        assertFalse(check.getBody().isRebuilt());
+
+        ResponseEntity<PriceSegmentsReportDTO> rebuilt = restTemplate.postForEntity(
+                createURLWithPort("/api/prices/segments/rebuild"), null, PriceSegmentsReportDTO.class);
+        assertEquals(HttpStatus.OK, rebuilt.getStatusCode());
+        assertNotNull(rebuilt.getBody());
+        assertTrue(rebuilt.getBody().isRebuilt());
+        assertEquals(check.getBody().getSegments(), rebuilt.getBody().getSegments());
+    }
+
+    @Test
+    @Order(value = 17)
+    void shouldReturnTheRecentRequestTraces() {
+        restTemplate.getForEntity(
+                createURLWithPort("/api/prices/timeline?productId={productId}&brandId={brandId}&from={from}&to={to}"),
+                String.class, 35455, 1, "2020-06-14T00:00:00Z", "2020-06-15T00:00:00Z");
+
+        // every request is sampled in the tests, the newest one first
+        ResponseEntity<PriceTraceDTO[]> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/traces?limit={limit}"), PriceTraceDTO[].class, 5);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        PriceTraceDTO trace = response.getBody()[0];
+        assertTrue(trace.getUri().startsWith("/api/prices/timeline?productId=35455"));
+        assertEquals(200, trace.getStatus());
+        assertEquals(1, trace.getStatements().size());
+        assertTrue(trace.getStatements().get(0).getSql().contains("FROM PRICES"));
+        assertEquals(List.of("35455", "1"), trace.getStatements().get(0).getParameters().subList(0, 2));
+
+        ResponseEntity<ProblemInfo> invalid = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/traces?limit={limit}"), ProblemInfo.class, 0);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+
+    @Test
+    @Order(value = 18)
+    void shouldNegotiateTheBinaryRepresentation() {
+        String url = createURLWithPort("/api/prices/search-rates?appliedAt={appliedAt}&productId={productId}&brandId={brandId}");
+        ResponseEntity<RatedPriceDTO> json = restTemplate.getForEntity(url, RatedPriceDTO.class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(RatedPriceBinaryConverter.MEDIA_TYPE));
+        ResponseEntity<byte[]> binary = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(HttpStatus.OK, binary.getStatusCode());
+        assertEquals(RatedPriceBinaryConverter.MEDIA_TYPE, binary.getHeaders().getContentType());
+        assertEquals(List.of(HttpHeaders.ACCEPT), binary.getHeaders().getVary());
+        assertNotNull(binary.getBody());
+        assertEquals(json.getBody(), RatedPriceBinaryConverter.read(binary.getBody(), binary.getBody().length));
+        String etag = binary.getHeaders().getETag();
+        assertNotEquals(json.getHeaders().getETag(), etag);
+
+        // the ETag of one representation does not validate the other
+        headers.setIfNoneMatch(json.getHeaders().getETag());
+        ResponseEntity<byte[]> other = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(HttpStatus.OK, other.getStatusCode());
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<byte[]> conditional = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(HttpStatus.NOT_MODIFIED, conditional.getStatusCode());
+
+        // JSON stays the default, and a missing price is still a JSON problem
+        headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.ALL));
+        ResponseEntity<String> wildcard = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class,
+                "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(MediaType.APPLICATION_JSON, wildcard.getHeaders().getContentType());
+        headers.setAccept(List.of(RatedPriceBinaryConverter.MEDIA_TYPE));
+        ResponseEntity<String> notFound = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class,
+                "2020-06-14T16:00:00+02:00", 1, 1);
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, notFound.getHeaders().getContentType());
+
+        // a malformed Accept is not acceptable rather than a server error
+        headers.set(HttpHeaders.ACCEPT, RatedPriceBinaryConverter.MEDIA_TYPE_VALUE + ";q=x");
+        ResponseEntity<ProblemInfo> malformed = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers),
+                ProblemInfo.class, "2020-06-14T16:00:00+02:00", 35455, 1);
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, malformed.getStatusCode());
+        assertNotNull(malformed.getBody());
+        assertEquals(ProblemResponses.NOT_ACCEPTABLE, malformed.getBody().getTitle());
+    }
+
+    @Test
+    @Order(value = 19)
+    void shouldReportTheStartupTimeline() {
+        ResponseEntity<StartupReportDTO> response = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/startup"), StartupReportDTO.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        StartupReportDTO report = response.getBody();
+        assertNotNull(report);
+        assertNotNull(report.getReadyMillis());
+        assertNotNull(report.getFirstSearchRatesMillis());
+        assertTrue(report.getRefreshedMillis() <= report.getReadyMillis());
+        assertFalse(report.isLazyInitialization());
+
+        ResponseEntity<ProblemInfo> invalid = restTemplate.getForEntity(
+                createURLWithPort("/api/prices/startup?limit={limit}"), ProblemInfo.class, 0);
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
 
     private String createURLWithPort(String uri) {
         return "http://localhost:" + port + uri;
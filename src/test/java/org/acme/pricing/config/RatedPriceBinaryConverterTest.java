@@ -0,0 +1,135 @@
+package org.acme.pricing.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A decoded price must equal the encoded one, offsets and scales included.
+ */
+class RatedPriceBinaryConverterTest {
+
+    @Test
+    void shouldEncodeTheSeedPriceInAFractionOfTheJson() throws IOException {
+        RatedPriceDTO price = new RatedPriceDTO();
+        price.setId(UUID.fromString("0d9ab78f-fd55-42c1-bbaf-542abcde5678"));
+        price.setProductId(35455);
+        price.setBrandId(1);
+        price.setRateListId(2);
+        price.setAppliedStartAt(OffsetDateTime.parse("2020-06-14T15:00:00+02:00"));
+        price.setAppliedEndAt(OffsetDateTime.parse("2020-06-14T18:30:00Z"));
+        price.setPrice(new BigDecimal("25.45"));
+        price.setCurrency(CurrencyEnum.EUR);
+
+        byte[] binary = assertRoundTrip(price);
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        RatedPriceJsonConverter.write(price, json);
+        // version, flags, id, three ints, two dates, scale and unscaled price, currency
+        assertEquals(1 + 2 + 16 + 12 + 24 + 9 + 4, binary.length);
+        assertTrue(binary.length * 3 <= json.size(), binary.length + " vs " + json.size());
+
+        assertArrayEquals(new byte[]{RatedPriceBinaryConverter.VERSION, 0, 0}, assertRoundTrip(new RatedPriceDTO()));
+    }
+
+    @RepeatedTest(20)
+    void shouldDecodeRandomPricesToTheEncodedOnes() throws IOException {
+        Random random = new Random();
+        long seed = random.nextLong();
+        random.setSeed(seed);
+
+        for (int i = 0; i < 500; i++) {
+            RatedPriceDTO price = new RatedPriceDTO();
+            price.setId(random.nextInt(10) > 0 ? new UUID(random.nextLong(), random.nextLong()) : null);
+            price.setProductId(random.nextInt(10) > 0 ? random.nextInt() : null);
+            price.setBrandId(random.nextInt(10) > 0 ? random.nextInt(1000) : null);
+            price.setRateListId(random.nextInt(10) > 0 ? random.nextInt(10) - 5 : null);
+            price.setAppliedStartAt(random.nextInt(10) > 0 ? dateTime(random) : null);
+            price.setAppliedEndAt(random.nextInt(10) > 0 ? dateTime(random) : null);
+            price.setPrice(random.nextInt(10) > 0 ? decimal(random) : null);
+            price.setCurrency(random.nextInt(10) > 0 ? CurrencyEnum.values()[random.nextInt(CurrencyEnum.values().length)] : null);
+
+            assertRoundTrip(price);
+        }
+    }
+
+    @Test
+    void shouldRejectOtherVersionsAndTruncatedOrTrailingBytes() {
+        RatedPriceDTO price = new RatedPriceDTO();
+        price.setProductId(35455);
+        byte[] buffer = new byte[64];
+        int length = RatedPriceBinaryConverter.write(price, buffer);
+        assertEquals(price, RatedPriceBinaryConverter.read(buffer, length));
+
+        assertThrows(IllegalArgumentException.class, () -> RatedPriceBinaryConverter.read(buffer, length + 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> RatedPriceBinaryConverter.read(Arrays.copyOf(buffer, length - 1), length - 1));
+        buffer[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> RatedPriceBinaryConverter.read(buffer, length));
+    }
+
+    @Test
+    void shouldOnlyBePreferredWhenAskedForAboveJson() {
+        assertFalse(RatedPriceBinaryConverter.isPreferred(null));
+        assertFalse(RatedPriceBinaryConverter.isPreferred("*/*"));
+        assertFalse(RatedPriceBinaryConverter.isPreferred("application/json"));
+        assertTrue(RatedPriceBinaryConverter.isPreferred("application/vnd.acme.rated-price"));
+        assertTrue(RatedPriceBinaryConverter.isPreferred("application/json, application/vnd.acme.rated-price"));
+        assertTrue(RatedPriceBinaryConverter.isPreferred("application/vnd.acme.rated-price, application/json;q=0.5"));
+        assertFalse(RatedPriceBinaryConverter.isPreferred("application/vnd.acme.rated-price;q=0.5, */*"));
+        assertFalse(RatedPriceBinaryConverter.isPreferred("application/vnd.acme.rated-price;q=0"));
+        assertFalse(RatedPriceBinaryConverter.isPreferred("application/vnd.acme.rated-price;q=x"));
+
+        RatedPriceBinaryConverter converter = new RatedPriceBinaryConverter(new SimpleMeterRegistry());
+        assertTrue(converter.canWrite(RatedPriceDTO.class, RatedPriceBinaryConverter.MEDIA_TYPE));
+        assertTrue(converter.canRead(RatedPriceDTO.class, RatedPriceBinaryConverter.MEDIA_TYPE));
+        assertFalse(converter.canWrite(RatedPriceDTO.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Object.class, RatedPriceBinaryConverter.MEDIA_TYPE));
+    }
+
+    private static OffsetDateTime dateTime(Random random) {
+        LocalDateTime local = LocalDateTime.of(1970 + random.nextInt(100), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60));
+        if (random.nextBoolean()) {
+            local = local.withNano(random.nextInt(1_000_000_000));
+        }
+        ZoneOffset offset = switch (random.nextInt(3)) {
+            case 0 -> ZoneOffset.UTC;
+            case 1 -> ZoneOffset.ofHours(random.nextInt(27) - 12);
+            default -> ZoneOffset.ofTotalSeconds(random.nextInt(18 * 3600) * (random.nextBoolean() ? 1 : -1));
+        };
+        return OffsetDateTime.of(local, offset);
+    }
+
+    private static BigDecimal decimal(Random random) {
+        return switch (random.nextInt(5)) {
+            case 0 -> BigDecimal.valueOf(random.nextInt(100000), 2);
+            case 1 -> BigDecimal.valueOf(random.nextLong(), random.nextInt(20));
+            case 2 -> BigDecimal.valueOf(random.nextInt(1000) - 500, random.nextInt(12) - 2);
+            case 3 -> new BigDecimal(new BigInteger(100, random).negate(), random.nextInt(400) - 200);
+            default -> BigDecimal.valueOf(random.nextInt(10), 2 + random.nextInt(10));
+        };
+    }
+
+    private static byte[] assertRoundTrip(RatedPriceDTO price) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RatedPriceBinaryConverter.write(price, out);
+        byte[] bytes = out.toByteArray();
+        assertEquals(price, RatedPriceBinaryConverter.read(bytes, bytes.length));
+        return bytes;
+    }
+}
@@ -0,0 +1,122 @@
+package org.acme.pricing.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The converter output must be the bytes the application ObjectMapper writes.
+ */
+class RatedPriceJsonConverterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = objectMapper();
+
+    @Test
+    void shouldWriteTheSeedPriceLikeJackson() throws IOException {
+        RatedPriceDTO price = new RatedPriceDTO();
+        price.setId(UUID.fromString("0d9ab78f-fd55-42c1-bbaf-542abcde5678"));
+        price.setProductId(35455);
+        price.setBrandId(1);
+        price.setRateListId(2);
+        price.setAppliedStartAt(OffsetDateTime.parse("2020-06-14T15:00:00+02:00"));
+        price.setAppliedEndAt(OffsetDateTime.parse("2020-06-14T18:30:00Z"));
+        price.setPrice(new BigDecimal("25.45"));
+        price.setCurrency(CurrencyEnum.EUR);
+
+        assertSameJson(price);
+        assertSameJson(new RatedPriceDTO());
+    }
+
+    @RepeatedTest(20)
+    void shouldWriteRandomPricesLikeJackson() throws IOException {
+        Random random = new Random();
+        long seed = random.nextLong();
+        random.setSeed(seed);
+
+        for (int i = 0; i < 500; i++) {
+            RatedPriceDTO price = new RatedPriceDTO();
+            price.setId(random.nextInt(10) > 0 ? new UUID(random.nextLong(), random.nextLong()) : null);
+            price.setProductId(random.nextInt(10) > 0 ? random.nextInt() : null);
+            price.setBrandId(random.nextInt(10) > 0 ? random.nextInt(1000) : null);
+            price.setRateListId(random.nextInt(10) > 0 ? random.nextInt(10) - 5 : null);
+            price.setAppliedStartAt(random.nextInt(10) > 0 ? dateTime(random) : null);
+            price.setAppliedEndAt(random.nextInt(10) > 0 ? dateTime(random) : null);
+            price.setPrice(random.nextInt(10) > 0 ? decimal(random) : null);
+            price.setCurrency(random.nextInt(10) > 0 ? CurrencyEnum.values()[random.nextInt(CurrencyEnum.values().length)] : null);
+
+            assertSameJson(price, "seed=" + seed);
+        }
+    }
+
+    @Test
+    void shouldOnlyWriteRatedPrices() {
+        RatedPriceJsonConverter converter = new RatedPriceJsonConverter(new SimpleMeterRegistry());
+
+        assertTrue(converter.canWrite(RatedPriceDTO.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Object.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(RatedPriceDTO.class, MediaType.APPLICATION_JSON));
+    }
+
+    private static OffsetDateTime dateTime(Random random) {
+        int year = random.nextInt(20) == 0 ? 9990 + random.nextInt(20) : 1970 + random.nextInt(100);
+        LocalDateTime local = LocalDateTime.of(year, 1 + random.nextInt(12), 1 + random.nextInt(28),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60));
+        switch (random.nextInt(4)) {
+            case 0 -> local = local.withNano(random.nextInt(1_000_000_000));
+            case 1 -> local = local.withNano(random.nextInt(1000) * 1_000_000);
+            default -> {
+                // whole seconds, like the stored prices
+            }
+        }
+        ZoneOffset offset = switch (random.nextInt(4)) {
+            case 0 -> ZoneOffset.UTC;
+            case 1 -> ZoneOffset.ofHours(random.nextInt(27) - 12);
+            case 2 -> ZoneOffset.ofHoursMinutes(5, 45);
+            default -> ZoneOffset.ofTotalSeconds(random.nextInt(18 * 3600) * (random.nextBoolean() ? 1 : -1));
+        };
+        return OffsetDateTime.of(local, offset);
+    }
+
+    private static BigDecimal decimal(Random random) {
+        return switch (random.nextInt(5)) {
+            case 0 -> BigDecimal.valueOf(random.nextInt(100000), 2);
+            case 1 -> BigDecimal.valueOf(random.nextLong(), random.nextInt(20));
+            case 2 -> BigDecimal.valueOf(random.nextInt(1000) - 500, random.nextInt(12) - 2);
+            case 3 -> new BigDecimal(new BigInteger(100, random), random.nextInt(40) - 10);
+            default -> BigDecimal.valueOf(random.nextInt(10), 2 + random.nextInt(10));
+        };
+    }
+
+    private static void assertSameJson(RatedPriceDTO price) throws IOException {
+        assertSameJson(price, "");
+    }
+
+    private static void assertSameJson(RatedPriceDTO price, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RatedPriceJsonConverter.write(price, out);
+        assertEquals(OBJECT_MAPPER.writeValueAsString(price), out.toString(), message);
+    }
+
+    private static ObjectMapper objectMapper() {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonObjectMapperCustomizer().customize(builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,53 @@
+package org.acme.pricing.data;
+
+import org.acme.pricing.exception.PlatformHttpException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseCallLimiterTest {
+
+    @Test
+    void shouldRejectCallersOverTheCapAfterTheTimeout() {
+        DatabaseCallLimiter limiter = new DatabaseCallLimiter(2, 50);
+        limiter.acquire();
+        limiter.acquire();
+        assertEquals(2, limiter.inFlight());
+
+        PlatformHttpException exception = assertThrows(PlatformHttpException.class, limiter::acquire);
+        assertEquals(503, exception.getHttpStatus().getStatusCode());
+        assertEquals(1, limiter.rejectedCount());
+
+        limiter.release();
+        limiter.acquire();
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    void shouldHandThePermitToAWaitingVirtualThread() throws Exception {
+        DatabaseCallLimiter limiter = new DatabaseCallLimiter(1, 5_000);
+        limiter.acquire();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Integer> waiter = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            started.countDown();
+            limiter.acquire();
+            int inFlight = limiter.inFlight();
+            limiter.release();
+            waiter.complete(inFlight);
+        });
+        started.await();
+        while (limiter.waiting() == 0) {
+            Thread.onSpinWait();
+        }
+        limiter.release();
+
+        assertEquals(1, waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.inFlight());
+    }
+}
@@ -0,0 +1,123 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceBoardTest {
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.parse("2020-06-01T00:00:00");
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    void shouldPriceEveryProductOfTheBrandLikeTheIndex() {
+        PriceShards shards = shards(1, ShardKey.BRAND);
+        insertRandomWindows(shards);
+        assertLikeTheIndex(shards, board(shards, 0));
+    }
+
+    @Test
+    void shouldMergeTheProductsOfEveryShard() {
+        PriceShards shards = shards(3, ShardKey.PRODUCT_BRAND);
+        insertRandomWindows(shards);
+        assertLikeTheIndex(shards, board(shards, 0));
+    }
+
+    @Test
+    void shouldHoldTheBoardOfTheCurrentBucketUntilABrandPriceChanges() {
+        PriceShards shards = shards(1, ShardKey.BRAND);
+        PriceBoard board = board(shards, 3_600_000);
+        long now = at("2020-06-14T16:20:00+02:00");
+
+        PriceBoard.Board current = board.current(now, 1);
+        assertEquals(at("2020-06-14T16:00:00+02:00"), current.at());
+        assertEquals(List.of(2), current.prices().stream().map(PriceWindow::priceList).toList());
+        assertSame(current, board.current(now + 1_000, 1));
+
+        board.onPriceChange(35455, 2);
+        assertSame(current, board.current(now, 1));
+        board.onPriceChange(35455, 1);
+        assertNotSame(current, board.current(now, 1));
+        assertEquals(at("2020-06-14T17:00:00+02:00"), board.current(now + 3_600_000, 1).at());
+        assertTrue(board.current(now, 2).prices().isEmpty());
+    }
+
+    private static void assertLikeTheIndex(PriceShards shards, PriceBoard board) {
+        PriceIndex index = new PriceIndex(new PriceWindowReader(shards, new DatabaseCallLimiter(10, 1000)));
+        index.reload();
+        List<Integer> productIds = new ArrayList<>();
+        for (int productId = 1; productId <= 40; productId++) {
+            productIds.add(productId);
+        }
+        productIds.add(35455);
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            long at = ORIGIN.plusMinutes(random.nextInt(20 * 24 * 60)).toInstant(ZoneOffset.UTC).toEpochMilli();
+            for (int brandId = 1; brandId <= 2; brandId++) {
+                List<PriceWindow> expected = new ArrayList<>();
+                // the generated products and the one of data.sql
+                for (int productId : productIds) {
+                    PriceWindow window = index.find(at, productId, brandId);
+                    if (window != null) {
+                        expected.add(window);
+                    }
+                }
+                assertEquals(expected, board.find(at, brandId).prices(), "brand " + brandId + " at " + at);
+            }
+        }
+    }
+
+    private void insertRandomWindows(PriceShards shards) {
+        Random random = new Random(11);
+        for (int i = 0; i < 400; i++) {
+            int productId = 1 + random.nextInt(40);
+            int brandId = 1 + random.nextInt(2);
+            LocalDateTime start = ORIGIN.plusHours(random.nextInt(20 * 24));
+            new JdbcTemplate(shards.route(productId, brandId)).update(
+                    "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                            "VALUES (RANDOM_UUID(), ?, ?, ?, ?, ?, ?, 10.00, 'EUR', 'GMT+2')",
+                    brandId, start, start.plusHours(1 + random.nextInt(72)), i, productId, random.nextInt(3));
+        }
+    }
+
+    private PriceShards shards(int count, ShardKey key) {
+        List<DataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            EmbeddedDatabaseBuilder builder = new EmbeddedDatabaseBuilder().generateUniqueName(true)
+                    .setType(EmbeddedDatabaseType.H2).addScript("schema.sql");
+            EmbeddedDatabase database = (count == 1 ? builder.addScript("data.sql") : builder).build();
+            databases.add(database);
+            shards.add(database);
+        }
+        return new PriceShards(shards, key);
+    }
+
+    private static PriceBoard board(PriceShards shards, long bucket) {
+        // partitions of 3 windows, so even a small board is resolved by several fork-join tasks
+        return new PriceBoard(shards, new DatabaseCallLimiter(10, 1000), 3, bucket, List.of(), new SimpleMeterRegistry());
+    }
+
+    private static long at(String instant) {
+        return OffsetDateTime.parse(instant).toInstant().toEpochMilli();
+    }
+}
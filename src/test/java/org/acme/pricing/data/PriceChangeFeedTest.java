@@ -0,0 +1,105 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceChangeFeedTest {
+
+    private static final String INSERT = "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+            "VALUES (RANDOM_UUID(), 1, '2020-06-14 09:00:00', '2020-06-14 11:00:00', 5, 35455, 2, 19.99, 'EUR', 'GMT+2');";
+
+    private EmbeddedDatabase database;
+
+    private final RecordedPriceChanges recorded = new RecordedPriceChanges();
+
+    private final List<Long> changes = recorded.keys;
+
+    private PriceChangeFeed feed;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+        feed = new PriceChangeFeed(PriceShards.of(database), List.of(recorded));
+        feed.pollOnce();
+        changes.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldNotifyEveryChangedKeyOnce() throws SQLException {
+        execute(INSERT);
+        execute("UPDATE PRICES SET PRICE = PRICE + 1 WHERE PRODUCT_ID = 35455;");
+
+        assertEquals(6, feed.pollOnce());
+        assertEquals(List.of(PriceKey.of(35455, 1)), changes);
+        assertEquals(0, feed.pollOnce());
+    }
+
+    @Test
+    void shouldNotifyBothKeysWhenARowMoves() throws SQLException {
+        execute("UPDATE PRICES SET BRAND_ID = 2 WHERE PRICE_LIST = 2;");
+
+        feed.pollOnce();
+        assertEquals(List.of(PriceKey.of(35455, 1), PriceKey.of(35455, 2)), changes);
+    }
+
+    @Test
+    void shouldWaitForTheCommit() throws SQLException {
+        try (Connection connection = database.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                statement.executeUpdate();
+            }
+            assertEquals(0, feed.pollOnce());
+
+            connection.commit();
+        }
+        assertEquals(1, feed.pollOnce());
+        assertEquals(List.of(PriceKey.of(35455, 1)), changes);
+    }
+
+    @Test
+    void shouldRefreshTheIndexWithoutReload() throws SQLException {
+        PriceIndex index = new PriceIndex(new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000)));
+        index.reload();
+        PriceDAO dao = new PriceDAO(PriceShards.of(database), index, null, null, new DatabaseCallLimiter(10, 1000),
+                LookupMode.INDEX, new SimpleMeterRegistry());
+        PriceChangeFeed indexFeed = new PriceChangeFeed(PriceShards.of(database), List.of(dao));
+        long at = OffsetDateTime.parse("2020-06-14T10:00:00+02:00").toInstant().toEpochMilli();
+        assertThat(BigDecimal.valueOf(35.50), Matchers.comparesEqualTo(index.find(at, 35455, 1).price()));
+
+        execute(INSERT);
+        indexFeed.pollOnce();
+
+        assertThat(BigDecimal.valueOf(19.99), Matchers.comparesEqualTo(index.find(at, 35455, 1).price()));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.executeUpdate();
+        }
+    }
+}
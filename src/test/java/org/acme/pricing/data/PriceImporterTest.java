@@ -0,0 +1,161 @@
+package org.acme.pricing.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.acme.pricing.dto.PriceImportReportDTO;
+import org.acme.pricing.dto.PriceSegmentsReportDTO;
+import org.acme.pricing.exception.ErrorInfo;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.Enumeration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceImporterTest {
+
+    private EmbeddedDatabase database;
+
+    private PriceImporter importer;
+
+    private final RecordedPriceChanges recorded = new RecordedPriceChanges();
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScript("schema.sql").build();
+        importer = new PriceImporter(PriceShards.of(database), new DatabaseCallLimiter(10, 1000), List.of(recorded),
+                new ObjectMapper().registerModule(new JavaTimeModule()), 100, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldImportValidCsvRowsAndReportTheRejectedOnes() throws SQLException {
+        String csv = """
+                brandId,productId,priceList,priority,startDate,endDate,price,currency,timeZone
+                1,35455,1,0,2020-06-14 00:00:00,2020-12-31 23:59:59,35.50,EUR,GMT+2
+                1,35455,2,1,2020-06-14T15:00:00,2020-06-14T18:30:00,25.45,EUR,Europe/Madrid
+                1,35455,3,1,2020-06-15 00:00:00,2020-06-15 11:00:00,30.50,GBP,GMT+2
+                1,35455,4,1,2020-06-15 16:00:00,2020-12-31 23:59:59,38.95,EUR,Mars/Olympus
+                1,35455,5,1,2020-06-15 16:00:00,2020-06-14 23:59:59,38.95,EUR,UTC
+                1,35455,6,one,2020-06-15 16:00:00,2020-12-31 23:59:59,38.95,EUR,UTC
+                1,,7,1,2020-06-15 16:00:00,2020-12-31 23:59:59,38.95,EUR,UTC
+                """;
+
+        PriceImportReportDTO report = importer.importCsv(stream(csv));
+
+        assertEquals(2, report.getImported());
+        assertEquals(5, report.getRejected());
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L), report.getErrors().stream().map(ErrorInfo::getValue).toList());
+        assertThat(report.getErrors().get(0).getDetail(), Matchers.containsString("GBP"));
+        assertThat(report.getErrors().get(1).getDetail(), Matchers.containsString("Mars/Olympus"));
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT START_AT FROM PRICES WHERE PRICE_LIST = 2");
+             ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            assertEquals(OffsetDateTime.parse("2020-06-14T13:00:00Z").toInstant(),
+                    resultSet.getObject(1, OffsetDateTime.class).toInstant());
+        }
+        // the segments of the imported key are built when the rows are committed
+        PriceSegmentsReportDTO segments = new PriceSegments(PriceShards.of(database), new DatabaseCallLimiter(10, 1000)).check();
+        assertEquals(3, segments.getSegments());
+        assertEquals(0, segments.getInconsistentKeys());
+        // the lookups are refreshed once per imported key, without change rows for the feed
+        assertEquals(List.of(PriceKey.of(35455, 1)), recorded.keys);
+        assertEquals(0, changeRows());
+    }
+
+    @Test
+    void shouldStreamLargeNdjsonPayloadsInBoundedTransactions() throws SQLException {
+        int rows = 25_000;
+        PriceImportReportDTO report = importer.importNdjson(ndjson(rows));
+
+        assertEquals(rows, report.getImported());
+        assertEquals(0, report.getRejected());
+        assertTrue(report.getRowsPerSecond() > 0);
+        assertEquals(rows, count());
+        assertEquals(0, changeRows());
+        // too many keys to refresh one by one
+        assertTrue(recorded.keys.isEmpty());
+        assertEquals(1, recorded.allChanges);
+    }
+
+    @Test
+    void shouldKeepTheCommittedRowsOfAMalformedPayload() throws SQLException {
+        InputStream body = new SequenceInputStream(ndjson(2500), stream("{\"brandId\": 1, \"productId\n"));
+
+        PlatformHttpException exception = assertThrows(PlatformHttpException.class, () -> importer.importNdjson(body));
+
+        assertEquals(400, exception.getHttpStatus().getStatusCode());
+        assertEquals(2000, count());
+        assertEquals(2000, recorded.keys.size());
+    }
+
+    private long count() throws SQLException {
+        return count("PRICES");
+    }
+
+    private long changeRows() throws SQLException {
+        return count("PRICE_CHANGES");
+    }
+
+    private long count(String table) throws SQLException {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Generates the lines on demand, the payload is never held in memory.
+     */
+    private static InputStream ndjson(int rows) {
+        return new SequenceInputStream(new Enumeration<>() {
+
+            private int row;
+
+            @Override
+            public boolean hasMoreElements() {
+                return row < rows;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                row++;
+                return stream(String.format("{\"brandId\": %d, \"productId\": %d, \"priceList\": 1, \"priority\": 0, " +
+                                "\"startDate\": \"2020-06-14 00:00:00\", \"endDate\": \"2020-12-31 23:59:59\", " +
+                                "\"price\": %s, \"currency\": \"EUR\", \"timeZone\": \"Europe/Madrid\"}%n",
+                        1 + row % 3, row, BigDecimal.valueOf(row % 10000, 2)));
+            }
+        });
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
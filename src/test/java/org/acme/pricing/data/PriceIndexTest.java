@@ -0,0 +1,102 @@
+package org.acme.pricing.data;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceIndexTest {
+
+    private EmbeddedDatabase database;
+
+    private PriceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+        index = new PriceIndex(new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000)));
+        index.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldResolveTheHighestPriorityWindow() {
+        assertPrice("2020-06-14T10:00:00+02:00", 35.50);
+        assertPrice("2020-06-14T16:00:00+02:00", 25.45);
+        assertPrice("2020-06-14T21:00:00+02:00", 35.50);
+        assertPrice("2020-06-15T10:00:00+02:00", 30.50);
+        assertPrice("2020-06-16T21:00:00+02:00", 38.95);
+    }
+
+    @Test
+    void shouldIncludeBothWindowEnds() {
+        assertPrice("2020-06-14T15:00:00+02:00", 25.45);
+        assertPrice("2020-06-14T18:30:00+02:00", 25.45);
+        assertPrice("2020-06-14T18:30:01+02:00", 35.50);
+    }
+
+    @Test
+    void shouldReturnNullOutsideAnyWindow() {
+        assertNull(index.find(at("2020-06-13T23:59:59+02:00"), 35455, 1));
+        assertNull(index.find(at("2021-01-01T00:00:00+02:00"), 35455, 1));
+        assertNull(index.find(at("2020-06-15T10:00:00+02:00"), 1, 1));
+        assertNull(index.find(at("2020-06-15T10:00:00+02:00"), 35455, 2));
+    }
+
+    @Test
+    void shouldRefreshASingleKey() throws SQLException {
+        execute("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), 1, '2020-06-14 09:00:00', '2020-06-14 11:00:00', 5, 35455, 2, 19.99, 'EUR', 'GMT+2');");
+        assertPrice("2020-06-14T10:00:00+02:00", 35.50);
+
+        index.refresh(35455, 1);
+        assertPrice("2020-06-14T10:00:00+02:00", 19.99);
+        assertPrice("2020-06-14T16:00:00+02:00", 25.45);
+
+        execute("DELETE FROM PRICES;");
+        index.refresh(35455, 1);
+        assertNull(index.find(at("2020-06-14T16:00:00+02:00"), 35455, 1));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void shouldAnswerWithoutTheDataSourceOnceLoaded() {
+        database.shutdown();
+
+        assertPrice("2020-06-14T16:00:00+02:00", 25.45);
+    }
+
+    private void assertPrice(String appliedAt, double expected) {
+        PriceWindow window = index.find(at(appliedAt), 35455, 1);
+        assertNotNull(window, appliedAt);
+        assertThat(appliedAt, BigDecimal.valueOf(expected), Matchers.comparesEqualTo(window.price()));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.executeUpdate();
+        }
+    }
+
+    private static long at(String appliedAt) {
+        return OffsetDateTime.parse(appliedAt).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,124 @@
+package org.acme.pricing.data;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceLookupCacheTest {
+
+    private EmbeddedDatabase database;
+
+    private PriceWindowReader reader;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+        reader = new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldHitAnywhereInsideTheValidityWindow() {
+        PriceLookupCache cache = new PriceLookupCache(reader, 100);
+
+        assertPrice(cache, "2020-06-14T15:30:00+02:00", 25.45);
+        assertPrice(cache, "2020-06-14T15:00:00+02:00", 25.45);
+        assertPrice(cache, "2020-06-14T18:30:00+02:00", 25.45);
+        assertEquals(1, cache.missCount());
+        assertEquals(2, cache.hitCount());
+
+        assertPrice(cache, "2020-06-14T18:30:01+02:00", 35.50);
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void shouldCacheInstantsWithoutPrice() {
+        PriceLookupCache cache = new PriceLookupCache(reader, 100);
+
+        assertNull(cache.find(at("2021-03-01T00:00:00Z"), 35455, 1));
+        assertNull(cache.find(at("2030-03-01T00:00:00Z"), 35455, 1));
+        assertNull(cache.find(at("2020-06-15T10:00:00Z"), 1, 1));
+        assertNull(cache.find(at("1999-06-15T10:00:00Z"), 1, 1));
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.hitCount());
+    }
+
+    @Test
+    void shouldEvictOverTheSizeCap() {
+        PriceLookupCache cache = new PriceLookupCache(reader, 1);
+
+        for (int productId = 1; productId <= 50; productId++) {
+            cache.find(at("2020-06-15T10:00:00Z"), productId, 1);
+        }
+        cache.find(at("2020-06-15T10:00:00Z"), 35455, 1);
+
+        assertTrue(cache.evictionCount() > 0);
+        assertTrue(cache.size() <= 1);
+    }
+
+    @Test
+    void shouldReloadAfterInvalidation() {
+        PriceLookupCache cache = new PriceLookupCache(reader, 100);
+        assertPrice(cache, "2020-06-16T21:00:00+02:00", 38.95);
+
+        cache.invalidate(35455, 1);
+        assertPrice(cache, "2020-06-16T21:00:00+02:00", 38.95);
+
+        assertEquals(2, cache.missCount());
+        assertEquals(0, cache.hitCount());
+    }
+
+    @Test
+    void shouldNotCacheARowReadBeforeAConcurrentInvalidation() {
+        AtomicReference<PriceLookupCache> cache = new AtomicReference<>();
+        AtomicBoolean changed = new AtomicBoolean();
+        PriceWindowReader changingReader = new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000)) {
+            @Override
+            public List<PriceWindow> read(int productId, int brandId) {
+                List<PriceWindow> rows = super.read(productId, brandId);
+                // the price changes and the change feed invalidates the key after the rows were read
+                if (changed.compareAndSet(false, true)) {
+                    new JdbcTemplate(database).update("UPDATE PRICES SET PRICE = 99.99 WHERE PRICE = 38.95");
+                    cache.get().invalidate(productId, brandId);
+                }
+                return rows;
+            }
+        };
+        cache.set(new PriceLookupCache(changingReader, 100));
+
+        assertPrice(cache.get(), "2020-06-16T21:00:00+02:00", 38.95);
+        assertPrice(cache.get(), "2020-06-16T21:00:00+02:00", 99.99);
+        assertEquals(2, cache.get().missCount());
+        assertPrice(cache.get(), "2020-06-16T21:00:00+02:00", 99.99);
+        assertEquals(1, cache.get().hitCount());
+    }
+
+    private void assertPrice(PriceLookupCache cache, String appliedAt, double expected) {
+        PriceWindow window = cache.find(at(appliedAt), 35455, 1);
+        assertNotNull(window, appliedAt);
+        assertThat(appliedAt, BigDecimal.valueOf(expected), Matchers.comparesEqualTo(window.price()));
+    }
+
+    private static long at(String appliedAt) {
+        return OffsetDateTime.parse(appliedAt).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,123 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.PriceLookupDTO;
+import org.acme.pricing.dto.PriceSegmentsReportDTO;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceSegmentsTest {
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.parse("2020-06-01T00:00:00");
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbc;
+
+    private PriceSegments segments;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+        jdbc = new JdbcTemplate(database);
+        segments = new PriceSegments(PriceShards.of(database), new DatabaseCallLimiter(10, 1000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldKeepTheSegmentsInLineWithEveryWrite() {
+        assertEquals(6, jdbc.queryForObject("SELECT COUNT(*) FROM PRICE_SEGMENTS", Integer.class));
+
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            int productId = 1 + random.nextInt(20);
+            int brandId = 1 + random.nextInt(2);
+            LocalDateTime start = ORIGIN.plusMinutes(random.nextInt(20 * 24 * 60));
+            jdbc.update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                            "VALUES (RANDOM_UUID(), ?, ?, ?, ?, ?, ?, 10.00, 'EUR', 'Europe/Madrid')",
+                    brandId, start, start.plusHours(1 + random.nextInt(72)), i, productId, random.nextInt(3));
+        }
+        jdbc.update("UPDATE PRICES SET PRIORITY = 5 WHERE PRICE_LIST < 30");
+        jdbc.update("UPDATE PRICES SET PRODUCT_ID = 21 WHERE PRICE_LIST BETWEEN 30 AND 60");
+        jdbc.update("UPDATE PRICES SET END_DATE = DATEADD(HOUR, 100, END_DATE) WHERE MOD(PRICE_LIST, 7) = 0");
+        jdbc.update("DELETE FROM PRICES WHERE MOD(PRICE_LIST, 5) = 0");
+
+        PriceSegmentsReportDTO report = segments.check();
+        assertEquals(0, report.getInconsistentKeys());
+        assertEquals(jdbc.queryForObject("SELECT COUNT(*) FROM (SELECT DISTINCT PRODUCT_ID, BRAND_ID FROM PRICES)", Long.class), report.getKeys());
+        assertEquals(jdbc.queryForObject("SELECT COUNT(*) FROM PRICE_SEGMENTS", Long.class), report.getSegments());
+        assertLookupsLikeTheIndex();
+    }
+
+    @Test
+    void shouldReportAndRepairInconsistentKeys() {
+        jdbc.update("DELETE FROM PRICE_SEGMENTS WHERE END_AT = (SELECT MIN(END_AT) FROM PRICE_SEGMENTS)");
+        jdbc.update("INSERT INTO PRICE_SEGMENTS (PRODUCT_ID, BRAND_ID, START_AT, END_AT, PRICE_ID) " +
+                "VALUES (1, 1, TIMESTAMP WITH TIME ZONE '2020-01-01 00:00:00Z', TIMESTAMP WITH TIME ZONE '2020-01-02 00:00:00Z', RANDOM_UUID())");
+
+        PriceSegmentsReportDTO report = segments.check();
+        assertEquals(2, report.getInconsistentKeys());
+        assertEquals(List.of("1/1", "35455/1"), report.getInconsistent());
+        assertFalse(report.isRebuilt());
+
+        PriceSegmentsReportDTO rebuilt = segments.rebuild();
+        assertTrue(rebuilt.isRebuilt());
+        assertEquals(1, rebuilt.getKeys());
+        assertEquals(6, rebuilt.getSegments());
+        assertEquals(0, segments.check().getInconsistentKeys());
+    }
+
+    @Test
+    void shouldIgnoreRowsThatAreNeverLookedUp() {
+        jdbc.update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), 3, '2021-01-01 00:00:00', NULL, NULL, 2, NULL, NULL, NULL, NULL);");
+        jdbc.update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), NULL, '2021-01-01 00:00:00', '2021-02-01 00:00:00', 1, NULL, 0, 1.00, 'EUR', 'UTC');");
+
+        assertEquals(6, jdbc.queryForObject("SELECT COUNT(*) FROM PRICE_SEGMENTS", Integer.class));
+        assertEquals(0, segments.check().getInconsistentKeys());
+    }
+
+    private void assertLookupsLikeTheIndex() {
+        DatabaseCallLimiter limiter = new DatabaseCallLimiter(10, 1000);
+        PriceIndex index = new PriceIndex(new PriceWindowReader(PriceShards.of(database), limiter));
+        PriceDAO indexed = new PriceDAO(PriceShards.of(database), index, null, null, limiter, LookupMode.INDEX, new SimpleMeterRegistry());
+        indexed.loadIndex();
+        PriceDAO materialized = new PriceDAO(PriceShards.of(database), null, null, null, limiter, LookupMode.SEGMENTS, new SimpleMeterRegistry());
+
+        Random random = new Random(9);
+        List<PriceLookupDTO> lookups = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            OffsetDateTime at = ORIGIN.plusMinutes(random.nextInt(24 * 24 * 60)).atOffset(ZoneOffset.UTC);
+            int productId = 1 + random.nextInt(22);
+            int brandId = 1 + random.nextInt(2);
+            PriceAt expected = indexed.findPriceAt(at, productId, brandId);
+            PriceAt actual = materialized.findPriceAt(at, productId, brandId);
+            assertEquals(expected, actual, productId + "/" + brandId + " at " + at);
+            lookups.add(new PriceLookupDTO(at, productId, brandId));
+        }
+        List<RatedPriceDTO> batch = materialized.findPricesByDate(lookups);
+        assertEquals(indexed.findPricesByDate(lookups), batch);
+        assertTrue(batch.stream().filter(price -> price != null).count() > 100);
+    }
+}
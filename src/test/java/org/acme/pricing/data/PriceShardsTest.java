@@ -0,0 +1,187 @@
+package org.acme.pricing.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.PriceImportReportDTO;
+import org.acme.pricing.dto.PriceLookupDTO;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceShardsTest {
+
+    private static final int SHARDS = 3;
+
+    private EmbeddedDatabase seed;
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+    private final List<PriceShards> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        seed = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+        // 4 brands x 10 products, a base price and a promotion each
+        new JdbcTemplate(seed).update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "SELECT RANDOM_UUID(), MOD(X, 4) + 2, DATEADD(HOUR, -MOD(X, 5), TIMESTAMP '2020-06-14 00:00:00'), TIMESTAMP '2020-12-31 23:59:59', " +
+                "X, X / 4 + 1, 0, X + 0.99, 'EUR', 'Europe/Madrid' FROM SYSTEM_RANGE(0, 39);");
+        new JdbcTemplate(seed).update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "SELECT RANDOM_UUID(), MOD(X, 4) + 2, TIMESTAMP '2020-06-15 10:00:00', DATEADD(HOUR, MOD(X, 7), TIMESTAMP '2020-06-15 12:00:00'), " +
+                "100 + X, X / 4 + 1, 1, X + 0.49, 'USD', 'UTC' FROM SYSTEM_RANGE(0, 39);");
+        for (int shard = 0; shard < SHARDS; shard++) {
+            databases.add(new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                    .addScript("schema.sql").build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(PriceShards::close);
+        databases.forEach(EmbeddedDatabase::shutdown);
+        seed.shutdown();
+    }
+
+    @Test
+    void shouldCopyEveryRowToTheShardOfItsBrand() {
+        PriceShards shards = shards(ShardKey.BRAND);
+        assertEquals(84, shards.copy(seed));
+
+        int copied = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            JdbcTemplate rows = new JdbcTemplate(databases.get(shard));
+            copied += rows.queryForObject("SELECT COUNT(*) FROM PRICES", Integer.class);
+            assertEquals(List.of(), rows.queryForList("SELECT DISTINCT BRAND_ID FROM PRICES WHERE MOD(BRAND_ID, 3) <> ?", Integer.class, shard));
+            assertEquals(0, rows.queryForObject("SELECT COUNT(*) FROM PRICE_CHANGES", Integer.class));
+            assertEquals(0, rows.queryForObject("SELECT COUNT(*) FROM PRICES WHERE START_AT IS NULL OR END_AT IS NULL", Integer.class));
+        }
+        assertEquals(84, copied);
+    }
+
+    @Test
+    void shouldAnswerLikeASingleDatabase() {
+        PriceShards shards = shards(ShardKey.PRODUCT_BRAND);
+        shards.copy(seed);
+        for (DataSource database : databases) {
+            assertTrue(new JdbcTemplate(database).queryForObject("SELECT COUNT(*) FROM PRICES", Integer.class) > 0);
+        }
+        PriceDAO sharded = dao(shards);
+        PriceDAO single = dao(PriceShards.of(seed));
+
+        Random random = new Random(3);
+        List<PriceLookupDTO> lookups = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            PriceLookupDTO lookup = new PriceLookupDTO();
+            lookup.setProductId(random.nextInt(11) + 1);
+            lookup.setBrandId(random.nextInt(6));
+            lookup.setAppliedAt(OffsetDateTime.parse("2020-06-13T18:00:00Z").plusHours(random.nextInt(72)));
+            lookups.add(lookup);
+        }
+        lookups.get(0).setProductId(35455);
+        lookups.get(0).setBrandId(1);
+
+        List<RatedPriceDTO> expected = single.findPricesByDate(lookups);
+        assertEquals(expected, sharded.findPricesByDate(lookups));
+        assertNotNull(expected.get(0));
+        for (int i = 0; i < lookups.size(); i++) {
+            PriceLookupDTO lookup = lookups.get(i);
+            assertEquals(expected.get(i), sharded.findPriceByDate(lookup.getAppliedAt(), lookup.getProductId(), lookup.getBrandId()));
+        }
+
+        PriceIndex index = new PriceIndex(new PriceWindowReader(shards, new DatabaseCallLimiter(10, 1000)));
+        index.reload();
+        PriceIndex singleIndex = new PriceIndex(new PriceWindowReader(PriceShards.of(seed), new DatabaseCallLimiter(10, 1000)));
+        singleIndex.reload();
+        for (PriceLookupDTO lookup : lookups) {
+            long at = lookup.getAppliedAt().toInstant().toEpochMilli();
+            assertEquals(singleIndex.find(at, lookup.getProductId(), lookup.getBrandId()),
+                    index.find(at, lookup.getProductId(), lookup.getBrandId()));
+        }
+    }
+
+    @Test
+    void shouldImportIntoAndFollowTheChangesOfEveryShard() throws SQLException {
+        PriceShards shards = shards(ShardKey.BRAND);
+        RecordedPriceChanges imported = new RecordedPriceChanges();
+        PriceImporter importer = new PriceImporter(shards, new DatabaseCallLimiter(10, 1000), List.of(imported),
+                new ObjectMapper().registerModule(new JavaTimeModule()), 2, 3);
+        RecordedPriceChanges polled = new RecordedPriceChanges();
+        PriceChangeFeed feed = new PriceChangeFeed(shards, List.of(polled));
+
+        StringBuilder ndjson = new StringBuilder();
+        for (int brandId = 1; brandId <= 5; brandId++) {
+            ndjson.append("{\"brandId\":").append(brandId).append(",\"productId\":7,\"priceList\":1,\"priority\":0,")
+                    .append("\"startDate\":\"2020-06-14T00:00:00\",\"endDate\":\"2020-12-31T23:59:59\",\"price\":9.99,")
+                    .append("\"currency\":\"EUR\",\"timeZone\":\"UTC\"}\n");
+        }
+        PriceImportReportDTO report = importer.importNdjson(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(5, report.getImported());
+
+        assertEquals(List.of(3), brands(0));
+        assertEquals(List.of(1, 4), brands(1));
+        assertEquals(List.of(2, 5), brands(2));
+
+        // notified by the import itself, not through the change feed
+        assertEquals(Set.of(PriceKey.of(7, 1), PriceKey.of(7, 2), PriceKey.of(7, 3), PriceKey.of(7, 4), PriceKey.of(7, 5)),
+                Set.copyOf(imported.keys));
+        assertEquals(0, feed.pollOnce());
+        assertTrue(polled.keys.isEmpty());
+
+        new JdbcTemplate(shards.dataSource(1)).update("UPDATE PRICES SET PRICE = 8.99 WHERE BRAND_ID = 4");
+        assertEquals(1, feed.pollOnce());
+        assertEquals(List.of(PriceKey.of(7, 4)), polled.keys);
+    }
+
+    @Test
+    void shouldFailTheBatchWhenAShardFails() {
+        PriceShards shards = shards(ShardKey.BRAND);
+        shards.copy(seed);
+        databases.get(2).shutdown();
+
+        List<PriceLookupDTO> lookups = new ArrayList<>();
+        for (int brandId = 1; brandId <= 3; brandId++) {
+            PriceLookupDTO lookup = new PriceLookupDTO();
+            lookup.setProductId(35455);
+            lookup.setBrandId(brandId);
+            lookup.setAppliedAt(OffsetDateTime.parse("2020-06-14T10:00:00+02:00"));
+            lookups.add(lookup);
+        }
+        PriceDAO dao = dao(shards);
+        PlatformHttpException e = assertThrows(PlatformHttpException.class, () -> dao.findPricesByDate(lookups));
+        assertEquals("Failed to retrieve prices from the database", e.getMessage());
+        assertNotNull(dao.findPriceByDate(OffsetDateTime.parse("2020-06-14T10:00:00+02:00"), 35455, 1));
+    }
+
+    private PriceShards shards(ShardKey shardKey) {
+        PriceShards shards = new PriceShards(new ArrayList<>(databases), shardKey);
+        opened.add(shards);
+        return shards;
+    }
+
+    private static PriceDAO dao(PriceShards shards) {
+        return new PriceDAO(shards, null, null, null, new DatabaseCallLimiter(10, 1000), LookupMode.SQL, new SimpleMeterRegistry());
+    }
+
+    private List<Integer> brands(int shard) {
+        return new JdbcTemplate(databases.get(shard)).queryForList("SELECT BRAND_ID FROM PRICES ORDER BY BRAND_ID", Integer.class);
+    }
+}
@@ -0,0 +1,179 @@
+package org.acme.pricing.data;
+
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.dto.PriceSnapshotReportDTO;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceSnapshotTest {
+
+    private static final String ROWS = "SELECT ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE, " +
+            "START_AT, END_AT FROM PRICES ORDER BY ID";
+
+    private static final String INDEXES = "SELECT INDEX_NAME, INDEX_TYPE_NAME FROM INFORMATION_SCHEMA.INDEXES " +
+            "WHERE TABLE_NAME = 'PRICES' ORDER BY INDEX_NAME";
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase source;
+
+    private EmbeddedDatabase target;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        source = database();
+        target = database();
+        file = directory.resolve("prices.snapshot");
+    }
+
+    @AfterEach
+    void tearDown() {
+        source.shutdown();
+        target.shutdown();
+    }
+
+    @Test
+    void shouldRestoreTheRowsOfAnotherDatabase() {
+        JdbcTemplate sourceRows = new JdbcTemplate(source);
+        sourceRows.update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), 2, '2021-03-28 01:30:00.123456', '2021-10-31 02:30:00', 7, 1, NULL, 1234567.89, 'USD', 'Europe/Madrid');");
+        sourceRows.update("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), 3, '2021-01-01 00:00:00', NULL, NULL, 2, 1, NULL, NULL, NULL);");
+        new JdbcTemplate(target).update("DELETE FROM PRICES WHERE PRICE_LIST = 1;");
+
+        PriceSnapshotReportDTO written = snapshot(source).write();
+        assertEquals(6, written.getRows());
+        assertEquals(PriceSnapshot.HEADER_SIZE + 6L * PriceSnapshot.ROW_SIZE, written.getBytes() - dictionarySize("EUR", "GMT+2", "USD", "Europe/Madrid"));
+
+        PriceSnapshotReportDTO restored = snapshot(target).restore();
+        assertEquals(6, restored.getRows());
+        List<Map<String, Object>> expected = sourceRows.queryForList(ROWS);
+        assertEquals(expected, new JdbcTemplate(target).queryForList(ROWS));
+        assertEquals(0, new JdbcTemplate(target).queryForObject("SELECT COUNT(*) FROM PRICE_CHANGES", Integer.class));
+        assertEquals(new JdbcTemplate(source).queryForList(INDEXES), new JdbcTemplate(target).queryForList(INDEXES));
+    }
+
+    @Test
+    void shouldRestoreOnStartupOnlyWhenTheFileExists() {
+        new JdbcTemplate(source).update("DELETE FROM PRICES WHERE PRICE_LIST > 1;");
+        snapshot(target).restoreOnStartup();
+        assertEquals(4, count(target));
+
+        snapshot(source).write();
+        snapshot(target).restoreOnStartup();
+        assertEquals(1, count(target));
+    }
+
+    @Test
+    void shouldRejectADamagedSnapshotBeforeTouchingTheTable() throws IOException {
+        new JdbcTemplate(source).update("DELETE FROM PRICES;");
+        snapshot(source).write();
+        snapshot(source).write(); // replaces the previous file
+
+        try (RandomAccessFile damaged = new RandomAccessFile(file.toFile(), "rw")) {
+            damaged.seek(damaged.length() - 1);
+            damaged.write('?');
+        }
+        PlatformHttpException e = assertThrows(PlatformHttpException.class, () -> snapshot(target).restore());
+        assertEquals("Failed to restore the price snapshot", e.getMessage());
+        assertEquals(4, count(target));
+    }
+
+    @Test
+    void shouldLeaveTheTableAsItWasWhenARestoreFailsHalfWay() throws IOException {
+        new JdbcTemplate(source).update("DELETE FROM PRICES WHERE PRICE_LIST = 4;");
+        snapshot(source).write();
+        repeatLastRow();
+        List<Map<String, Object>> rows = new JdbcTemplate(target).queryForList(ROWS);
+        List<Map<String, Object>> indexes = new JdbcTemplate(target).queryForList(INDEXES);
+
+        // the first batch is inserted, the repeated id fails the second one
+        PlatformHttpException e = assertThrows(PlatformHttpException.class, () -> snapshot(target).restore());
+        assertEquals("Failed to restore the price snapshot", e.getMessage());
+        assertEquals(rows, new JdbcTemplate(target).queryForList(ROWS));
+        assertEquals(indexes, new JdbcTemplate(target).queryForList(INDEXES));
+        assertEquals(4, new JdbcTemplate(target).queryForObject("SELECT COUNT(DISTINCT PRICE_ID) FROM PRICE_SEGMENTS", Integer.class));
+    }
+
+    @Test
+    void shouldRequireAConfiguredFile() {
+        PriceSnapshot unconfigured = new PriceSnapshot(source, new DatabaseCallLimiter(10, 1000), "", true, 2, 1);
+        unconfigured.writeOnShutdown();
+        assertThrows(PlatformHttpException.class, unconfigured::write);
+    }
+
+    @Test
+    void shouldNotOverwriteTheSnapshotWithTheSeedRowsOfSeveralShards() throws IOException {
+        snapshot(source).write();
+        byte[] written = Files.readAllBytes(file);
+        new JdbcTemplate(source).update("DELETE FROM PRICES;");
+        PriceSnapshot sharded = new PriceSnapshot(source, new DatabaseCallLimiter(10, 1000), file.toString(), true, 2, 3);
+
+        PlatformHttpException e = assertThrows(PlatformHttpException.class, sharded::write);
+        assertEquals(Response.Status.CONFLICT, e.getHttpStatus());
+        sharded.writeOnShutdown();
+        assertArrayEquals(written, Files.readAllBytes(file));
+    }
+
+    private PriceSnapshot snapshot(EmbeddedDatabase database) {
+        return new PriceSnapshot(database, new DatabaseCallLimiter(10, 1000), file.toString(), false, 2, 1);
+    }
+
+    /**
+     * Rewrite the snapshot file with its last record twice, a well-formed file the restore fails on.
+     */
+    private void repeatLastRow() throws IOException {
+        ByteBuffer written = ByteBuffer.wrap(Files.readAllBytes(file));
+        long rows = written.getLong(8);
+        int dictionaryOffset = (int) written.getLong(16);
+        ByteBuffer body = ByteBuffer.allocate(written.capacity() - PriceSnapshot.HEADER_SIZE + PriceSnapshot.ROW_SIZE)
+                .put(written.slice(PriceSnapshot.HEADER_SIZE, dictionaryOffset - PriceSnapshot.HEADER_SIZE))
+                .put(written.slice(dictionaryOffset - PriceSnapshot.ROW_SIZE, PriceSnapshot.ROW_SIZE))
+                .put(written.slice(dictionaryOffset, written.capacity() - dictionaryOffset))
+                .flip();
+        CRC32C checksum = new CRC32C();
+        checksum.update(body.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(PriceSnapshot.HEADER_SIZE).putInt(PriceSnapshot.MAGIC)
+                .putInt(PriceSnapshot.VERSION).putLong(rows + 1).putLong(dictionaryOffset + PriceSnapshot.ROW_SIZE)
+                .putInt((int) checksum.getValue()).putInt(0).flip();
+        Files.write(file, ByteBuffer.allocate(header.capacity() + body.capacity()).put(header).put(body).array());
+    }
+
+    private static int dictionarySize(String... values) {
+        int size = Integer.BYTES;
+        for (String value : values) {
+            size += Short.BYTES + value.length();
+        }
+        return size;
+    }
+
+    private static int count(EmbeddedDatabase database) {
+        return new JdbcTemplate(database).queryForObject("SELECT COUNT(*) FROM PRICES", Integer.class);
+    }
+
+    private static EmbeddedDatabase database() {
+        return new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+    }
+}
@@ -0,0 +1,207 @@
+package org.acme.pricing.data;
+
+import org.acme.pricing.dto.CurrencyEnum;
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase database;
+
+    private PriceWindowReader reader;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScripts("schema.sql", "data.sql").build();
+        reader = new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldResolveLikeTheIndex() {
+        PriceStore store = new PriceStore(reader, "", 10_000);
+        store.reload();
+        PriceIndex index = new PriceIndex(reader);
+        index.reload();
+
+        for (String appliedAt : List.of("2020-06-13T23:59:59+02:00", "2020-06-14T10:00:00+02:00",
+                "2020-06-14T15:00:00+02:00", "2020-06-14T18:30:00+02:00", "2020-06-14T18:30:01+02:00",
+                "2020-06-15T10:00:00+02:00", "2020-06-16T21:00:00+02:00", "2021-01-01T00:00:00+02:00")) {
+            PriceWindow window = index.find(at(appliedAt), 35455, 1);
+            assertEquals(window != null ? window.toRatedPrice() : null, store.find(at(appliedAt), 35455, 1), appliedAt);
+        }
+        assertNull(store.find(at("2020-06-15T10:00:00+02:00"), 35455, 2));
+        assertEquals(4, store.columns().rowCount());
+    }
+
+    @Test
+    void shouldKnowUntilWhenThePriceHolds() {
+        PriceStore store = new PriceStore(reader, "", 10_000);
+        store.reload();
+        PriceIndex index = new PriceIndex(reader);
+        index.reload();
+
+        PriceAt price = store.findAt(at("2020-06-14T16:00:00+02:00"), 35455, 1);
+        assertNotNull(price);
+        assertEquals(2, price.price().getRateListId());
+        assertEquals(at("2020-06-14T18:30:00+02:00") + 1, price.validUntil());
+        assertEquals(index.segmentAt(at("2020-06-14T16:00:00+02:00"), 35455, 1).end(), price.validUntil());
+        // the base price holds until the next promotion starts
+        assertEquals(at("2020-06-15T00:00:00+02:00"), store.findAt(at("2020-06-14T20:00:00+02:00"), 35455, 1).validUntil());
+        assertNull(store.findAt(at("2020-06-13T10:00:00+02:00"), 35455, 1));
+    }
+
+    @Test
+    void shouldAnswerFromTheMappedSnapshot() throws IOException {
+        Path snapshot = directory.resolve("prices.snapshot");
+        PriceStore store = new PriceStore(reader, snapshot.toString(), 10_000);
+        store.reload();
+        database.shutdown();
+
+        assertPrice(store, "2020-06-14T16:00:00+02:00", 25.45);
+
+        PriceColumns mapped = PriceColumns.map(snapshot);
+        int row = mapped.find(at("2020-06-14T16:00:00+02:00"), 35455, 1);
+        assertEquals(store.columns().toRatedPrice(row), mapped.toRatedPrice(row));
+        assertEquals(1, mapped.priority(row));
+    }
+
+    @Test
+    void shouldRefreshASingleKeyInTheOverlay() throws SQLException {
+        PriceStore store = new PriceStore(reader, "", 10_000);
+        store.reload();
+        execute("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), 1, '2020-06-14 09:00:00', '2020-06-14 11:00:00', 5, 35455, 2, 19.99, 'EUR', 'GMT+2');");
+        assertPrice(store, "2020-06-14T10:00:00+02:00", 35.50);
+
+        store.refresh(35455, 1);
+        assertPrice(store, "2020-06-14T10:00:00+02:00", 19.99);
+
+        execute("DELETE FROM PRICES;");
+        store.refresh(35455, 1);
+        assertNull(store.find(at("2020-06-14T16:00:00+02:00"), 35455, 1));
+
+        store.reload();
+        assertEquals(0, store.columns().keyCount());
+    }
+
+    @Test
+    void shouldFoldTheOverlayIntoNewColumns() throws SQLException, InterruptedException {
+        PriceStore store = new PriceStore(reader, "", 2);
+        store.reload();
+        execute("INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (RANDOM_UUID(), 1, '2020-06-14 09:00:00', '2020-06-14 11:00:00', 5, 35455, 2, 19.99, 'EUR', 'GMT+2');");
+        store.refresh(35455, 1);
+        assertEquals(1, store.overlaySize());
+        assertEquals(4, store.columns().rowCount());
+
+        store.refresh(35455, 2);
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (store.columns().rowCount() != 5 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, store.columns().rowCount());
+        assertEquals(0, store.overlaySize());
+        assertPrice(store, "2020-06-14T10:00:00+02:00", 19.99);
+    }
+
+    @Test
+    void shouldKeepTheKeysRefreshedDuringAReload() {
+        PriceStore[] store = new PriceStore[1];
+        PriceWindowReader changing = new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000)) {
+            @Override
+            public void readAll(Consumer<PriceWindow> consumer) {
+                super.readAll(consumer);
+                // the change lands after the reload read the table, before the columns are swapped in
+                try {
+                    execute("UPDATE PRICES SET PRICE = 19.99 WHERE PRICE_LIST = 1;");
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                store[0].refresh(35455, 1);
+            }
+        };
+        store[0] = new PriceStore(changing, "", 10_000);
+        store[0].reload();
+
+        assertEquals(1, store[0].overlaySize());
+        assertPrice(store[0], "2020-06-14T10:00:00+02:00", 19.99);
+    }
+
+    @Test
+    void shouldMatchTheTimelinesOfRandomWindows() {
+        Random random = new Random(7);
+        List<ZoneId> zones = List.of(TimeZones.of("GMT+2"), TimeZones.of("Europe/Madrid"), TimeZones.of("UTC"));
+        List<PriceWindow> windows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int productId = random.nextInt(50) - 10;
+            int brandId = random.nextInt(3);
+            long startAt = random.nextInt(1000) * 60_000L;
+            long endAt = startAt + random.nextInt(300) * 60_000L;
+            windows.add(new PriceWindow(UUID.randomUUID(), productId, brandId, random.nextInt(10), random.nextInt(4),
+                    startAt, endAt, BigDecimal.valueOf(random.nextInt(1_000_000) - 1000, 2),
+                    CurrencyEnum.values()[random.nextInt(CurrencyEnum.values().length)], zones.get(random.nextInt(zones.size()))));
+        }
+        PriceColumns columns = PriceColumns.of(windows);
+
+        for (int i = 0; i < 20000; i++) {
+            int productId = random.nextInt(52) - 11;
+            int brandId = random.nextInt(4);
+            long at = random.nextInt(1400 * 60) * 1000L - random.nextInt(2);
+            List<PriceWindow> keyWindows = windows.stream()
+                    .filter(window -> window.productId() == productId && window.brandId() == brandId).toList();
+            PriceWindow expected = PriceTimeline.of(keyWindows).find(at);
+            int row = columns.find(at, productId, brandId);
+            assertEquals(expected != null ? expected.toRatedPrice() : null, row >= 0 ? columns.toRatedPrice(row) : null);
+        }
+    }
+
+    private static void assertPrice(PriceStore store, String appliedAt, double expected) {
+        RatedPriceDTO price = store.find(at(appliedAt), 35455, 1);
+        assertNotNull(price, appliedAt);
+        assertThat(appliedAt, BigDecimal.valueOf(expected), Matchers.comparesEqualTo(price.getPrice()));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.executeUpdate();
+        }
+    }
+
+    private static long at(String appliedAt) {
+        return OffsetDateTime.parse(appliedAt).toInstant().toEpochMilli();
+    }
+}
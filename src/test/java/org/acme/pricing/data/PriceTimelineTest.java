@@ -0,0 +1,212 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the flattened timelines against the prioritized SQL query on randomized windows.
+ */
+class PriceTimelineTest {
+
+    private static final String REFERENCE_QUERY = "SELECT * " +
+            "FROM PRICES " +
+            "WHERE PRODUCT_ID = ?" +
+            "  AND BRAND_ID = ?" +
+            "  AND START_AT <= ?" +
+            "  AND END_AT >= ? " +
+            "ORDER BY PRIORITY DESC " +
+            "LIMIT 1;";
+
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    /**
+     * Zones without daylight saving, so every local timestamp maps back to a single instant.
+     */
+    private static final List<ZoneId> ZONES = List.of(ZoneOffset.UTC, ZoneId.of("GMT+2"), ZoneId.of("GMT-5"), ZoneId.of("Asia/Kolkata"));
+
+    private static final long ORIGIN = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+
+    private EmbeddedDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScript("schema.sql").build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void shouldFlattenOverlappingWindows() {
+        PriceWindow base = window(1, 0, 0, 100);
+        PriceWindow promo = window(2, 1, 20, 30);
+        PriceTimeline timeline = PriceTimeline.of(List.of(promo, base));
+
+        assertEquals(3, timeline.segmentCount());
+        assertSame(base, timeline.find(19));
+        assertSame(promo, timeline.find(20));
+        assertSame(promo, timeline.find(30));
+        assertSame(base, timeline.find(31));
+        assertSame(base, timeline.find(100));
+        assertNull(timeline.find(101));
+        assertNull(timeline.find(-1));
+    }
+
+    @Test
+    void shouldLeaveGapsWithoutSegments() {
+        PriceTimeline timeline = PriceTimeline.of(List.of(window(1, 0, 0, 10), window(2, 0, 20, 30)));
+
+        assertEquals(2, timeline.segmentCount());
+        assertNull(timeline.find(15));
+        assertEquals(new PriceTimeline.Segment(20, 31, timeline.find(25)), timeline.segmentAt(25));
+    }
+
+    @RepeatedTest(5)
+    void shouldMatchThePrioritizedQuery() throws SQLException {
+        Random random = new Random();
+        long seed = random.nextLong();
+        random.setSeed(seed);
+
+        List<PriceWindow> windows = new ArrayList<>();
+        List<Long> probes = new ArrayList<>();
+        for (int productId = 1; productId <= 20; productId++) {
+            for (int brandId = 1; brandId <= 3; brandId++) {
+                int count = random.nextInt(8);
+                List<Integer> priorities = new ArrayList<>();
+                for (int p = 0; p < count; p++) {
+                    priorities.add(p);
+                }
+                Collections.shuffle(priorities, random);
+                for (int i = 0; i < count; i++) {
+                    long start = ORIGIN + random.nextInt(60) * DAY + random.nextInt(86400) * 1000L;
+                    long end = start + random.nextInt(30 * 86400) * 1000L;
+                    windows.add(new PriceWindow(UUID.randomUUID(), productId, brandId, i + 1, priorities.get(i),
+                            start, end, BigDecimal.valueOf(random.nextInt(10000), 2), null, ZONES.get(random.nextInt(ZONES.size()))));
+                    probes.add(start);
+                    probes.add(end);
+                    probes.add(end + 1000);
+                }
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            probes.add(ORIGIN + (long) random.nextInt(100 * 86400) * 1000L);
+        }
+        insert(windows);
+
+        PriceIndex index = new PriceIndex(new PriceWindowReader(PriceShards.of(database), new DatabaseCallLimiter(10, 1000)));
+        index.reload();
+
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(REFERENCE_QUERY)) {
+            for (int productId = 0; productId <= 21; productId++) {
+                for (int brandId = 1; brandId <= 3; brandId++) {
+                    for (long at : probes) {
+                        UUID expected = referenceLookup(statement, at, productId, brandId);
+                        PriceWindow actual = index.find(at, productId, brandId);
+                        assertEquals(expected, actual != null ? actual.id() : null,
+                                String.format("seed=%d productId=%d brandId=%d at=%s", seed, productId, brandId, Instant.ofEpochMilli(at)));
+                    }
+                }
+            }
+        }
+    }
+
+    @RepeatedTest(3)
+    void shouldStreamTheSegmentsOfARangeFromASingleScan() throws SQLException {
+        Random random = new Random();
+        long seed = random.nextLong();
+        random.setSeed(seed);
+
+        List<PriceWindow> windows = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            long start = ORIGIN + random.nextInt(60) * DAY + random.nextInt(86400) * 1000L;
+            long end = start + random.nextInt(30 * 86400) * 1000L;
+            windows.add(new PriceWindow(UUID.randomUUID(), 35455, 1, i + 1, random.nextInt(5),
+                    start, end, BigDecimal.ONE, null, ZONES.get(random.nextInt(ZONES.size()))));
+        }
+        insert(windows);
+        long from = ORIGIN + random.nextInt(40) * DAY;
+        long to = from + (1 + random.nextInt(40)) * DAY;
+
+        PriceTimeline timeline = PriceTimeline.of(windows);
+        List<String> expected = new ArrayList<>();
+        for (long at = from; at < to; ) {
+            PriceTimeline.Segment segment = timeline.validityAt(at);
+            long end = Math.min(segment.end(), to);
+            if (segment.winner() != null) {
+                expected.add(at + "-" + end + ":" + segment.winner().id());
+            }
+            at = end;
+        }
+
+        PriceDAO dao = new PriceDAO(PriceShards.of(database), null, null, null, new DatabaseCallLimiter(10, 1000), LookupMode.SQL, new SimpleMeterRegistry());
+        List<String> streamed = dao.timeline(35455, 1, from, to).stream()
+                .map(segment -> segment.start() + "-" + segment.end() + ":" + segment.winner().id())
+                .toList();
+
+        assertEquals(expected, streamed, "seed=" + seed);
+    }
+
+    private UUID referenceLookup(PreparedStatement statement, long at, int productId, int brandId) throws SQLException {
+        OffsetDateTime utc = Instant.ofEpochMilli(at).atOffset(ZoneOffset.UTC);
+        statement.setInt(1, productId);
+        statement.setInt(2, brandId);
+        statement.setObject(3, utc);
+        statement.setObject(4, utc);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getObject("ID", UUID.class) : null;
+        }
+    }
+
+    private void insert(List<PriceWindow> windows) throws SQLException {
+        String insert = "INSERT INTO PRICES (ID, BRAND_ID, START_DATE, END_DATE, PRICE_LIST, PRODUCT_ID, PRIORITY, PRICE, CURRENCY, TIME_ZONE) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 'EUR', ?);";
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(insert)) {
+            for (PriceWindow window : windows) {
+                statement.setObject(1, window.id());
+                statement.setInt(2, window.brandId());
+                statement.setObject(3, LocalDateTime.ofInstant(Instant.ofEpochMilli(window.startAt()), window.timeZone()));
+                statement.setObject(4, LocalDateTime.ofInstant(Instant.ofEpochMilli(window.endAt()), window.timeZone()));
+                statement.setInt(5, window.priceList());
+                statement.setInt(6, window.productId());
+                statement.setInt(7, window.priority());
+                statement.setBigDecimal(8, window.price());
+                statement.setString(9, window.timeZone().getId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static PriceWindow window(int priceList, int priority, long start, long end) {
+        return new PriceWindow(UUID.randomUUID(), 35455, 1, priceList, priority, start, end, BigDecimal.ONE, null, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,128 @@
+package org.acme.pricing.data;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.acme.pricing.dto.PriceTraceDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceTracerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldKeepTheSlowAndTheSampledRequestsOnly() {
+        PriceTracer fast = tracer(60_000, 0, 16);
+        fast.end(fast.begin("GET", "/api/prices/search-rates", "productId=1"), 200);
+        assertTrue(fast.recent(0, 10).isEmpty());
+
+        PriceTracer slow = tracer(0, 0, 16);
+        slow.end(slow.begin("GET", "/api/prices/search-rates", "productId=1"), 404);
+        List<PriceTraceDTO> traces = slow.recent(0, 10);
+        assertEquals(1, traces.size());
+        assertTrue(traces.get(0).isSlow());
+        assertEquals("/api/prices/search-rates?productId=1", traces.get(0).getUri());
+        assertEquals(404, traces.get(0).getStatus());
+
+        PriceTracer sampled = tracer(60_000, 1.0, 16);
+        sampled.end(sampled.begin("POST", "/api/prices/search", null), 200);
+        traces = sampled.recent(0, 10);
+        assertEquals(1, traces.size());
+        assertFalse(traces.get(0).isSlow());
+        assertEquals("/api/prices/search", traces.get(0).getUri());
+        assertTrue(sampled.recent(60_000, 10).isEmpty());
+
+        PriceTracer disabled = new PriceTracer(false, 0, 1.0, 16, 10, meterRegistry);
+        assertNull(disabled.begin("GET", "/api/prices/search-rates", null));
+    }
+
+    @Test
+    void shouldFormatTheStagesAndStatementsOfAKeptTrace() {
+        PriceTracer tracer = tracer(0, 0, 16);
+        Timer timer = Timer.builder("pricing.dao.query").tag("statement", "single").register(meterRegistry);
+
+        PriceTrace trace = tracer.begin("GET", "/api/prices/search-rates", null);
+        assertSame(trace, PriceTrace.current());
+        PriceTrace.current().stage(timer.getId(), 1_500_000);
+        PriceTrace.current().statement("SELECT * FROM PRICES WHERE PRODUCT_ID = ?", 35455, new Integer[]{1, 2}, null);
+        tracer.end(trace, 200);
+        assertNull(PriceTrace.current());
+
+        PriceTraceDTO kept = tracer.recent(0, 10).get(0);
+        assertEquals(List.of(new PriceTraceDTO.Stage("pricing.dao.query", Map.of("statement", "single"), 1.5)), kept.getStages());
+        assertEquals(List.of(new PriceTraceDTO.Statement("SELECT * FROM PRICES WHERE PRODUCT_ID = ?", List.of("35455", "[1, 2]", "null"))),
+                kept.getStatements());
+    }
+
+    @Test
+    void shouldDropTracesOnAFullBufferAndRetainTheMostRecent() {
+        PriceTracer tracer = new PriceTracer(true, 0, 0, 4, 3, meterRegistry);
+        for (int i = 0; i < 6; i++) {
+            tracer.end(tracer.begin("GET", "/" + i, null), 200);
+        }
+        assertEquals(2, meterRegistry.get("pricing.trace.dropped").counter().count());
+        assertEquals(4, meterRegistry.get("pricing.trace.kept").counter().count());
+
+        tracer.drain();
+        tracer.end(tracer.begin("GET", "/6", null), 200);
+        assertEquals(List.of("/6", "/3", "/2"), tracer.recent(0, 10).stream().map(PriceTraceDTO::getUri).toList());
+        assertEquals(List.of("/6"), tracer.recent(0, 1).stream().map(PriceTraceDTO::getUri).toList());
+    }
+
+    @Test
+    void shouldHandEveryOfferedTraceOverOnceUnderConcurrentProducers() throws InterruptedException {
+        PriceTracer.Ring ring = new PriceTracer.Ring(64);
+        assertEquals(64, ring.capacity());
+        int producers = 4;
+        int offers = 20_000;
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < offers; i++) {
+                    if (!ring.offer(new PriceTrace("GET", "/", null))) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<PriceTrace> polled = new HashSet<>();
+        List<PriceTrace> duplicates = new ArrayList<>();
+        while (done.getCount() > 0 || !isEmpty(ring, polled, duplicates)) {
+            PriceTrace trace = ring.poll();
+            if (trace != null && !polled.add(trace)) {
+                duplicates.add(trace);
+            }
+        }
+        assertTrue(duplicates.isEmpty());
+        assertEquals(producers * offers, polled.size() + rejected.get());
+    }
+
+    private static boolean isEmpty(PriceTracer.Ring ring, Set<PriceTrace> polled, List<PriceTrace> duplicates) {
+        PriceTrace trace = ring.poll();
+        if (trace == null) {
+            return true;
+        }
+        if (!polled.add(trace)) {
+            duplicates.add(trace);
+        }
+        return false;
+    }
+
+    private PriceTracer tracer(long threshold, double sampleRate, int bufferSize) {
+        return new PriceTracer(true, threshold, sampleRate, bufferSize, 10, meterRegistry);
+    }
+
+}
@@ -0,0 +1,25 @@
+package org.acme.pricing.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the notifications of a {@link PriceChangeListener}, changed keys in order.
+ */
+class RecordedPriceChanges implements PriceChangeListener {
+
+    final List<Long> keys = new ArrayList<>();
+
+    int allChanges;
+
+    @Override
+    public void onPriceChange(int productId, int brandId) {
+        keys.add(PriceKey.of(productId, brandId));
+    }
+
+    @Override
+    public void onAllPricesChange() {
+        allChanges++;
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.acme.pricing.data;
+
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.exception.PlatformHttpException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void shouldShareASingleLoadBetweenConcurrentCallers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<CompletableFuture<String>> callers = callConcurrently(flight, "35455/1", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "35.50";
+        });
+        while (flight.sharedCount() < CALLERS - 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (CompletableFuture<String> caller : callers) {
+            assertEquals("35.50", caller.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.loadCount());
+        assertEquals((double) (CALLERS - 1) / CALLERS, flight.dedupRatio());
+        assertEquals(0, flight.inFlight());
+
+        // nothing is kept once the load completed
+        assertEquals("25.45", flight.execute("35455/1", () -> "25.45"));
+        assertEquals(2, flight.loadCount());
+    }
+
+    @Test
+    void shouldFailEveryCallerOfAFailedLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<String>> callers = callConcurrently(flight, "35455/1", () -> {
+            await(release);
+            throw new PlatformHttpException("Failed to retrieve prices from the database", Response.Status.INTERNAL_SERVER_ERROR);
+        });
+        while (flight.sharedCount() < CALLERS - 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (CompletableFuture<String> caller : callers) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+            PlatformHttpException cause = assertInstanceOf(PlatformHttpException.class, e.getCause());
+            assertEquals("Failed to retrieve prices from the database", cause.getMessage());
+            assertEquals(Response.Status.INTERNAL_SERVER_ERROR, cause.getHttpStatus());
+        }
+        assertEquals(0, flight.inFlight());
+        assertEquals("35.50", flight.execute("35455/1", () -> "35.50"));
+    }
+
+    @Test
+    void shouldNotShareBetweenKeys() {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        assertEquals("1", flight.execute("35455/1", () -> flight.execute("35455/2", () -> "1")));
+        assertEquals(2, flight.loadCount());
+        assertEquals(0, flight.sharedCount());
+    }
+
+    private static List<CompletableFuture<String>> callConcurrently(SingleFlight<String, String> flight, String key,
+                                                                    Supplier<String> loader) {
+        List<CompletableFuture<String>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            CompletableFuture<String> caller = new CompletableFuture<>();
+            Thread.ofVirtual().start(() -> {
+                try {
+                    caller.complete(flight.execute(key, loader));
+                } catch (RuntimeException e) {
+                    caller.completeExceptionally(e);
+                }
+            });
+            callers.add(caller);
+        }
+        return callers;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.acme.pricing.exception;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.ws.rs.core.Response;
+import org.acme.pricing.config.JacksonObjectMapperCustomizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlatformExceptionHandlerTest {
+
+    private final ObjectMapper objectMapper = objectMapper();
+
+    private final ProblemResponses problems = new ProblemResponses(objectMapper);
+
+    private final PlatformExceptionHandler handler = new PlatformExceptionHandler(problems);
+
+    @Test
+    void shouldReuseThePreSerializedProblemOfAnException() throws Exception {
+        PlatformHttpException exception = new PlatformHttpException("Too many concurrent requests to the database",
+                Response.Status.SERVICE_UNAVAILABLE);
+        assertEquals(0, exception.getStackTrace().length);
+
+        ResponseEntity<Object> response = handler.handle(exception);
+        assertEquals(503, response.getStatusCode().value());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertArrayEquals(objectMapper.writeValueAsBytes(ProblemInfo.forException(exception)), (byte[]) response.getBody());
+        assertSame(response, handler.handle(new PlatformHttpException("Too many concurrent requests to the database",
+                Response.Status.SERVICE_UNAVAILABLE)));
+    }
+
+    @Test
+    void shouldAnswerTheUnknownPriceWithTheSeedBody() {
+        ResponseEntity<Object> response = problems.priceNotFound();
+        assertEquals(404, response.getStatusCode().value());
+        assertEquals("{\"title\":\"Price not found for the given parameters\",\"status\":404}", new String((byte[]) response.getBody()));
+        assertSame(response, problems.of(ProblemInfo.builder().status(404).title(ProblemResponses.PRICE_NOT_FOUND).build()));
+    }
+
+    @Test
+    void shouldClassifyTheCauseChainInOnePass() {
+        DateTimeParseException dateTimeParseException = assertThrows(DateTimeParseException.class,
+                () -> OffsetDateTime.parse("2020-06-14 10:00"));
+        ConstraintViolationException constraintViolationException = new ConstraintViolationException("invalid", Set.of());
+
+        ResponseEntity<Object> response = handler.catchAllOthers(new IllegalStateException(
+                new IllegalArgumentException(dateTimeParseException.getMessage(), dateTimeParseException)));
+        assertEquals(400, response.getStatusCode().value());
+        ProblemInfo problem = assertInstanceOf(ProblemInfo.class, response.getBody());
+        assertEquals("Problems parsing a date", problem.getTitle());
+
+        // a nested constraint violation wins, even below the date problem
+        dateTimeParseException.initCause(constraintViolationException);
+        response = handler.catchAllOthers(new IllegalStateException(dateTimeParseException));
+        problem = assertInstanceOf(ProblemInfo.class, response.getBody());
+        assertEquals("Constrains violation", problem.getTitle());
+        assertEquals(List.of(), problem.getErrors());
+
+        response = handler.catchAllOthers(new IllegalStateException("unexpected"));
+        assertEquals(500, response.getStatusCode().value());
+        assertSame(response, handler.catchAllOthers(new NullPointerException()));
+    }
+
+    @Test
+    void shouldWriteTheOtherProblemsPerRequest() {
+        ProblemInfo detailed = ProblemInfo.builder().status(400).title("Bad").errors(List.of(new ErrorInfo("detail", "date"))).build();
+        assertSame(detailed, problems.of(detailed).getBody());
+
+        // a per-request title, like the row of a malformed import payload, is never kept
+        ResponseEntity<Object> response = handler.handle(new PlatformHttpException(
+                "Malformed payload at row 7, 5 rows were imported before it", Response.Status.BAD_REQUEST));
+        assertEquals(400, response.getStatusCode().value());
+        ProblemInfo problem = assertInstanceOf(ProblemInfo.class, response.getBody());
+        assertEquals("Malformed payload at row 7, 5 rows were imported before it", problem.getTitle());
+        assertNotSame(response, handler.handle(new PlatformHttpException(
+                "Malformed payload at row 7, 5 rows were imported before it", Response.Status.BAD_REQUEST)));
+    }
+
+    @Test
+    void shouldShareImmutableConstantProblems() {
+        assertEquals(ProblemInfo.builder().status(404).title(ProblemResponses.PRICE_NOT_FOUND).build(),
+                ProblemResponses.PRICE_NOT_FOUND_PROBLEM);
+        assertThrows(UnsupportedOperationException.class, () -> ProblemResponses.PRICE_NOT_FOUND_PROBLEM.setStatus(200));
+        assertThrows(UnsupportedOperationException.class, () -> PlatformExceptionHandler.UNHANDLED.setTitle("changed"));
+    }
+
+    private static ObjectMapper objectMapper() {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonObjectMapperCustomizer().customize(builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,111 @@
+package org.acme.pricing.reactive;
+
+import org.acme.pricing.dto.RatedPriceDTO;
+import org.acme.pricing.exception.ProblemInfo;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The cases of {@link org.acme.pricing.api.PricesControllerTest} against the reactive application.
+ */
+@SpringBootTest(classes = ReactivePricingApp.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles({"test", "reactive"})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReactivePricesControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @ParameterizedTest
+    @Order(value = 1)
+    @CsvSource({
+            "2020-06-14T10:00:00+02:00, 35.50, 1",
+            "2020-06-14T16:00:00+02:00, 25.45, 2",
+            "2020-06-14T21:00:00+02:00, 35.50, 1",
+            "2020-06-15T10:00:00+02:00, 30.50, 3",
+            "2020-06-16T21:00:00+02:00, 38.95, 4"
+    })
+    void shouldReturnTheRequestedCases(String appliedAt, BigDecimal expectedPrice, Integer expectedRateListId) {
+        RatedPriceDTO price = search(appliedAt, 35455, 1)
+                .expectStatus().isOk()
+                .expectBody(RatedPriceDTO.class).returnResult().getResponseBody();
+
+        assertNotNull(price);
+        assertEquals(35455, price.getProductId());
+        assertEquals(1, price.getBrandId());
+        assertEquals(expectedRateListId, price.getRateListId());
+        assertThat(expectedPrice, Matchers.comparesEqualTo(price.getPrice()));
+        assertEquals(OffsetDateTime.parse(appliedAt).getOffset(), price.getAppliedStartAt().getOffset());
+    }
+
+    @Test
+    @Order(value = 6)
+    void shouldReturn400_OnInvalidDate() {
+        ProblemInfo error = search("2020-06-15T10:00:00", 35455, 1)
+                .expectStatus().isBadRequest()
+                .expectBody(ProblemInfo.class).returnResult().getResponseBody();
+
+        assertNotNull(error);
+        assertNotNull(error.getErrors());
+        assertTrue(error.getErrors().size() > 0);
+    }
+
+    @Test
+    @Order(value = 7)
+    void shouldReturn404_OnUnknownProductId() {
+        ProblemInfo error = search("2020-06-15T10:00:00Z", 1, 1)
+                .expectStatus().isNotFound()
+                .expectBody(ProblemInfo.class).returnResult().getResponseBody();
+
+        assertNotNull(error);
+        assertEquals("Price not found for the given parameters", error.getTitle());
+    }
+
+    /**
+     * Needs order and needs to run last because it wipes the DB which would impact other tests.
+     */
+    @Test
+    @Order(value = 999)
+    void shouldReturn500_DatabaseProblem() {
+        databaseClient.sql("DROP ALL OBJECTS").then().block();
+
+        ProblemInfo error = search("2020-06-15T10:00:00Z", 1, 1)
+                .expectStatus().isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR)
+                .expectBody(ProblemInfo.class).returnResult().getResponseBody();
+
+        assertNotNull(error);
+        assertNotNull(error.getTitle());
+    }
+
+    private WebTestClient.ResponseSpec search(String appliedAt, Integer productId, Integer brandId) {
+        return webTestClient.get()
+                .uri(builder -> builder.path("/api/prices/search-rates")
+                        .queryParam("appliedAt", "{appliedAt}")
+                        .queryParam("productId", productId)
+                        .queryParam("brandId", brandId)
+                        .build(appliedAt))
+                .exchange();
+    }
+}